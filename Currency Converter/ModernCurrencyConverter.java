@@ -2,9 +2,38 @@ import javax.swing.*;
 import javax.swing.border.*;
 import java.awt.*;
 import java.awt.event.*;
-import java.text.DecimalFormat;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import audit.AuditJournal;
+import audit.AuditUsers;
+import dao.CachingCurrencyDAO;
+import dao.CurrencyDAOImpl;
+import dao.InstrumentedCurrencyDAO;
+import dao.UserDAOImpl;
+import engine.DatabaseRateSource;
+import engine.FileRateSource;
+import engine.LiveRates;
+import engine.RateHistoryStore;
+import engine.RateRefresher;
+import engine.RateTable;
+import engine.SharedRateFile;
+import engine.SharedRateSource;
+import engine.TickIngestor;
+import metrics.Metrics;
+import metrics.OperationStats;
+import model.User;
+import replication.ReplicationSubscriber;
+import ui.AnimationClock;
+import ui.BackgroundCache;
+import ui.RateBoard;
+import util.AmountFormat;
 
 /**
  * Modern GUI Currency Converter
@@ -12,8 +41,8 @@ import java.util.Map;
  */
 public class ModernCurrencyConverter extends JFrame {
     
-    // Exchange rates (1 USD = these amounts)
-    private static final Map<String, Double> exchangeRates = new HashMap<>();
+    // Current exchange rate snapshot; replaced atomically when rates are refreshed
+    private static final LiveRates exchangeRates = LiveRates.shared();
     
     // GUI Components
     private JTextField amountField;
@@ -24,8 +53,37 @@ public class ModernCurrencyConverter extends JFrame {
     private JButton convertButton;
     private JButton swapButton;
     private JButton clearButton;
+    private JCheckBox liveCheckBox;
+    private JButton rateBoardButton;
+    private JFrame rateBoardFrame;
     private JPanel mainPanel;
     
+    // Conversions run off the EDT; only the newest request may publish its result.
+    // pendingConversion and conversionGeneration are only touched on the EDT.
+    private static final int LIVE_DEBOUNCE_MS = 300;
+    private final ExecutorService conversionExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "conversion-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pendingConversion;
+    private long conversionGeneration;
+    private Timer liveDebounce;
+    
+    // Optional compliance journal (-Daudit.file); conversions are refused if it stops working
+    private static AuditJournal auditJournal;
+    private static User auditUser;
+    
+    // Instrumentation: the conversion itself, and the whole click-to-display path
+    private static final OperationStats CONVERT_STATS = Metrics.operation("ui.convertCurrency");
+    private static final OperationStats UI_CONVERSION_STATS = Metrics.operation("ui.conversion");
+    
+    // All effects share one animation clock; handles let newer effects cancel older ones
+    private final AnimationClock clock = AnimationClock.shared();
+    private AnimationClock.Handle resultAnimation;
+    private AnimationClock.Handle swapAnimation;
+    private Timer errorReset;
+    
     // Styling
     private final Color PRIMARY_COLOR = new Color(52, 152, 219);
     private final Color SUCCESS_COLOR = new Color(46, 204, 113);
@@ -34,28 +92,27 @@ public class ModernCurrencyConverter extends JFrame {
     private final Color LIGHT_GRAY = new Color(248, 249, 250);
     private final Color DARK_GRAY = new Color(52, 58, 64);
     
+    // Paint constants, so repaints do not allocate
+    private static final Color GRADIENT_TOP = new Color(74, 144, 226);
+    private static final Color GRADIENT_BOTTOM = new Color(143, 148, 251);
+    private static final Color SHADOW_COLOR = new Color(0, 0, 0, 20);
+    private static final Color BORDER_COLOR = new Color(200, 200, 200);
+    private static final String FILL_COLOR_KEY = "fillColor";
+    
     private final Font TITLE_FONT = new Font("Arial", Font.BOLD, 28);
     private final Font LABEL_FONT = new Font("Arial", Font.PLAIN, 14);
     private final Font BUTTON_FONT = new Font("Arial", Font.BOLD, 16);
     private final Font RESULT_FONT = new Font("Arial", Font.BOLD, 20);
     
-    private final DecimalFormat formatter = new DecimalFormat("#,##0.00");
-    
-    static {
-        // Initialize exchange rates
-        exchangeRates.put("USD", 1.0);
-        exchangeRates.put("EUR", 0.85);
-        exchangeRates.put("GBP", 0.73);
-        exchangeRates.put("JPY", 110.0);
-        exchangeRates.put("AUD", 1.35);
-        exchangeRates.put("CAD", 1.25);
-        exchangeRates.put("CHF", 0.92);
-        exchangeRates.put("CNY", 6.45);
-        exchangeRates.put("INR", 82.50);
-        exchangeRates.put("KRW", 1180.0);
-        exchangeRates.put("BRL", 5.20);
-        exchangeRates.put("RUB", 73.50);
-    }
+    private final AmountFormat formatter = new AmountFormat(2, ',');
+    // Exact amounts in each currency's minor units, indexed by its number of decimals
+    private final AmountFormat[] minorFormats = {
+        new AmountFormat(0, ','), new AmountFormat(1, ','), new AmountFormat(2, ','), new AmountFormat(3, ',')
+    };
+    private final AmountFormat rateFormatter = new AmountFormat(4, (char) 0);
+    
+    // Reused for label text; only touched on the EDT
+    private final char[] labelBuffer = new char[600];
     
     public ModernCurrencyConverter() {
         initializeGUI();
@@ -69,21 +126,18 @@ public class ModernCurrencyConverter extends JFrame {
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setResizable(false);
         
-        // Create main panel with gradient background
+        // Create main panel with gradient background, rendered once and cached
         mainPanel = new JPanel() {
+            private final BackgroundCache background = new BackgroundCache((g2d, c) -> {
+                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g2d.setPaint(new GradientPaint(0, 0, GRADIENT_TOP, 0, c.getHeight(), GRADIENT_BOTTOM));
+                g2d.fillRect(0, 0, c.getWidth(), c.getHeight());
+            });
+            
             @Override
             protected void paintComponent(Graphics g) {
                 super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
-                g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-                
-                // Gradient background
-                GradientPaint gradient = new GradientPaint(
-                    0, 0, new Color(74, 144, 226),
-                    0, getHeight(), new Color(143, 148, 251)
-                );
-                g2d.setPaint(gradient);
-                g2d.fillRect(0, 0, getWidth(), getHeight());
+                background.paint(g, this);
             }
         };
         mainPanel.setLayout(null);
@@ -127,6 +181,15 @@ public class ModernCurrencyConverter extends JFrame {
         clearButton.setBounds(250, 60, 80, 40);
         conversionPanel.add(clearButton);
         
+        // Live conversion toggle
+        liveCheckBox = new JCheckBox("⚡ Live");
+        liveCheckBox.setBounds(250, 30, 120, 25);
+        liveCheckBox.setFont(LABEL_FONT);
+        liveCheckBox.setForeground(DARK_GRAY);
+        liveCheckBox.setOpaque(false);
+        liveCheckBox.setFocusPainted(false);
+        conversionPanel.add(liveCheckBox);
+        
         // From currency
         JLabel fromLabel = new JLabel("🌍 From Currency:");
         fromLabel.setBounds(30, 120, 150, 25);
@@ -134,7 +197,7 @@ public class ModernCurrencyConverter extends JFrame {
         fromLabel.setForeground(DARK_GRAY);
         conversionPanel.add(fromLabel);
         
-        String[] currencies = exchangeRates.keySet().toArray(new String[0]);
+        String[] currencies = exchangeRates.current().codes();
         fromCurrency = new JComboBox<>(currencies);
         fromCurrency.setBounds(30, 150, 130, 40);
         conversionPanel.add(fromCurrency);
@@ -193,6 +256,11 @@ public class ModernCurrencyConverter extends JFrame {
         footerLabel.setFont(new Font("Arial", Font.ITALIC, 12));
         footerLabel.setForeground(Color.WHITE);
         mainPanel.add(footerLabel);
+        
+        // Live grid of all cross rates
+        rateBoardButton = createStyledButton("📊 Rate Board", DARK_GRAY);
+        rateBoardButton.setBounds(175, 600, 150, 32);
+        mainPanel.add(rateBoardButton);
     }
     
     private void layoutComponents() {
@@ -213,28 +281,34 @@ public class ModernCurrencyConverter extends JFrame {
         addHoverEffect(convertButton, SUCCESS_COLOR);
         addHoverEffect(swapButton, PRIMARY_COLOR);
         addHoverEffect(clearButton, WARNING_COLOR);
+        addHoverEffect(rateBoardButton, DARK_GRAY);
     }
     
     private JPanel createRoundedPanel() {
         return new JPanel() {
-            @Override
-            protected void paintComponent(Graphics g) {
-                super.paintComponent(g);
-                Graphics2D g2d = (Graphics2D) g;
+            // Rounded card with shadow, rendered once per size
+            private final BackgroundCache background = new BackgroundCache((g2d, c) -> {
                 g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
                 g2d.setColor(Color.WHITE);
-                g2d.fillRoundRect(0, 0, getWidth(), getHeight(), 20, 20);
+                g2d.fillRoundRect(0, 0, c.getWidth(), c.getHeight(), 20, 20);
                 
                 // Add subtle shadow
-                g2d.setColor(new Color(0, 0, 0, 20));
-                g2d.fillRoundRect(2, 2, getWidth(), getHeight(), 20, 20);
+                g2d.setColor(SHADOW_COLOR);
+                g2d.fillRoundRect(2, 2, c.getWidth(), c.getHeight(), 20, 20);
                 g2d.setColor(Color.WHITE);
-                g2d.fillRoundRect(0, 0, getWidth() - 2, getHeight() - 2, 20, 20);
+                g2d.fillRoundRect(0, 0, c.getWidth() - 2, c.getHeight() - 2, 20, 20);
+            });
+            
+            @Override
+            protected void paintComponent(Graphics g) {
+                super.paintComponent(g);
+                background.paint(g, this);
             }
         };
     }
     
     private JButton createStyledButton(String text, Color color) {
+        Color pressedColor = color.darker();
         JButton button = new JButton(text) {
             @Override
             protected void paintComponent(Graphics g) {
@@ -242,9 +316,11 @@ public class ModernCurrencyConverter extends JFrame {
                 g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
                 
                 if (getModel().isPressed()) {
-                    g2d.setColor(color.darker());
+                    g2d.setColor(pressedColor);
                 } else {
-                    g2d.setColor(color);
+                    // Hover animation stores the current fill as a client property
+                    Object fill = getClientProperty(FILL_COLOR_KEY);
+                    g2d.setColor(fill instanceof Color ? (Color) fill : color);
                 }
                 
                 g2d.fillRoundRect(0, 0, getWidth(), getHeight(), 10, 10);
@@ -274,7 +350,7 @@ public class ModernCurrencyConverter extends JFrame {
             public void paintBorder(Component c, Graphics g, int x, int y, int width, int height) {
                 Graphics2D g2d = (Graphics2D) g;
                 g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                g2d.setColor(new Color(200, 200, 200));
+                g2d.setColor(BORDER_COLOR);
                 g2d.drawRoundRect(x, y, width - 1, height - 1, 8, 8);
             }
             
@@ -313,39 +389,75 @@ public class ModernCurrencyConverter extends JFrame {
     }
     
     private void addHoverEffect(JButton button, Color originalColor) {
+        Color hoverColor = originalColor.brighter();
         button.addMouseListener(new MouseAdapter() {
+            private AnimationClock.Handle fade;
+            
             @Override
             public void mouseEntered(MouseEvent e) {
-                animateButton(button, originalColor.brighter(), 100);
+                fade = animateButton(button, fade, originalColor, hoverColor, 100);
             }
             
             @Override
             public void mouseExited(MouseEvent e) {
-                animateButton(button, originalColor, 100);
+                fade = animateButton(button, fade, originalColor, originalColor, 100);
             }
         });
     }
     
-    private void animateButton(JButton button, Color targetColor, int duration) {
-        Timer timer = new Timer(10, null);
-        timer.addActionListener(new ActionListener() {
-            private int steps = 0;
-            private final int maxSteps = duration / 10;
-            
+    /**
+     * Fades the button fill from its current colour to the target on the shared clock.
+     */
+    private AnimationClock.Handle animateButton(JButton button, AnimationClock.Handle previous,
+                                                Color originalColor, Color targetColor, int duration) {
+        if (previous != null) {
+            previous.cancel();
+        }
+        Object current = button.getClientProperty(FILL_COLOR_KEY);
+        Color startColor = current instanceof Color ? (Color) current : originalColor;
+        return clock.start(elapsed -> {
+            float t = Math.min(1f, (float) elapsed / duration);
+            button.putClientProperty(FILL_COLOR_KEY, blend(startColor, targetColor, t));
+            clock.markDirty(button);
+            return t < 1f;
+        });
+    }
+    
+    private static Color blend(Color from, Color to, float t) {
+        if (t >= 1f) {
+            return to;
+        }
+        return new Color(
+            Math.round(from.getRed() + (to.getRed() - from.getRed()) * t),
+            Math.round(from.getGreen() + (to.getGreen() - from.getGreen()) * t),
+            Math.round(from.getBlue() + (to.getBlue() - from.getBlue()) * t));
+    }
+    
+    private void openRateBoard() {
+        if (rateBoardFrame != null) {
+            rateBoardFrame.toFront();
+            return;
+        }
+        RateBoard board = new RateBoard(exchangeRates);
+        rateBoardFrame = new JFrame("📊 Live Rate Board");
+        rateBoardFrame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+        rateBoardFrame.add(board);
+        rateBoardFrame.setSize(900, 420);
+        rateBoardFrame.setLocationRelativeTo(this);
+        rateBoardFrame.addWindowListener(new WindowAdapter() {
             @Override
-            public void actionPerformed(ActionEvent e) {
-                steps++;
-                if (steps >= maxSteps) {
-                    timer.stop();
-                }
-                button.repaint();
+            public void windowClosed(WindowEvent e) {
+                // Stop receiving rate updates once the board is gone
+                board.detach();
+                rateBoardFrame = null;
             }
         });
-        timer.start();
+        board.attach();
+        rateBoardFrame.setVisible(true);
     }
     
     private void setupEventListeners() {
-        convertButton.addActionListener(e -> performConversion());
+        convertButton.addActionListener(e -> performConversion(false));
         
         swapButton.addActionListener(e -> {
             String temp = (String) fromCurrency.getSelectedItem();
@@ -357,14 +469,34 @@ public class ModernCurrencyConverter extends JFrame {
         });
         
         clearButton.addActionListener(e -> {
+            cancelPendingConversion();
             amountField.setText("");
             resultLabel.setText("Enter amount and click Convert");
             exchangeRateLabel.setText("");
             amountField.requestFocus();
         });
         
+        rateBoardButton.addActionListener(e -> openRateBoard());
+        
         // Enter key support
-        amountField.addActionListener(e -> performConversion());
+        amountField.addActionListener(e -> performConversion(false));
+        
+        // Live mode: convert once typing pauses, and on every currency change
+        liveDebounce = new Timer(LIVE_DEBOUNCE_MS, e -> performConversion(true));
+        liveDebounce.setRepeats(false);
+        amountField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { scheduleLiveConversion(); }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) { scheduleLiveConversion(); }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) { scheduleLiveConversion(); }
+        });
+        fromCurrency.addActionListener(e -> scheduleLiveConversion());
+        toCurrency.addActionListener(e -> scheduleLiveConversion());
+        liveCheckBox.addActionListener(e -> scheduleLiveConversion());
         
         // Real-time validation
         amountField.addKeyListener(new KeyAdapter() {
@@ -379,105 +511,246 @@ public class ModernCurrencyConverter extends JFrame {
     }
     
     private void animateSwap() {
-        Timer timer = new Timer(50, null);
-        timer.addActionListener(new ActionListener() {
-            private int step = 0;
-            private final int maxSteps = 6;
+        if (swapAnimation != null) {
+            swapAnimation.cancel();
+        }
+        // Six 50 ms frames alternating the icon, then back to rest
+        swapAnimation = clock.start(new AnimationClock.Animation() {
+            private long shownStep;
             
             @Override
-            public void actionPerformed(ActionEvent e) {
-                step++;
-                if (step >= maxSteps) {
-                    timer.stop();
+            public boolean tick(long elapsed) {
+                long step = elapsed / 50;
+                if (step >= 6) {
                     swapButton.setText("⇄");
-                } else {
+                    return false;
+                }
+                if (step != shownStep) {
+                    shownStep = step;
                     swapButton.setText(step % 2 == 0 ? "⇄" : "↻");
                 }
+                return true;
             }
         });
-        timer.start();
     }
     
-    private void performConversion() {
-        try {
-            String amountText = amountField.getText().trim();
-            if (amountText.isEmpty()) {
+    private void scheduleLiveConversion() {
+        if (liveCheckBox.isSelected()) {
+            liveDebounce.restart();
+        }
+    }
+    
+    /**
+     * Validates input on the EDT and hands the conversion to the worker.
+     * In quiet (live) mode incomplete input is ignored instead of reported.
+     */
+    private void performConversion(boolean quiet) {
+        String amountText = amountField.getText().trim();
+        if (amountText.isEmpty()) {
+            if (!quiet) {
                 showError("Please enter an amount!");
+            }
+            return;
+        }
+        
+        double amount = formatter.parse(amountText);
+        if (Double.isNaN(amount)) {
+            if (!quiet) {
+                showError("Please enter a valid number!");
+            }
+            return;
+        }
+        if (amount < 0) {
+            showError("Amount cannot be negative!");
+            return;
+        }
+        
+        String fromCode = (String) fromCurrency.getSelectedItem();
+        String toCode = (String) toCurrency.getSelectedItem();
+        
+        // Supersede whatever is still in flight
+        cancelPendingConversion();
+        long generation = conversionGeneration;
+        long started = UI_CONVERSION_STATS.start();
+        animateResult();
+        
+        pendingConversion = conversionExecutor.submit(() -> {
+            // Take one snapshot so the result and the displayed rate always agree.
+            // This is where a slow rate backend would block, off the EDT.
+            RateTable rates = exchangeRates.current();
+            int from = rates.indexOf(fromCode);
+            int to = rates.indexOf(toCode);
+            if (Thread.currentThread().isInterrupted()) {
                 return;
             }
-            
-            double amount = Double.parseDouble(amountText);
-            if (amount < 0) {
-                showError("Amount cannot be negative!");
+            if (from < 0 || to < 0 || !rates.hasRate(from, to)) {
+                publish(generation, () -> {
+                    showError("No rate available for this pair!");
+                    UI_CONVERSION_STATS.failed(started);
+                });
                 return;
             }
             
-            String from = (String) fromCurrency.getSelectedItem();
-            String to = (String) toCurrency.getSelectedItem();
+            // Convert currency exactly, in minor units
+            AmountFormat fromFormat = minorFormat(rates.scale(from));
+            long amountMinor = fromFormat.parseUnits(amountText);
+            if (amountMinor == AmountFormat.INVALID_UNITS) {
+                publish(generation, () -> {
+                    showError("Too many decimal places for " + fromCode + "!");
+                    UI_CONVERSION_STATS.failed(started);
+                });
+                return;
+            }
+            long resultMinor;
+            try {
+                resultMinor = convertCurrency(rates, amountMinor, from, to);
+            } catch (ArithmeticException e) {
+                publish(generation, () -> {
+                    showError("Amount is too large!");
+                    UI_CONVERSION_STATS.failed(started);
+                });
+                return;
+            }
             
-            // Convert currency
-            double result = convertCurrency(amount, from, to);
+            // Audit before showing; recording only queues, the journal syncs in the background
+            if (auditJournal != null) {
+                try {
+                    auditJournal.record(auditUser, fromCode, toCode, amountMinor, rates.getVersion(), resultMinor);
+                } catch (IllegalStateException e) {
+                    publish(generation, () -> {
+                        showError("Audit journal unavailable!");
+                        UI_CONVERSION_STATS.failed(started);
+                    });
+                    return;
+                }
+            }
             
             // Display result with animation
-            displayResult(amount, from, result, to);
-            
-        } catch (NumberFormatException ex) {
-            showError("Please enter a valid number!");
+            publish(generation, () -> {
+                displayResult(rates, from, resultMinor, to);
+                UI_CONVERSION_STATS.stop(started);
+            });
+        });
+    }
+    
+    private void cancelPendingConversion() {
+        conversionGeneration++;
+        stopResultAnimation();
+        if (pendingConversion != null) {
+            pendingConversion.cancel(true);
+            pendingConversion = null;
         }
     }
     
-    private double convertCurrency(double amount, String from, String to) {
-        if (from.equals(to)) {
-            return amount;
+    /**
+     * Runs the update on the EDT unless a newer conversion has started since.
+     */
+    private void publish(long generation, Runnable update) {
+        SwingUtilities.invokeLater(() -> {
+            if (generation == conversionGeneration) {
+                update.run();
+            }
+        });
+    }
+    
+    /**
+     * Exact conversion through the precomputed fixed-point cross rate,
+     * rounded half-even to the target currency's minor units.
+     *
+     * @throws ArithmeticException if the result does not fit
+     */
+    private long convertCurrency(RateTable rates, long amountMinor, int from, int to) {
+        long start = CONVERT_STATS.start();
+        try {
+            long result = rates.convertMinor(amountMinor, from, to, RoundingMode.HALF_EVEN);
+            CONVERT_STATS.stop(start);
+            return result;
+        } catch (ArithmeticException e) {
+            CONVERT_STATS.failed(start);
+            throw e;
         }
-        
-        // Convert to USD first, then to target currency
-        double usdAmount = amount / exchangeRates.get(from);
-        return usdAmount * exchangeRates.get(to);
     }
     
-    private void displayResult(double amount, String from, double result, String to) {
-        // Animate result display
-        animateResult();
-        
-        resultLabel.setText(formatter.format(result) + " " + to);
+    private AmountFormat minorFormat(int scale) {
+        return minorFormats[Math.min(scale, minorFormats.length - 1)];
+    }
+    
+    private void displayResult(RateTable rates, int from, long resultMinor, int to) {
+        stopResultAnimation();
+        
+        // Build label text in place: "<result> <to>" and "1 <from> = <rate> <to>"
+        String toCode = rates.code(to);
+        int length = minorFormat(rates.scale(to)).formatUnits(resultMinor, labelBuffer, 0);
+        length = append(' ', length);
+        length = append(toCode, length);
+        resultLabel.setText(new String(labelBuffer, 0, length));
         resultLabel.setForeground(SUCCESS_COLOR);
         
-        double rate = result / amount;
-        exchangeRateLabel.setText(String.format("1 %s = %.4f %s", from, rate, to));
+        double rate = rates.rate(from, to);
+        length = append("1 ", 0);
+        length = append(rates.code(from), length);
+        length = append(" = ", length);
+        length += rateFormatter.format(rate, labelBuffer, length);
+        length = append(' ', length);
+        length = append(toCode, length);
+        exchangeRateLabel.setText(new String(labelBuffer, 0, length));
+        exchangeRateLabel.setToolTipText("Rates version " + rates.getVersion());
+    }
+    
+    private int append(String text, int offset) {
+        text.getChars(0, text.length(), labelBuffer, offset);
+        return offset + text.length();
+    }
+    
+    private int append(char c, int offset) {
+        labelBuffer[offset] = c;
+        return offset + 1;
     }
     
     private void animateResult() {
-        Timer timer = new Timer(100, null);
-        timer.addActionListener(new ActionListener() {
-            private int step = 0;
-            private final int maxSteps = 3;
+        // Runs until the result arrives, so a slow backend shows progress
+        stopResultAnimation();
+        resultAnimation = clock.start(new AnimationClock.Animation() {
+            private long shownStep;
             
             @Override
-            public void actionPerformed(ActionEvent e) {
-                step++;
-                if (step >= maxSteps) {
-                    timer.stop();
-                } else {
+            public boolean tick(long elapsed) {
+                long step = elapsed / 100;
+                if (step != shownStep) {
+                    shownStep = step;
                     resultLabel.setText(step % 2 == 0 ? "Converting..." : "⏳ Converting...");
                 }
+                return true;
             }
         });
-        timer.start();
+    }
+    
+    private void stopResultAnimation() {
+        if (resultAnimation != null) {
+            resultAnimation.cancel();
+            resultAnimation = null;
+        }
+        // A pending error reset must not overwrite what is shown next
+        if (errorReset != null) {
+            errorReset.stop();
+            errorReset = null;
+        }
     }
     
     private void showError(String message) {
+        stopResultAnimation();
         resultLabel.setText("❌ " + message);
         resultLabel.setForeground(DANGER_COLOR);
         exchangeRateLabel.setText("");
         
-        // Clear error after 3 seconds
-        Timer timer = new Timer(3000, e -> {
+        // Clear error after 3 seconds; a one-shot timer, so the frame clock stays idle meanwhile
+        errorReset = new Timer(3000, e -> {
+            errorReset = null;
             resultLabel.setText("Enter amount and click Convert");
             resultLabel.setForeground(PRIMARY_COLOR);
         });
-        timer.setRepeats(false);
-        timer.start();
+        errorReset.setRepeats(false);
+        errorReset.start();
     }
     
     private void setDefaultValues() {
@@ -491,11 +764,115 @@ public class ModernCurrencyConverter extends JFrame {
     public static void main(String[] args) {
         // Set system look and feel
         try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeel());
+            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         } catch (Exception e) {
             e.printStackTrace();
         }
         
+        // JMX metrics, plus a periodic log when -Dmetrics.log is set
+        Metrics.install();
+        
+        // Optional audit journal: -Daudit.file=audit.jnl [-Daudit.user.id=42 | -Daudit.user=name]
+        // The user must exist in the user table; it defaults to the OS login name
+        String auditFile = System.getProperty("audit.file");
+        if (auditFile != null) {
+            try {
+                auditUser = new AuditUsers(new UserDAOImpl()).require(Integer.getInteger("audit.user.id"),
+                    System.getProperty("audit.user", System.getProperty("user.name")));
+            } catch (SQLException | IllegalArgumentException e) {
+                System.err.println("Could not resolve audit user: " + e.getMessage());
+                System.exit(1);
+            }
+            try {
+                auditJournal = AuditJournal.open(Paths.get(auditFile));
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        auditJournal.close();
+                    } catch (IOException e) {
+                        System.err.println("Could not close audit journal: " + e.getMessage());
+                    }
+                }));
+            } catch (IOException e) {
+                System.err.println("Could not open audit journal: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+        
+        // Optional as-of history of every published snapshot: -Drates.history=history/rates
+        String history = System.getProperty("rates.history");
+        if (history != null) {
+            try {
+                RateHistoryStore store = RateHistoryStore.open(Paths.get(history), exchangeRates.current().codes());
+                store.recordFrom(exchangeRates);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        store.close();
+                    } catch (IOException e) {
+                        System.err.println("Could not close rate history: " + e.getMessage());
+                    }
+                }));
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Could not open rate history: " + e.getMessage());
+            }
+        }
+        
+        // Optional host-wide shared snapshot: -Drates.shared=/dev/shm/rates.snap
+        // Loading is a copy out of the mapped file, so rates are current before the window opens
+        String sharedRates = System.getProperty("rates.shared");
+        if (sharedRates != null) {
+            try {
+                RateRefresher refresher = new RateRefresher(
+                    new SharedRateSource(SharedRateFile.openReader(Paths.get(sharedRates))), exchangeRates, 0);
+                refresher.refresh();
+                refresher.start();
+            } catch (IOException e) {
+                System.err.println("Could not read shared rates: " + e.getMessage());
+            }
+        }
+        
+        // Optional live rates file: -Drates.file=rates.csv
+        String ratesFile = System.getProperty("rates.file");
+        if (ratesFile != null) {
+            try {
+                new RateRefresher(new FileRateSource(Paths.get(ratesFile)),
+                    exchangeRates, 0).start();
+            } catch (IOException e) {
+                System.err.println("Could not watch rates file: " + e.getMessage());
+            }
+        }
+        
+        // Optional database rates, read through the shared cache: -Drates.db.ms=5000
+        Long dbIntervalMillis = Long.getLong("rates.db.ms");
+        if (dbIntervalMillis != null) {
+            try {
+                new RateRefresher(new DatabaseRateSource(
+                    new CachingCurrencyDAO(new InstrumentedCurrencyDAO(new CurrencyDAOImpl()))),
+                    exchangeRates, dbIntervalMillis).start();
+            } catch (IOException e) {
+                System.err.println("Could not poll database rates: " + e.getMessage());
+            }
+        }
+        
+        // Optional replication from another node: -Dreplication.subscribe=host:9200
+        String upstream = System.getProperty("replication.subscribe");
+        if (upstream != null) {
+            try {
+                ReplicationSubscriber.forAddress(upstream, exchangeRates).start();
+            } catch (IllegalArgumentException e) {
+                System.err.println("Could not follow replicated rates: " + e.getMessage());
+            }
+        }
+        
+        // Optional binary tick feed: -Dticks.port=9100 [-Dticks.interval.ms=10]
+        Integer ticksPort = Integer.getInteger("ticks.port");
+        if (ticksPort != null) {
+            try {
+                new TickIngestor(exchangeRates, Long.getLong("ticks.interval.ms", 10L)).listen(ticksPort);
+            } catch (IOException e) {
+                System.err.println("Could not listen for rate ticks: " + e.getMessage());
+            }
+        }
+        
         // Create and show GUI
         SwingUtilities.invokeLater(() -> {
             new ModernCurrencyConverter().setVisible(true);
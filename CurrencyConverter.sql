@@ -1 +1,37 @@
-...
\ No newline at end of file
+-- Currency Converter schema (MySQL 5.7+)
+
+CREATE DATABASE IF NOT EXISTS currency_converter;
+USE currency_converter;
+
+-- One row per quoted pair: 1 from_currency = rate to_currency
+CREATE TABLE IF NOT EXISTS currency_rates (
+    id            INT AUTO_INCREMENT PRIMARY KEY,
+    from_currency CHAR(3)        NOT NULL,
+    to_currency   CHAR(3)        NOT NULL,
+    rate          DECIMAL(24, 12) NOT NULL,
+    updated_at    TIMESTAMP      NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_currency_pair (from_currency, to_currency)
+);
+
+-- Users referenced by the conversion audit journal (audit.AuditJournal)
+CREATE TABLE IF NOT EXISTS users (
+    id         INT AUTO_INCREMENT PRIMARY KEY,
+    username   VARCHAR(64)  NOT NULL,
+    email      VARCHAR(255),
+    created_at TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    UNIQUE KEY uk_username (username)
+);
+
+INSERT INTO currency_rates (from_currency, to_currency, rate) VALUES
+    ('USD', 'EUR', 0.85),
+    ('USD', 'GBP', 0.73),
+    ('USD', 'JPY', 110.0),
+    ('USD', 'AUD', 1.35),
+    ('USD', 'CAD', 1.25),
+    ('USD', 'CHF', 0.92),
+    ('USD', 'CNY', 6.45),
+    ('USD', 'INR', 82.50),
+    ('USD', 'KRW', 1180.0),
+    ('USD', 'BRL', 5.20),
+    ('USD', 'RUB', 73.50)
+ON DUPLICATE KEY UPDATE rate = VALUES(rate);
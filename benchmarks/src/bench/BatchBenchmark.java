@@ -0,0 +1,85 @@
+package bench;
+
+import engine.BatchConverter;
+import engine.DefaultRates;
+import engine.RateTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Columnar batch conversion, sequential and fork/join, in double and
+ * exact fixed-point arithmetic.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    @Param({"1024", "1048576", "16777216"})
+    public int rows;
+
+    private RateTable rates;
+    private BatchConverter converter;
+    private double[] amounts;
+    private short[] from;
+    private short[] to;
+    private double[] out;
+    private long[] minorUnits;
+    private long[] minorOut;
+
+    @Setup
+    public void setup() {
+        rates = DefaultRates.table();
+        converter = new BatchConverter();
+        amounts = new double[rows];
+        from = new short[rows];
+        to = new short[rows];
+        out = new double[rows];
+        minorUnits = new long[rows];
+        minorOut = new long[rows];
+
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < rows; i++) {
+            amounts[i] = random.nextDouble() * 10_000.0;
+            from[i] = (short) random.nextInt(rates.size());
+            to[i] = (short) random.nextInt(rates.size());
+            minorUnits[i] = random.nextLong(1_000_000_000L);
+        }
+    }
+
+    @Benchmark
+    public double[] mixedPairsSequential() {
+        BatchConverter.convert(rates, amounts, from, to, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] mixedPairsParallel() {
+        converter.convertParallel(rates, amounts, from, to, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] singlePair() {
+        BatchConverter.convert(rates, amounts, 1, 3, out);
+        return out;
+    }
+
+    @Benchmark
+    public long[] exactSequential() {
+        BatchConverter.convertExact(rates, minorUnits, from, to, minorOut, RoundingMode.HALF_EVEN);
+        return minorOut;
+    }
+
+    @Benchmark
+    public long[] exactParallel() {
+        converter.convertExactParallel(rates, minorUnits, from, to, minorOut, RoundingMode.HALF_EVEN);
+        return minorOut;
+    }
+}
@@ -0,0 +1,72 @@
+package bench;
+
+import engine.DefaultRates;
+import engine.RateTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single conversion: the original String-keyed HashMap path against the
+ * index-based cross-rate matrix, in doubles and exactly in minor units.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConversionBenchmark {
+
+    private RateTable rates;
+    private Map<String, Double> legacyRates;
+    private String fromCode;
+    private String toCode;
+    private int fromIdx;
+    private int toIdx;
+    private double amount;
+    private long minorUnits;
+
+    @Setup
+    public void setup() {
+        rates = DefaultRates.table();
+        legacyRates = new HashMap<>();
+        for (int i = 0; i < rates.size(); i++) {
+            legacyRates.put(rates.code(i), rates.baseRate(i));
+        }
+        // Fresh String instances so lookups hash like values read from the UI
+        fromCode = new String("EUR");
+        toCode = new String("JPY");
+        fromIdx = rates.require("EUR");
+        toIdx = rates.require("JPY");
+        amount = 1234.56;
+        minorUnits = 123456L;
+    }
+
+    @Benchmark
+    public double legacyHashMap() {
+        if (fromCode.equals(toCode)) {
+            return amount;
+        }
+        double usdAmount = amount / legacyRates.get(fromCode);
+        return usdAmount * legacyRates.get(toCode);
+    }
+
+    @Benchmark
+    public double matrixByIndex() {
+        return rates.convert(amount, fromIdx, toIdx);
+    }
+
+    @Benchmark
+    public long exactByIndex() {
+        return rates.convertMinor(minorUnits, fromIdx, toIdx, RoundingMode.HALF_EVEN);
+    }
+
+    @Benchmark
+    public double matrixByCode() {
+        return rates.convert(amount, rates.indexOf(fromCode), rates.indexOf(toCode));
+    }
+}
@@ -0,0 +1,78 @@
+package bench;
+
+import engine.DefaultRates;
+import engine.RateHistoryStore;
+import engine.RateTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-in-time conversion against a memory-mapped rate history: a binary
+ * search over the index, then the two base rates of the pair and a search of
+ * the record's few explicit crosses, all read from the mapped file.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HistoryBenchmark {
+
+    private static final long STEP_MILLIS = 1000;
+
+    @Param({"1024", "65536"})
+    public int records;
+
+    private Path dir;
+    private Path base;
+    private RateHistoryStore store;
+    private long[] timestamps;
+    private int fromIdx;
+    private int toIdx;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("history-bench");
+        base = dir.resolve("rates");
+        RateTable table = DefaultRates.table();
+        String[] codes = new String[table.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = table.code(i);
+        }
+        store = RateHistoryStore.open(base, codes);
+        for (int i = 0; i < records; i++) {
+            store.append(i * STEP_MILLIS, table);
+        }
+        fromIdx = store.indexOf("EUR");
+        toIdx = store.indexOf("JPY");
+
+        SplittableRandom random = new SplittableRandom(42);
+        timestamps = new long[1 << 12];
+        for (int i = 0; i < timestamps.length; i++) {
+            timestamps[i] = random.nextLong(records * STEP_MILLIS);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        for (String suffix : new String[] {".idx", ".dat"}) {
+            Files.deleteIfExists(Paths.get(base + suffix));
+        }
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public double convertAsOf() {
+        long timestamp = timestamps[next++ & (timestamps.length - 1)];
+        return store.convertAsOf(1234.56, fromIdx, toIdx, timestamp);
+    }
+}
@@ -0,0 +1,88 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+import util.AmountFormat;
+
+import java.nio.ByteBuffer;
+import java.text.DecimalFormat;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Amount parsing and result formatting: the JDK classes the Swing converter
+ * used originally against the garbage-free AmountFormat, both through doubles
+ * and through the exact minor-unit longs the converters now use.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseFormatBenchmark {
+
+    private final DecimalFormat formatter = new DecimalFormat("#,##0.00");
+    private final AmountFormat amountFormat = new AmountFormat(2, ',');
+    private final char[] chars = new char[64];
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(64);
+    private String amountText;
+    private double result;
+    private long resultUnits;
+    private double rate;
+
+    @Setup
+    public void setup() {
+        amountText = "1234567.89";
+        result = 104938271.65;
+        resultUnits = 10493827165L;
+        rate = 0.8500;
+    }
+
+    @Benchmark
+    public double parseDouble() {
+        return Double.parseDouble(amountText.trim());
+    }
+
+    @Benchmark
+    public String decimalFormat() {
+        return formatter.format(result) + " " + "EUR";
+    }
+
+    @Benchmark
+    public String stringFormatRate() {
+        return String.format("1 %s = %.4f %s", "USD", rate, "EUR");
+    }
+
+    @Benchmark
+    public double amountFormatParse() {
+        return amountFormat.parse(amountText);
+    }
+
+    @Benchmark
+    public int amountFormatToChars() {
+        return amountFormat.format(result, chars, 0);
+    }
+
+    @Benchmark
+    public int amountFormatToBytes() {
+        bytes.clear();
+        amountFormat.format(result, bytes);
+        return bytes.position();
+    }
+
+    @Benchmark
+    public long parseUnits() {
+        return amountFormat.parseUnits(amountText);
+    }
+
+    @Benchmark
+    public int formatUnitsToChars() {
+        return amountFormat.formatUnits(resultUnits, chars, 0);
+    }
+
+    @Benchmark
+    public int formatUnitsToBytes() {
+        bytes.clear();
+        amountFormat.formatUnits(resultUnits, bytes);
+        return bytes.position();
+    }
+}
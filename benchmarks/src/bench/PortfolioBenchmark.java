@@ -0,0 +1,56 @@
+package bench;
+
+import engine.DefaultRates;
+import engine.PortfolioRevaluer;
+import engine.RateTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Portfolio revaluation into one reporting currency, on the calling thread
+ * and across the fork/join pool.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PortfolioBenchmark {
+
+    @Param({"1024", "1048576", "16777216"})
+    public int positions;
+
+    private RateTable rates;
+    private PortfolioRevaluer revaluer;
+    private double[] amounts;
+    private short[] currencies;
+    private int reportingIdx;
+
+    @Setup
+    public void setup() {
+        rates = DefaultRates.table();
+        revaluer = new PortfolioRevaluer();
+        amounts = new double[positions];
+        currencies = new short[positions];
+        reportingIdx = rates.require("EUR");
+
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < positions; i++) {
+            amounts[i] = random.nextDouble() * 10_000.0;
+            currencies[i] = (short) random.nextInt(rates.size());
+        }
+    }
+
+    @Benchmark
+    public PortfolioRevaluer.Revaluation sequential() {
+        return revaluer.revalueSequential(rates, amounts, currencies, reportingIdx);
+    }
+
+    @Benchmark
+    public PortfolioRevaluer.Revaluation parallel() {
+        return revaluer.revalue(rates, amounts, currencies, reportingIdx);
+    }
+}
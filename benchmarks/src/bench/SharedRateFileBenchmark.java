@@ -0,0 +1,65 @@
+package bench;
+
+import engine.DefaultRates;
+import engine.RateTable;
+import engine.SharedRateFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copying a snapshot out of the shared rate file, alone and while another
+ * thread keeps publishing, which makes readers retry their seqlock reads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class SharedRateFileBenchmark {
+
+    private Path path;
+    private SharedRateFile writer;
+    private SharedRateFile reader;
+    private RateTable table;
+
+    @Setup
+    public void setup() throws IOException {
+        path = Files.createTempFile("rates", ".snap");
+        Files.delete(path);
+        table = DefaultRates.table();
+        writer = SharedRateFile.openWriter(path, table.size());
+        reader = SharedRateFile.openReader(path);
+        writer.publish(table);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        writer.close();
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    @Group("quiet")
+    public RateTable snapshot() {
+        return reader.snapshot();
+    }
+
+    @Benchmark
+    @Group("busy")
+    @GroupThreads(3)
+    public RateTable snapshotWhilePublishing() {
+        return reader.snapshot();
+    }
+
+    @Benchmark
+    @Group("busy")
+    public void publish() {
+        writer.publish(table);
+    }
+}
@@ -0,0 +1,50 @@
+package bench;
+
+import engine.DefaultRates;
+import engine.RateTable;
+import engine.TriangulationEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moving one quote of a connected graph, which only recomputes the cross
+ * rates below that edge, and taking the snapshot that publishes it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TriangulationBenchmark {
+
+    private TriangulationEngine engine;
+    private String base;
+    private String quoted;
+    private double rate;
+    private long version;
+
+    @Setup
+    public void setup() {
+        RateTable table = DefaultRates.table();
+        engine = TriangulationEngine.seededFrom(table);
+        base = table.code(0);
+        quoted = table.code(table.size() / 2);
+        rate = table.rate(0, table.size() / 2);
+        engine.snapshot(0); // settle the topology so updates take the incremental path
+    }
+
+    @Benchmark
+    public void updateEdge() {
+        rate = rate * (1.0 + 1e-9);
+        engine.setPair(base, quoted, rate);
+    }
+
+    @Benchmark
+    public RateTable updateAndSnapshot() {
+        rate = rate * (1.0 + 1e-9);
+        engine.setPair(base, quoted, rate);
+        return engine.snapshot(++version);
+    }
+}
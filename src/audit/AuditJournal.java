@@ -0,0 +1,537 @@
+package audit;
+
+import metrics.Metrics;
+import metrics.OperationStats;
+import model.User;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of conversions for compliance auditing.
+ *
+ * Callers on any thread {@link #record} into a preallocated ring without
+ * locks or allocation, and return without touching the disk. One writer
+ * thread drains whatever has accumulated, writes it as a single batch and
+ * fsyncs once per batch (group commit), so the cost of a sync is shared by
+ * every record in the batch. When the ring is full, callers wait for the
+ * writer rather than drop records. {@link #awaitDurable} lets a caller
+ * that needs it block until its own record is on disk.
+ *
+ * File layout: a 16-byte header (magic "AUJL", format, record size), then
+ * fixed 48-byte big-endian records:
+ * <pre>
+ * timestamp ms (8) | user id (4) | from (3) | to (3) | pad (2) |
+ * amount (8) | rate version (8) | result (8) | CRC32 of the preceding 44 bytes (4)
+ * </pre>
+ * Amount and result are the exact minor units that were converted and
+ * returned (cents for USD, yen for JPY), so the journal reproduces them
+ * to the last digit.
+ * A record whose checksum does not match marks a torn tail from a crash;
+ * it and anything after it are discarded when the journal is reopened.
+ *
+ * {@link #history} does not scan the file. The journal keeps each user's
+ * record numbers in memory (8 bytes per record), plus the timestamp range
+ * of every block of 4096 records. A lookup reads only that user's records,
+ * and skips those in blocks outside the requested time range. The index
+ * is built while the file is validated on open, and extended as each
+ * batch becomes durable.
+ */
+public class AuditJournal implements Closeable {
+
+    private static final int MAGIC = 0x41554A4C; // "AUJL"
+    private static final int FORMAT = 2;
+    private static final int HEADER_BYTES = 16;
+    static final int RECORD_BYTES = 48;
+    private static final int CHECKED_BYTES = RECORD_BYTES - Integer.BYTES;
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int MAX_BATCH = 4096;
+    private static final int READ_CHUNK_RECORDS = (1 << 30) / RECORD_BYTES;
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+    private static final int BLOCK_RECORDS = 4096;
+
+    private static final OperationStats COMMIT_STATS = Metrics.operation("audit.commit");
+
+    private final Path path;
+    private final FileChannel channel;
+
+    // Ring slots, one array per field so filling a slot allocates nothing
+    private final int mask;
+    private final long[] timestamps;
+    private final int[] users;
+    private final int[] fromCodes;
+    private final int[] toCodes;
+    private final long[] amounts;
+    private final long[] versions;
+    private final long[] results;
+    private final AtomicLongArray published; // sequence last written into each slot
+
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;          // slots below this sequence are free again
+    private volatile long durableCount;      // records below this sequence are fsynced
+    private volatile long durableBytes;
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+    private volatile boolean stopped;
+    private volatile IOException failure;
+
+    private final Thread writer;
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(MAX_BATCH * RECORD_BYTES);
+    private final int[] batchUsers = new int[MAX_BATCH];
+    private final long[] batchTimestamps = new long[MAX_BATCH];
+    private final Index index;
+    private final CRC32 crc = new CRC32();
+    private final Object durableLock = new Object();
+    private final LongAdder backpressureWaits = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    /**
+     * Record numbers per user, and the timestamp range of each block of records.
+     */
+    private static final class Index {
+        private final Map<Integer, Postings> byUser = new HashMap<>();
+        private long[] blockMin = new long[16];
+        private long[] blockMax = new long[16];
+        private long count;
+
+        synchronized void add(int userId, long timestamp) {
+            long record = count++;
+            byUser.computeIfAbsent(userId, u -> new Postings()).add(record);
+            int block = (int) (record / BLOCK_RECORDS);
+            if (block == blockMin.length) {
+                blockMin = Arrays.copyOf(blockMin, block * 2);
+                blockMax = Arrays.copyOf(blockMax, block * 2);
+            }
+            if (record % BLOCK_RECORDS == 0) {
+                blockMin[block] = timestamp;
+                blockMax[block] = timestamp;
+            } else {
+                blockMin[block] = Math.min(blockMin[block], timestamp);
+                blockMax[block] = Math.max(blockMax[block], timestamp);
+            }
+        }
+
+        /** The user's records, in order, except those in blocks wholly outside [fromMillis, toMillis). */
+        synchronized long[] records(int userId, long fromMillis, long toMillis) {
+            Postings postings = byUser.get(userId);
+            if (postings == null) {
+                return new long[0];
+            }
+            long[] matches = new long[postings.size];
+            int n = 0;
+            for (int i = 0; i < postings.size; i++) {
+                long record = postings.records[i];
+                int block = (int) (record / BLOCK_RECORDS);
+                if (blockMax[block] >= fromMillis && blockMin[block] < toMillis) {
+                    matches[n++] = record;
+                }
+            }
+            return Arrays.copyOf(matches, n);
+        }
+    }
+
+    private static final class Postings {
+        long[] records = new long[8];
+        int size;
+
+        void add(long record) {
+            if (size == records.length) {
+                records = Arrays.copyOf(records, size * 2);
+            }
+            records[size++] = record;
+        }
+    }
+
+    private AuditJournal(Path path, FileChannel channel, long length, int capacity, Index index) {
+        this.path = path;
+        this.channel = channel;
+        this.durableBytes = length;
+        this.index = index;
+        this.mask = capacity - 1;
+        this.timestamps = new long[capacity];
+        this.users = new int[capacity];
+        this.fromCodes = new int[capacity];
+        this.toCodes = new int[capacity];
+        this.amounts = new long[capacity];
+        this.versions = new long[capacity];
+        this.results = new long[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1L);
+        }
+        this.writer = new Thread(this::writeLoop, "audit-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static AuditJournal open(Path path) throws IOException {
+        return open(path, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Opens or creates the journal, truncating any torn tail.
+     *
+     * @param capacity ring size in records, a power of two
+     */
+    public static AuditJournal open(Path path, int capacity) throws IOException {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long length;
+            Index index = new Index();
+            if (channel.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(FORMAT).putInt(RECORD_BYTES).putInt(0).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                channel.force(true);
+                length = HEADER_BYTES;
+            } else {
+                checkHeader(channel, path);
+                length = HEADER_BYTES + scan(channel, channel.size(), null, index) * RECORD_BYTES;
+                channel.truncate(length);
+            }
+            channel.position(length);
+            return new AuditJournal(path, channel, length, capacity, index);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public Path getPath() { return path; }
+
+    public long record(User user, String fromCurrency, String toCurrency,
+                       long amountMinor, long rateVersion, long resultMinor) {
+        return record(user.getId(), fromCurrency, toCurrency, amountMinor, rateVersion, resultMinor);
+    }
+
+    /**
+     * Queues one conversion for the journal and returns its sequence number,
+     * for use with {@link #awaitDurable}. Does not wait for the disk.
+     * Amounts are in the minor units of their currency.
+     *
+     * @throws IllegalStateException if the journal is closed or its writer has failed
+     */
+    public long record(int userId, String fromCurrency, String toCurrency,
+                       long amountMinor, long rateVersion, long resultMinor) {
+        if (closed || stopped) {
+            throw new IllegalStateException("Audit journal " + path + " is not accepting records", failure);
+        }
+        int from = pack(fromCurrency);
+        int to = pack(toCurrency);
+
+        long sequence = claimed.getAndIncrement();
+        long wrapPoint = sequence - timestamps.length;
+        if (consumed <= wrapPoint) {
+            waitForSpace(wrapPoint);
+        }
+        int slot = (int) sequence & mask;
+        timestamps[slot] = System.currentTimeMillis();
+        users[slot] = userId;
+        fromCodes[slot] = from;
+        toCodes[slot] = to;
+        amounts[slot] = amountMinor;
+        versions[slot] = rateVersion;
+        results[slot] = resultMinor;
+        published.lazySet(slot, sequence);
+
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+        if (stopped && sequence >= consumed) {
+            throw new IllegalStateException("Audit journal " + path + " stopped before record was written", failure);
+        }
+        return sequence;
+    }
+
+    private void waitForSpace(long wrapPoint) {
+        backpressureWaits.increment();
+        while (consumed <= wrapPoint) {
+            if (stopped) {
+                throw new IllegalStateException("Audit journal " + path + " is not accepting records", failure);
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(50_000L);
+        }
+    }
+
+    /**
+     * Blocks until the record with this sequence number has been fsynced.
+     */
+    public void awaitDurable(long sequence) throws IOException, InterruptedException {
+        synchronized (durableLock) {
+            while (durableCount <= sequence) {
+                if (failure != null) {
+                    throw new IOException("Audit journal write failed", failure);
+                }
+                if (stopped) {
+                    throw new IOException("Audit journal closed before record " + sequence + " was written");
+                }
+                durableLock.wait(10);
+            }
+        }
+    }
+
+    /** Blocks until everything recorded so far is on disk. */
+    public void flush() throws IOException, InterruptedException {
+        awaitDurable(claimed.get() - 1);
+    }
+
+    public long getRecordedCount() { return claimed.get(); }
+    public long getDurableCount() { return durableCount; }
+    public long getBatchCount() { return batches.sum(); }
+    /** Times a caller found the ring full and had to wait for the writer. */
+    public long getBackpressureWaits() { return backpressureWaits.sum(); }
+
+    private void writeLoop() {
+        long next = 0;
+        try {
+            while (true) {
+                batch.clear();
+                int count = 0;
+                while (count < MAX_BATCH) {
+                    int slot = (int) next & mask;
+                    if (published.get(slot) != next) {
+                        break;
+                    }
+                    batchUsers[count] = users[slot];
+                    batchTimestamps[count] = timestamps[slot];
+                    encode(slot);
+                    next++;
+                    count++;
+                }
+
+                if (count == 0) {
+                    if (closed && next == claimed.get()) {
+                        return;
+                    }
+                    writerParked = true;
+                    if (published.get((int) next & mask) != next && !closed) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    writerParked = false;
+                    continue;
+                }
+
+                // The batch holds copies, so the slots can be reused while we sync
+                consumed = next;
+                long start = COMMIT_STATS.start();
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    channel.write(batch);
+                }
+                channel.force(false);
+                COMMIT_STATS.stop(start);
+                batches.increment();
+
+                for (int i = 0; i < count; i++) {
+                    index.add(batchUsers[i], batchTimestamps[i]);
+                }
+                durableBytes += (long) count * RECORD_BYTES;
+                synchronized (durableLock) {
+                    durableCount = next;
+                    durableLock.notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            failure = e;
+            System.err.println("Audit journal " + path + " failed: " + e.getMessage());
+        } finally {
+            stopped = true;
+            synchronized (durableLock) {
+                durableLock.notifyAll();
+            }
+        }
+    }
+
+    private void encode(int slot) {
+        int start = batch.position();
+        batch.putLong(timestamps[slot]);
+        batch.putInt(users[slot]);
+        putCode(batch, fromCodes[slot]);
+        putCode(batch, toCodes[slot]);
+        batch.putShort((short) 0);
+        batch.putLong(amounts[slot]);
+        batch.putLong(versions[slot]);
+        batch.putLong(results[slot]);
+
+        int end = batch.position();
+        batch.position(start).limit(end);
+        crc.reset();
+        crc.update(batch);
+        batch.limit(batch.capacity());
+        batch.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Replays every durable record in order.
+     */
+    public void replay(Consumer<AuditRecord> consumer) throws IOException {
+        // Own channel so reads never move the writer's position
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            scan(reader, durableBytes, consumer, null);
+        }
+    }
+
+    /** All durable conversions by one user, oldest first. */
+    public List<AuditRecord> history(int userId) throws IOException {
+        return history(userId, Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * Durable conversions by one user with timestamps in [fromMillis, toMillis), oldest first.
+     */
+    public List<AuditRecord> history(int userId, long fromMillis, long toMillis) throws IOException {
+        long[] candidates = index.records(userId, fromMillis, toMillis);
+        List<AuditRecord> records = new ArrayList<>();
+        if (candidates.length == 0) {
+            return records;
+        }
+        Map<Integer, String> codes = new HashMap<>();
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = null;
+            long chunkStart = -1;
+            for (long record : candidates) {
+                long chunk = record / READ_CHUNK_RECORDS * READ_CHUNK_RECORDS;
+                if (chunk != chunkStart) {
+                    long chunkEnd = Math.min(chunk + READ_CHUNK_RECORDS, (reader.size() - HEADER_BYTES) / RECORD_BYTES);
+                    mapped = reader.map(FileChannel.MapMode.READ_ONLY,
+                        HEADER_BYTES + chunk * RECORD_BYTES, (chunkEnd - chunk) * RECORD_BYTES);
+                    chunkStart = chunk;
+                }
+                int offset = (int) (record - chunkStart) * RECORD_BYTES;
+                long timestamp = mapped.getLong(offset);
+                if (timestamp >= fromMillis && timestamp < toMillis) {
+                    records.add(decode(mapped, offset, codes));
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Reads a journal file that is not open for writing, e.g. an archived one.
+     */
+    public static void replay(Path path, Consumer<AuditRecord> consumer) throws IOException {
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            checkHeader(reader, path);
+            scan(reader, reader.size(), consumer, null);
+        }
+    }
+
+    /**
+     * Walks valid records up to {@code limitBytes}, passing them to the
+     * consumer and adding them to the index (either may be null), and
+     * returns how many valid records precede the first torn or corrupt one.
+     */
+    private static long scan(FileChannel channel, long limitBytes, Consumer<AuditRecord> consumer,
+                             Index index) throws IOException {
+        long total = (limitBytes - HEADER_BYTES) / RECORD_BYTES;
+        Map<Integer, String> codes = new HashMap<>();
+        CRC32 check = new CRC32();
+        long valid = 0;
+        while (valid < total) {
+            int chunk = (int) Math.min(READ_CHUNK_RECORDS, total - valid);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY,
+                HEADER_BYTES + valid * RECORD_BYTES, (long) chunk * RECORD_BYTES);
+            for (int i = 0; i < chunk; i++) {
+                int offset = i * RECORD_BYTES;
+                mapped.limit(offset + CHECKED_BYTES).position(offset);
+                check.reset();
+                check.update(mapped);
+                mapped.limit(mapped.capacity());
+                if ((int) check.getValue() != mapped.getInt(offset + CHECKED_BYTES)) {
+                    return valid;
+                }
+                valid++;
+
+                if (index != null) {
+                    index.add(mapped.getInt(offset + 8), mapped.getLong(offset));
+                }
+                if (consumer != null) {
+                    consumer.accept(decode(mapped, offset, codes));
+                }
+            }
+        }
+        return valid;
+    }
+
+    private static AuditRecord decode(ByteBuffer mapped, int offset, Map<Integer, String> codes) {
+        return new AuditRecord(mapped.getLong(offset), mapped.getInt(offset + 8),
+            code(codes, getCode(mapped, offset + 12)), code(codes, getCode(mapped, offset + 15)),
+            mapped.getLong(offset + 20), mapped.getLong(offset + 28), mapped.getLong(offset + 36));
+    }
+
+    private static void checkHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException(path + " is not an audit journal");
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != FORMAT || header.getInt() != RECORD_BYTES) {
+            throw new IOException(path + " is not an audit journal");
+        }
+    }
+
+    /** Packs a three-letter code into the low 24 bits of an int. */
+    private static int pack(String code) {
+        if (code == null || code.length() != 3) {
+            throw new IllegalArgumentException("Currency code must have three letters: " + code);
+        }
+        return (code.charAt(0) & 0xFF) << 16 | (code.charAt(1) & 0xFF) << 8 | (code.charAt(2) & 0xFF);
+    }
+
+    private static void putCode(ByteBuffer buffer, int code) {
+        buffer.put((byte) (code >>> 16)).put((byte) (code >>> 8)).put((byte) code);
+    }
+
+    private static int getCode(ByteBuffer buffer, int offset) {
+        return (buffer.get(offset) & 0xFF) << 16 | (buffer.get(offset + 1) & 0xFF) << 8 | (buffer.get(offset + 2) & 0xFF);
+    }
+
+    private static String code(Map<Integer, String> cache, int packed) {
+        return cache.computeIfAbsent(packed, p -> new String(
+            new char[] { (char) (p >>> 16 & 0xFF), (char) (p >>> 8 & 0xFF), (char) (p & 0xFF) }));
+    }
+
+    /**
+     * Writes out everything recorded so far, then stops the writer.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (failure != null) {
+            throw new IOException("Audit journal write failed", failure);
+        }
+    }
+}
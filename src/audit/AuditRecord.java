@@ -0,0 +1,48 @@
+package audit;
+
+import model.Money;
+
+/**
+ * One conversion as stored in the {@link AuditJournal}.
+ */
+public final class AuditRecord {
+    private final long timestamp;
+    private final int userId;
+    private final String fromCurrency;
+    private final String toCurrency;
+    private final long amountMinor;
+    private final long rateVersion;
+    private final long resultMinor;
+
+    AuditRecord(long timestamp, int userId, String fromCurrency, String toCurrency,
+                long amountMinor, long rateVersion, long resultMinor) {
+        this.timestamp = timestamp;
+        this.userId = userId;
+        this.fromCurrency = fromCurrency;
+        this.toCurrency = toCurrency;
+        this.amountMinor = amountMinor;
+        this.rateVersion = rateVersion;
+        this.resultMinor = resultMinor;
+    }
+
+    /** Epoch milliseconds when the conversion was recorded. */
+    public long getTimestamp() { return timestamp; }
+    public int getUserId() { return userId; }
+    public String getFromCurrency() { return fromCurrency; }
+    public String getToCurrency() { return toCurrency; }
+    /** Amount converted, in minor units of the source currency. */
+    public long getAmountMinor() { return amountMinor; }
+    /** Version of the rate snapshot the conversion used. */
+    public long getRateVersion() { return rateVersion; }
+    /** Result, in minor units of the target currency. */
+    public long getResultMinor() { return resultMinor; }
+
+    public Money getAmount() { return Money.ofMinor(fromCurrency, amountMinor); }
+    public Money getResult() { return Money.ofMinor(toCurrency, resultMinor); }
+
+    @Override
+    public String toString() {
+        return timestamp + " user=" + userId + " " + getAmount() + " -> " + getResult()
+            + " (rates v" + rateVersion + ")";
+    }
+}
@@ -0,0 +1,89 @@
+package audit;
+
+import dao.UserDAO;
+import model.User;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the user a conversion is audited under against {@link UserDAO},
+ * so the journal only ever holds ids of users that exist.
+ *
+ * Lookups are cached, because the check sits on every audited request:
+ * known users for {@code ttl}, unknown ids for a shorter {@code negativeTtl}
+ * so a newly added user is accepted soon. The cache is cleared once it
+ * holds {@code maxSize} ids, which bounds what a client probing random ids
+ * can make it retain.
+ */
+public class AuditUsers {
+
+    private static final long DEFAULT_TTL_SECONDS = 60;
+    private static final long DEFAULT_NEGATIVE_TTL_SECONDS = 5;
+    private static final int DEFAULT_MAX_SIZE = 10_000;
+
+    private final UserDAO users;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final int maxSize;
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    private static final class Entry {
+        final User user; // null if there is no such user
+        final long expiresAt;
+
+        Entry(User user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    public AuditUsers(UserDAO users) {
+        this(users, DEFAULT_TTL_SECONDS, DEFAULT_NEGATIVE_TTL_SECONDS, TimeUnit.SECONDS, DEFAULT_MAX_SIZE);
+    }
+
+    public AuditUsers(UserDAO users, long ttl, long negativeTtl, TimeUnit unit, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.users = users;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.negativeTtlNanos = unit.toNanos(negativeTtl);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the user with this id, or null if there is none.
+     *
+     * @throws SQLException if the user table could not be read
+     */
+    public User resolve(int id) throws SQLException {
+        long now = System.nanoTime();
+        Entry entry = entries.get(id);
+        if (entry != null && now - entry.expiresAt < 0) {
+            return entry.user;
+        }
+        User user = users.getUser(id);
+        if (entries.size() >= maxSize) {
+            entries.clear();
+        }
+        entries.put(id, new Entry(user, now + (user != null ? ttlNanos : negativeTtlNanos)));
+        return user;
+    }
+
+    /**
+     * Resolves the user for a desktop session: {@code id} if it is set,
+     * otherwise the user with this username.
+     *
+     * @throws IllegalArgumentException if no such user exists
+     */
+    public User require(Integer id, String username) throws SQLException {
+        User user = id != null ? resolve(id) : users.getUserByUsername(username);
+        if (user == null) {
+            throw new IllegalArgumentException("Unknown audit user: " + (id != null ? "id " + id : username));
+        }
+        return user;
+    }
+}
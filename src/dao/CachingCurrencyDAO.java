@@ -0,0 +1,302 @@
+package dao;
+
+import model.Currency;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Read-through cache in front of another {@link CurrencyDAO}.
+ *
+ * Both the full rate set and per-pair lookups are cached for a TTL, and
+ * concurrent misses share one load, so every rate source, poller and
+ * request in a process together cost the database at most one read of
+ * each kind per TTL. Pairs that do not exist are cached as negative
+ * entries with their own, shorter TTL. Writes through this DAO invalidate
+ * the full set and the pairs they touch.
+ *
+ * Per-pair entries are bounded by {@code maxSize}. Past it, each insert
+ * samples a few entries and evicts an expired one, or else the least
+ * recently used of the sample, so eviction costs the same at any size.
+ */
+public class CachingCurrencyDAO implements CurrencyDAO {
+
+    private static final long DEFAULT_TTL_MILLIS = 1000;
+    private static final int DEFAULT_MAX_SIZE = 10_000;
+    private static final int EVICTION_SAMPLE = 8;
+
+    private final CurrencyDAO delegate;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final int maxSize;
+    private final Map<String, Entry<Currency>> entries = new ConcurrentHashMap<>();
+    private final AtomicReference<Entry<List<Currency>>> all = new AtomicReference<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Caches for {@code db.cache.ttl.ms} (default 1000), unknown pairs for a
+     * quarter of that.
+     */
+    public CachingCurrencyDAO(CurrencyDAO delegate) {
+        this(delegate, Long.getLong("db.cache.ttl.ms", DEFAULT_TTL_MILLIS));
+    }
+
+    private CachingCurrencyDAO(CurrencyDAO delegate, long ttlMillis) {
+        this(delegate, ttlMillis, ttlMillis / 4, TimeUnit.MILLISECONDS, DEFAULT_MAX_SIZE);
+    }
+
+    public CachingCurrencyDAO(CurrencyDAO delegate, long ttl, long negativeTtl, TimeUnit unit, int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.delegate = delegate;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.negativeTtlNanos = unit.toNanos(negativeTtl);
+        this.maxSize = maxSize;
+    }
+
+    private static final class Entry<T> {
+        final CompletableFuture<T> value = new CompletableFuture<>();
+        volatile long expiresAt; // written before the value completes
+        volatile long lastAccess;
+
+        Entry(long now) {
+            lastAccess = now;
+        }
+
+        /** An entry still loading never expires; its callers wait for it instead. */
+        boolean isExpired(long now) {
+            return value.isDone() && now - expiresAt >= 0;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Loader<T> {
+        T load() throws SQLException;
+    }
+
+    @Override
+    public List<Currency> getAllCurrencies() throws SQLException {
+        long now = System.nanoTime();
+        while (true) {
+            Entry<List<Currency>> entry = all.get();
+            if (entry != null && !entry.isExpired(now)) {
+                return hit(entry, now);
+            }
+            Entry<List<Currency>> fresh = new Entry<>(now);
+            if (all.compareAndSet(entry, fresh)) {
+                misses.increment();
+                return load(fresh, () -> Collections.unmodifiableList(delegate.getAllCurrencies()),
+                    () -> all.compareAndSet(fresh, null));
+            }
+        }
+    }
+
+    @Override
+    public void forEachCurrency(Consumer<Currency> consumer) throws SQLException {
+        for (Currency currency : getAllCurrencies()) {
+            consumer.accept(currency);
+        }
+    }
+
+    @Override
+    public Currency getCurrency(String fromCurrency, String toCurrency) throws SQLException {
+        String key = key(fromCurrency, toCurrency);
+        long now = System.nanoTime();
+        while (true) {
+            Entry<Currency> entry = entries.get(key);
+            if (entry != null && !entry.isExpired(now)) {
+                return hit(entry, now);
+            }
+            Entry<Currency> fresh = new Entry<>(now);
+            boolean won = entry == null
+                ? entries.putIfAbsent(key, fresh) == null
+                : entries.replace(key, entry, fresh);
+            if (!won) {
+                continue; // lost the race; use whatever the winner installed
+            }
+            misses.increment();
+            if (entry == null) {
+                evictIfFull();
+            }
+            return load(fresh, () -> delegate.getCurrency(fromCurrency, toCurrency),
+                () -> entries.remove(key, fresh));
+        }
+    }
+
+    private static String key(String fromCurrency, String toCurrency) {
+        return fromCurrency + '/' + toCurrency;
+    }
+
+    private <T> T hit(Entry<T> entry, long now) throws SQLException {
+        entry.lastAccess = now;
+        if (entry.value.isDone()) {
+            hits.increment();
+        } else {
+            // Another thread is loading this; wait for its result
+            misses.increment();
+        }
+        return await(entry);
+    }
+
+    private <T> T load(Entry<T> entry, Loader<T> loader, Runnable onFailure) throws SQLException {
+        long started = System.nanoTime();
+        try {
+            T value = loader.load();
+            long finished = System.nanoTime();
+            loads.increment();
+            loadNanos.add(finished - started);
+            entry.expiresAt = finished + (value == null ? negativeTtlNanos : ttlNanos);
+            entry.value.complete(value);
+            return value;
+        } catch (SQLException | RuntimeException e) {
+            loadFailures.increment();
+            loadNanos.add(System.nanoTime() - started);
+            // Do not cache failures; the next caller retries
+            onFailure.run();
+            entry.value.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static <T> T await(Entry<T> entry) throws SQLException {
+        try {
+            return entry.value.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for rate load", e);
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Rate load failed", cause);
+        }
+    }
+
+    private void evictIfFull() {
+        while (entries.size() > maxSize) {
+            long now = System.nanoTime();
+            String victimKey = null;
+            Entry<Currency> victim = null;
+            Iterator<Map.Entry<String, Entry<Currency>>> sample = entries.entrySet().iterator();
+            for (int i = 0; i < EVICTION_SAMPLE && sample.hasNext(); i++) {
+                Map.Entry<String, Entry<Currency>> e = sample.next();
+                Entry<Currency> candidate = e.getValue();
+                if (!candidate.value.isDone()) {
+                    continue;
+                }
+                if (candidate.isExpired(now)) {
+                    victimKey = e.getKey();
+                    victim = candidate;
+                    break;
+                }
+                if (victim == null || candidate.lastAccess - victim.lastAccess < 0) {
+                    victimKey = e.getKey();
+                    victim = candidate;
+                }
+            }
+            if (victim == null) {
+                return; // everything sampled is still loading
+            }
+            if (entries.remove(victimKey, victim)) {
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * Drops the cached entry for a pair, and the full set, so the next lookups reload them.
+     */
+    public void invalidate(String fromCurrency, String toCurrency) {
+        entries.remove(key(fromCurrency, toCurrency));
+        all.set(null);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+        all.set(null);
+    }
+
+    @Override
+    public void addCurrency(Currency currency) throws SQLException {
+        try {
+            delegate.addCurrency(currency);
+        } finally {
+            invalidate(currency.getFromCurrency(), currency.getToCurrency());
+        }
+    }
+
+    @Override
+    public boolean updateRate(String fromCurrency, String toCurrency, double rate) throws SQLException {
+        try {
+            return delegate.updateRate(fromCurrency, toCurrency, rate);
+        } finally {
+            invalidate(fromCurrency, toCurrency);
+        }
+    }
+
+    @Override
+    public boolean deleteCurrency(String fromCurrency, String toCurrency) throws SQLException {
+        try {
+            return delegate.deleteCurrency(fromCurrency, toCurrency);
+        } finally {
+            invalidate(fromCurrency, toCurrency);
+        }
+    }
+
+    @Override
+    public int upsertRates(Collection<Currency> currencies) throws SQLException {
+        try {
+            return delegate.upsertRates(currencies);
+        } finally {
+            for (Currency currency : currencies) {
+                invalidate(currency.getFromCurrency(), currency.getToCurrency());
+            }
+        }
+    }
+
+    public int size() { return entries.size(); }
+    public long getHitCount() { return hits.sum(); }
+    public long getMissCount() { return misses.sum(); }
+    public long getLoadCount() { return loads.sum(); }
+    public long getLoadFailureCount() { return loadFailures.sum(); }
+    public long getEvictionCount() { return evictions.sum(); }
+
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    public double getAverageLoadMillis() {
+        long count = loads.sum() + loadFailures.sum();
+        return count == 0 ? 0.0 : loadNanos.sum() / 1e6 / count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CachingCurrencyDAO{size=%d, hits=%d, misses=%d, hitRate=%.3f, loads=%d, "
+                + "failures=%d, avgLoad=%.3fms, evictions=%d}",
+            size(), getHitCount(), getMissCount(), getHitRate(), getLoadCount(),
+            getLoadFailureCount(), getAverageLoadMillis(), getEvictionCount());
+    }
+}
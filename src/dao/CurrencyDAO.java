@@ -0,0 +1,41 @@
+package dao;
+
+import model.Currency;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Data access for currency pair rates.
+ */
+public interface CurrencyDAO {
+
+    /**
+     * Loads every stored pair rate.
+     */
+    List<Currency> getAllCurrencies() throws SQLException;
+
+    /**
+     * Streams every stored pair rate to the consumer without buffering the result set.
+     */
+    void forEachCurrency(Consumer<Currency> consumer) throws SQLException;
+
+    /**
+     * Returns the rate for one pair, or null if it is not stored.
+     */
+    Currency getCurrency(String fromCurrency, String toCurrency) throws SQLException;
+
+    void addCurrency(Currency currency) throws SQLException;
+
+    boolean updateRate(String fromCurrency, String toCurrency, double rate) throws SQLException;
+
+    boolean deleteCurrency(String fromCurrency, String toCurrency) throws SQLException;
+
+    /**
+     * Inserts or updates many pair rates using JDBC batches.
+     * Returns the number of rows written.
+     */
+    int upsertRates(Collection<Currency> currencies) throws SQLException;
+}
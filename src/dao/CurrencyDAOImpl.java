@@ -1 +1,178 @@
-...
\ No newline at end of file
+package dao;
+
+import model.Currency;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * JDBC implementation of {@link CurrencyDAO} over the currency_rates table.
+ * Statements come from the pool's per-connection cache; bulk upserts are
+ * sent as JDBC batches of a configurable size in a single transaction.
+ * Upserts use ON DUPLICATE KEY UPDATE on MySQL and standard MERGE on any
+ * other database, such as an embedded H2 used for testing.
+ */
+public class CurrencyDAOImpl implements CurrencyDAO {
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final int DEFAULT_FETCH_SIZE = 1_000;
+
+    private static final String SELECT_ALL =
+        "SELECT id, from_currency, to_currency, rate FROM currency_rates ORDER BY id";
+    private static final String SELECT_PAIR =
+        "SELECT id, from_currency, to_currency, rate FROM currency_rates WHERE from_currency = ? AND to_currency = ?";
+    private static final String INSERT =
+        "INSERT INTO currency_rates (from_currency, to_currency, rate) VALUES (?, ?, ?)";
+    private static final String UPDATE_RATE =
+        "UPDATE currency_rates SET rate = ? WHERE from_currency = ? AND to_currency = ?";
+    private static final String DELETE =
+        "DELETE FROM currency_rates WHERE from_currency = ? AND to_currency = ?";
+    // MySQL has no MERGE; every other database gets the standard SQL:2003 form
+    private static final String UPSERT_MYSQL =
+        "INSERT INTO currency_rates (from_currency, to_currency, rate) VALUES (?, ?, ?) "
+        + "ON DUPLICATE KEY UPDATE rate = VALUES(rate)";
+    private static final String UPSERT_MERGE =
+        "MERGE INTO currency_rates t USING (VALUES (CAST(? AS CHAR(3)), CAST(? AS CHAR(3)), CAST(? AS DECIMAL(24, 12)))) "
+        + "s (from_currency, to_currency, rate) "
+        + "ON t.from_currency = s.from_currency AND t.to_currency = s.to_currency "
+        + "WHEN MATCHED THEN UPDATE SET rate = s.rate "
+        + "WHEN NOT MATCHED THEN INSERT (from_currency, to_currency, rate) "
+        + "VALUES (s.from_currency, s.to_currency, s.rate)";
+
+    private final DBConnection pool;
+    private final int batchSize;
+    private final String upsert;
+
+    public CurrencyDAOImpl() {
+        this(DBConnection.getInstance(), Integer.getInteger("db.batch.size", DEFAULT_BATCH_SIZE));
+    }
+
+    public CurrencyDAOImpl(DBConnection pool, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.pool = pool;
+        this.batchSize = batchSize;
+        this.upsert = isMySql(pool) ? UPSERT_MYSQL : UPSERT_MERGE;
+    }
+
+    private static boolean isMySql(DBConnection pool) {
+        return pool.getUrl().startsWith("jdbc:mysql:");
+    }
+
+    @Override
+    public List<Currency> getAllCurrencies() throws SQLException {
+        List<Currency> currencies = new ArrayList<>();
+        forEachCurrency(currencies::add);
+        return currencies;
+    }
+
+    @Override
+    public void forEachCurrency(Consumer<Currency> consumer) throws SQLException {
+        try (DBConnection.PooledConnection conn = pool.acquire()) {
+            PreparedStatement statement = conn.prepare(SELECT_ALL);
+            // MySQL Connector/J only streams rows with this sentinel fetch size
+            statement.setFetchSize(isMySql(pool) ? Integer.MIN_VALUE : DEFAULT_FETCH_SIZE);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    consumer.accept(read(rs));
+                }
+            }
+        }
+    }
+
+    @Override
+    public Currency getCurrency(String fromCurrency, String toCurrency) throws SQLException {
+        try (DBConnection.PooledConnection conn = pool.acquire()) {
+            PreparedStatement statement = conn.prepare(SELECT_PAIR);
+            statement.setString(1, fromCurrency);
+            statement.setString(2, toCurrency);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? read(rs) : null;
+            }
+        }
+    }
+
+    @Override
+    public void addCurrency(Currency currency) throws SQLException {
+        try (DBConnection.PooledConnection conn = pool.acquire()) {
+            PreparedStatement statement = conn.prepare(INSERT);
+            bindPair(statement, currency);
+            statement.executeUpdate();
+        }
+    }
+
+    @Override
+    public boolean updateRate(String fromCurrency, String toCurrency, double rate) throws SQLException {
+        try (DBConnection.PooledConnection conn = pool.acquire()) {
+            PreparedStatement statement = conn.prepare(UPDATE_RATE);
+            statement.setBigDecimal(1, BigDecimal.valueOf(rate));
+            statement.setString(2, fromCurrency);
+            statement.setString(3, toCurrency);
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    @Override
+    public boolean deleteCurrency(String fromCurrency, String toCurrency) throws SQLException {
+        try (DBConnection.PooledConnection conn = pool.acquire()) {
+            PreparedStatement statement = conn.prepare(DELETE);
+            statement.setString(1, fromCurrency);
+            statement.setString(2, toCurrency);
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    @Override
+    public int upsertRates(Collection<Currency> currencies) throws SQLException {
+        if (currencies.isEmpty()) {
+            return 0;
+        }
+        try (DBConnection.PooledConnection conn = pool.acquire()) {
+            Connection connection = conn.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement statement = conn.prepare(upsert);
+                int pending = 0;
+                int written = 0;
+                for (Currency currency : currencies) {
+                    bindPair(statement, currency);
+                    statement.addBatch();
+                    if (++pending == batchSize) {
+                        statement.executeBatch();
+                        written += pending;
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    statement.executeBatch();
+                    written += pending;
+                }
+                connection.commit();
+                return written;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+
+    private static void bindPair(PreparedStatement statement, Currency currency) throws SQLException {
+        statement.setString(1, currency.getFromCurrency());
+        statement.setString(2, currency.getToCurrency());
+        statement.setBigDecimal(3, BigDecimal.valueOf(currency.getRate()));
+    }
+
+    private static Currency read(ResultSet rs) throws SQLException {
+        return new Currency(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getBigDecimal(4).doubleValue());
+    }
+}
@@ -1 +1,221 @@
-...
\ No newline at end of file
+package dao;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded JDBC connection pool.
+ * Connections are created lazily up to the pool size and each one keeps
+ * its own prepared statements, so repeated queries skip re-preparation.
+ * Every borrow gets its own {@link PooledConnection} handle, which stops
+ * working once it is closed, so a stale handle can never reach a
+ * connection that has since been lent to someone else.
+ *
+ * Settings default to a local MySQL database and can be overridden with
+ * the system properties db.url, db.user, db.password, db.pool.size and
+ * db.pool.timeout.ms (e.g. to point at an embedded database for testing).
+ */
+public class DBConnection {
+
+    private static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/currency_converter";
+    private static final String DEFAULT_USER = "root";
+    private static final String DEFAULT_PASSWORD = "";
+    private static final int DEFAULT_POOL_SIZE = 8;
+    private static final long DEFAULT_TIMEOUT_MS = 5_000;
+
+    private static volatile DBConnection instance;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long timeoutMillis;
+    private final BlockingQueue<Physical> idle;
+    private final AtomicInteger created = new AtomicInteger();
+    private volatile boolean closed;
+
+    public DBConnection(String url, String user, String password, int maxSize, long timeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.timeoutMillis = timeoutMillis;
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+    }
+
+    /**
+     * Shared pool configured from system properties.
+     */
+    public static DBConnection getInstance() {
+        DBConnection pool = instance;
+        if (pool == null) {
+            synchronized (DBConnection.class) {
+                pool = instance;
+                if (pool == null) {
+                    pool = new DBConnection(
+                        System.getProperty("db.url", DEFAULT_URL),
+                        System.getProperty("db.user", DEFAULT_USER),
+                        System.getProperty("db.password", DEFAULT_PASSWORD),
+                        Integer.getInteger("db.pool.size", DEFAULT_POOL_SIZE),
+                        Long.getLong("db.pool.timeout.ms", DEFAULT_TIMEOUT_MS));
+                    instance = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    public String getUrl() { return url; }
+
+    /**
+     * Borrows a connection, waiting up to the pool timeout if all are in use.
+     * Close the returned handle to give it back.
+     */
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        Physical pooled = idle.poll();
+        if (pooled == null) {
+            pooled = tryCreate();
+        }
+        if (pooled == null) {
+            try {
+                pooled = idle.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection", e);
+            }
+            if (pooled == null) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+        }
+        if (pooled.connection.isClosed()) {
+            pooled.discard();
+            return acquire();
+        }
+        return new PooledConnection(pooled);
+    }
+
+    private Physical tryCreate() throws SQLException {
+        while (true) {
+            int count = created.get();
+            if (count >= maxSize) {
+                return null;
+            }
+            if (created.compareAndSet(count, count + 1)) {
+                try {
+                    return new Physical(DriverManager.getConnection(url, user, password));
+                } catch (SQLException | RuntimeException e) {
+                    created.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void release(Physical pooled) {
+        boolean healthy;
+        try {
+            healthy = !closed && !pooled.connection.isClosed() && pooled.connection.getAutoCommit();
+        } catch (SQLException e) {
+            healthy = false;
+        }
+        if (!healthy || !idle.offer(pooled)) {
+            pooled.discard();
+        }
+    }
+
+    /**
+     * Closes idle connections and rejects further borrowing.
+     * Connections still in use are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        Physical pooled;
+        while ((pooled = idle.poll()) != null) {
+            pooled.discard();
+        }
+    }
+
+    /**
+     * A physical connection with its prepared statement cache. Lives in the
+     * idle queue between borrows.
+     */
+    private final class Physical {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private Physical(Connection connection) {
+            this.connection = connection;
+        }
+
+        private void discard() {
+            created.decrementAndGet();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // Already broken; nothing else to do
+            }
+        }
+    }
+
+    /**
+     * One borrow of a pooled connection. Closing it returns the connection
+     * to the pool exactly once; after that every method fails.
+     */
+    public final class PooledConnection implements AutoCloseable {
+        private final Physical physical;
+        private boolean released;
+
+        private PooledConnection(Physical physical) {
+            this.physical = physical;
+        }
+
+        public Connection getConnection() throws SQLException {
+            return checkOpen().connection;
+        }
+
+        /**
+         * Returns a cached statement for the SQL, preparing it on first use.
+         * Parameters from a previous use are cleared.
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            Physical p = checkOpen();
+            PreparedStatement statement = p.statements.get(sql);
+            if (statement == null || statement.isClosed()) {
+                statement = p.connection.prepareStatement(sql);
+                p.statements.put(sql, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        private Physical checkOpen() throws SQLException {
+            if (released) {
+                throw new SQLException("Connection has already been returned to the pool");
+            }
+            return physical;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(physical);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package dao;
+
+import metrics.Metrics;
+import metrics.OperationStats;
+import model.Currency;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Records call counts, failures and latency for every call to another
+ * {@link CurrencyDAO}, under operations named {@code dao.<method>}.
+ * Wrap the JDBC DAO directly to measure database time, or wrap the
+ * {@link CachingCurrencyDAO} to measure what callers actually see.
+ */
+public class InstrumentedCurrencyDAO implements CurrencyDAO {
+
+    private static final OperationStats GET_ALL = Metrics.operation("dao.getAllCurrencies");
+    private static final OperationStats FOR_EACH = Metrics.operation("dao.forEachCurrency");
+    private static final OperationStats GET = Metrics.operation("dao.getCurrency");
+    private static final OperationStats ADD = Metrics.operation("dao.addCurrency");
+    private static final OperationStats UPDATE = Metrics.operation("dao.updateRate");
+    private static final OperationStats DELETE = Metrics.operation("dao.deleteCurrency");
+    private static final OperationStats UPSERT = Metrics.operation("dao.upsertRates");
+
+    private final CurrencyDAO delegate;
+
+    public InstrumentedCurrencyDAO(CurrencyDAO delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Currency> getAllCurrencies() throws SQLException {
+        long start = GET_ALL.start();
+        try {
+            List<Currency> currencies = delegate.getAllCurrencies();
+            GET_ALL.stop(start);
+            return currencies;
+        } catch (SQLException | RuntimeException e) {
+            GET_ALL.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public void forEachCurrency(Consumer<Currency> consumer) throws SQLException {
+        long start = FOR_EACH.start();
+        try {
+            delegate.forEachCurrency(consumer);
+            FOR_EACH.stop(start);
+        } catch (SQLException | RuntimeException e) {
+            FOR_EACH.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public Currency getCurrency(String fromCurrency, String toCurrency) throws SQLException {
+        long start = GET.start();
+        try {
+            Currency currency = delegate.getCurrency(fromCurrency, toCurrency);
+            GET.stop(start);
+            return currency;
+        } catch (SQLException | RuntimeException e) {
+            GET.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public void addCurrency(Currency currency) throws SQLException {
+        long start = ADD.start();
+        try {
+            delegate.addCurrency(currency);
+            ADD.stop(start);
+        } catch (SQLException | RuntimeException e) {
+            ADD.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean updateRate(String fromCurrency, String toCurrency, double rate) throws SQLException {
+        long start = UPDATE.start();
+        try {
+            boolean updated = delegate.updateRate(fromCurrency, toCurrency, rate);
+            UPDATE.stop(start);
+            return updated;
+        } catch (SQLException | RuntimeException e) {
+            UPDATE.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean deleteCurrency(String fromCurrency, String toCurrency) throws SQLException {
+        long start = DELETE.start();
+        try {
+            boolean deleted = delegate.deleteCurrency(fromCurrency, toCurrency);
+            DELETE.stop(start);
+            return deleted;
+        } catch (SQLException | RuntimeException e) {
+            DELETE.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public int upsertRates(Collection<Currency> currencies) throws SQLException {
+        long start = UPSERT.start();
+        try {
+            int written = delegate.upsertRates(currencies);
+            UPSERT.stop(start);
+            return written;
+        } catch (SQLException | RuntimeException e) {
+            UPSERT.failed(start);
+            throw e;
+        }
+    }
+}
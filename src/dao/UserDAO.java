@@ -1 +1,31 @@
-...
\ No newline at end of file
+package dao;
+
+import model.User;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Data access for application users.
+ */
+public interface UserDAO {
+
+    List<User> getAllUsers() throws SQLException;
+
+    /**
+     * Returns the user with this id, or null if there is none.
+     */
+    User getUser(int id) throws SQLException;
+
+    /**
+     * Returns the user with this username, or null if there is none.
+     */
+    User getUserByUsername(String username) throws SQLException;
+
+    /**
+     * Inserts the user and returns the generated id.
+     */
+    int addUser(User user) throws SQLException;
+
+    boolean deleteUser(int id) throws SQLException;
+}
@@ -0,0 +1,98 @@
+package dao;
+
+import model.User;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC implementation of {@link UserDAO} over the users table.
+ */
+public class UserDAOImpl implements UserDAO {
+
+    private static final String SELECT_ALL = "SELECT id, username, email FROM users ORDER BY id";
+    private static final String SELECT_BY_ID = "SELECT id, username, email FROM users WHERE id = ?";
+    private static final String SELECT_BY_USERNAME = "SELECT id, username, email FROM users WHERE username = ?";
+    private static final String INSERT = "INSERT INTO users (username, email) VALUES (?, ?)";
+    private static final String DELETE = "DELETE FROM users WHERE id = ?";
+
+    private final DBConnection pool;
+
+    public UserDAOImpl() {
+        this(DBConnection.getInstance());
+    }
+
+    public UserDAOImpl(DBConnection pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public List<User> getAllUsers() throws SQLException {
+        List<User> users = new ArrayList<>();
+        try (DBConnection.PooledConnection conn = pool.acquire()) {
+            try (ResultSet rs = conn.prepare(SELECT_ALL).executeQuery()) {
+                while (rs.next()) {
+                    users.add(read(rs));
+                }
+            }
+        }
+        return users;
+    }
+
+    @Override
+    public User getUser(int id) throws SQLException {
+        try (DBConnection.PooledConnection conn = pool.acquire()) {
+            PreparedStatement statement = conn.prepare(SELECT_BY_ID);
+            statement.setInt(1, id);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? read(rs) : null;
+            }
+        }
+    }
+
+    @Override
+    public User getUserByUsername(String username) throws SQLException {
+        try (DBConnection.PooledConnection conn = pool.acquire()) {
+            PreparedStatement statement = conn.prepare(SELECT_BY_USERNAME);
+            statement.setString(1, username);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() ? read(rs) : null;
+            }
+        }
+    }
+
+    @Override
+    public int addUser(User user) throws SQLException {
+        try (DBConnection.PooledConnection conn = pool.acquire();
+             // Generated keys need their own statement, so this one bypasses the cache
+             PreparedStatement statement = conn.getConnection()
+                 .prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS)) {
+            statement.setString(1, user.getUsername());
+            statement.setString(2, user.getEmail());
+            statement.executeUpdate();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    throw new SQLException("No id generated for user " + user.getUsername());
+                }
+                return keys.getInt(1);
+            }
+        }
+    }
+
+    @Override
+    public boolean deleteUser(int id) throws SQLException {
+        try (DBConnection.PooledConnection conn = pool.acquire()) {
+            PreparedStatement statement = conn.prepare(DELETE);
+            statement.setInt(1, id);
+            return statement.executeUpdate() > 0;
+        }
+    }
+
+    private static User read(ResultSet rs) throws SQLException {
+        return new User(rs.getInt("id"), rs.getString("username"), rs.getString("email"));
+    }
+}
@@ -0,0 +1,219 @@
+package engine;
+
+import java.math.RoundingMode;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Headless columnar conversion over a {@link RateTable} snapshot.
+ * Inputs are parallel arrays (amount, from index, to index) and results
+ * are written into a caller-supplied output array, so a batch allocates nothing.
+ */
+public final class BatchConverter {
+
+    // Below this many rows a fork/join split costs more than it saves
+    static final int DEFAULT_SPLIT_THRESHOLD = 1 << 16;
+
+    private final ForkJoinPool pool;
+    private final int splitThreshold;
+
+    public BatchConverter() {
+        this(ForkJoinPool.commonPool(), DEFAULT_SPLIT_THRESHOLD);
+    }
+
+    public BatchConverter(ForkJoinPool pool, int splitThreshold) {
+        if (splitThreshold < 1) {
+            throw new IllegalArgumentException("splitThreshold must be positive");
+        }
+        this.pool = pool;
+        this.splitThreshold = splitThreshold;
+    }
+
+    /**
+     * Converts every row on the calling thread.
+     */
+    public static void convert(RateTable rates, double[] amounts, short[] from, short[] to, double[] out) {
+        checkLengths(amounts.length, from.length, to.length, out.length);
+        checkIndexes(rates.size(), from, to);
+        convertRange(rates.matrix(), rates.size(), amounts, from, to, out, 0, amounts.length);
+    }
+
+    /**
+     * Converts a column where every row shares the same pair.
+     * This is a plain scalar multiply, which the JIT vectorizes.
+     */
+    public static void convert(RateTable rates, double[] amounts, int fromIdx, int toIdx, double[] out) {
+        if (out.length < amounts.length) {
+            throw new IllegalArgumentException("output array is shorter than input");
+        }
+        checkIndex(rates.size(), fromIdx, -1);
+        checkIndex(rates.size(), toIdx, -1);
+        double rate = rates.rate(fromIdx, toIdx);
+        for (int i = 0; i < amounts.length; i++) {
+            out[i] = amounts[i] * rate;
+        }
+    }
+
+    /**
+     * Converts every row, splitting large batches across the fork/join pool.
+     */
+    public void convertParallel(RateTable rates, double[] amounts, short[] from, short[] to, double[] out) {
+        checkLengths(amounts.length, from.length, to.length, out.length);
+        checkIndexes(rates.size(), from, to);
+        if (amounts.length <= splitThreshold) {
+            convertRange(rates.matrix(), rates.size(), amounts, from, to, out, 0, amounts.length);
+            return;
+        }
+        pool.invoke(new ConvertTask(rates.matrix(), rates.size(), amounts, from, to, out,
+            0, amounts.length, splitThreshold));
+    }
+
+    /**
+     * Exact conversion of minor-unit amounts using the fixed-point rate matrix.
+     * Results are identical to {@link RateTable#convertMinor} row by row.
+     */
+    public static void convertExact(RateTable rates, long[] minorUnits, short[] from, short[] to,
+                                    long[] out, RoundingMode rounding) {
+        checkLengths(minorUnits.length, from.length, to.length, out.length);
+        checkIndexes(rates.size(), from, to);
+        convertExactRange(rates, minorUnits, from, to, out, rounding, 0, minorUnits.length);
+    }
+
+    public void convertExactParallel(RateTable rates, long[] minorUnits, short[] from, short[] to,
+                                     long[] out, RoundingMode rounding) {
+        checkLengths(minorUnits.length, from.length, to.length, out.length);
+        checkIndexes(rates.size(), from, to);
+        if (minorUnits.length <= splitThreshold) {
+            convertExactRange(rates, minorUnits, from, to, out, rounding, 0, minorUnits.length);
+            return;
+        }
+        pool.invoke(new ExactTask(rates, minorUnits, from, to, out, rounding,
+            0, minorUnits.length, splitThreshold));
+    }
+
+    static void convertExactRange(RateTable rates, long[] minorUnits, short[] from, short[] to,
+                                  long[] out, RoundingMode rounding, int start, int end) {
+        for (int i = start; i < end; i++) {
+            out[i] = rates.convertMinor(minorUnits[i], from[i], to[i], rounding);
+        }
+    }
+
+    // No branches in the loop body: one gather from the matrix and one multiply per row
+    static void convertRange(double[] matrix, int n, double[] amounts, short[] from, short[] to,
+                             double[] out, int start, int end) {
+        for (int i = start; i < end; i++) {
+            out[i] = amounts[i] * matrix[from[i] * n + to[i]];
+        }
+    }
+
+    private static void checkLengths(int amounts, int from, int to, int out) {
+        if (from != amounts || to != amounts) {
+            throw new IllegalArgumentException("amount, from and to columns must have the same length");
+        }
+        if (out < amounts) {
+            throw new IllegalArgumentException("output array is shorter than input");
+        }
+    }
+
+    /**
+     * Checks every index column entry once, up front, so the loops can read
+     * the matrix unchecked: an index past a row would silently pick another cell.
+     */
+    private static void checkIndexes(int n, short[] from, short[] to) {
+        int min = 0;
+        int max = 0;
+        for (int i = 0; i < from.length; i++) {
+            min = Math.min(min, Math.min(from[i], to[i]));
+            max = Math.max(max, Math.max(from[i], to[i]));
+        }
+        if (min < 0 || max >= n) {
+            for (int i = 0; i < from.length; i++) {
+                checkIndex(n, from[i], i);
+                checkIndex(n, to[i], i);
+            }
+        }
+    }
+
+    private static void checkIndex(int n, int index, int row) {
+        if (index < 0 || index >= n) {
+            throw new IllegalArgumentException((row < 0 ? "" : "Row " + row + ": ")
+                + "currency index " + index + " is outside the table of " + n + " currencies");
+        }
+    }
+
+    private static final class ConvertTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final double[] matrix;
+        private final int n;
+        private final double[] amounts;
+        private final short[] from;
+        private final short[] to;
+        private final double[] out;
+        private final int start;
+        private final int end;
+        private final int threshold;
+
+        ConvertTask(double[] matrix, int n, double[] amounts, short[] from, short[] to, double[] out,
+                    int start, int end, int threshold) {
+            this.matrix = matrix;
+            this.n = n;
+            this.amounts = amounts;
+            this.from = from;
+            this.to = to;
+            this.out = out;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= threshold) {
+                convertRange(matrix, n, amounts, from, to, out, start, end);
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new ConvertTask(matrix, n, amounts, from, to, out, start, mid, threshold),
+                      new ConvertTask(matrix, n, amounts, from, to, out, mid, end, threshold));
+        }
+    }
+
+    private static final class ExactTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final RateTable rates;
+        private final long[] minorUnits;
+        private final short[] from;
+        private final short[] to;
+        private final long[] out;
+        private final RoundingMode rounding;
+        private final int start;
+        private final int end;
+        private final int threshold;
+
+        ExactTask(RateTable rates, long[] minorUnits, short[] from, short[] to, long[] out,
+                  RoundingMode rounding, int start, int end, int threshold) {
+            this.rates = rates;
+            this.minorUnits = minorUnits;
+            this.from = from;
+            this.to = to;
+            this.out = out;
+            this.rounding = rounding;
+            this.start = start;
+            this.end = end;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= threshold) {
+                convertExactRange(rates, minorUnits, from, to, out, rounding, start, end);
+                return;
+            }
+            int mid = (start + end) >>> 1;
+            invokeAll(new ExactTask(rates, minorUnits, from, to, out, rounding, start, mid, threshold),
+                      new ExactTask(rates, minorUnits, from, to, out, rounding, mid, end, threshold));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package engine;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Resolves three-letter currency codes to {@link RateTable} indices straight
+ * from bytes or chars, without creating a String. Matching ignores case and
+ * any non-letter padding (spaces, quotes) around the code.
+ */
+public final class CodeIndex {
+
+    /** Number of distinct keys; every {@link #keyOf} result is below this. */
+    public static final int KEYS = 26 * 26 * 26;
+
+    private final int[] indexByKey = new int[KEYS];
+
+    public CodeIndex(RateTable rates) {
+        Arrays.fill(indexByKey, -1);
+        for (int i = 0; i < rates.size(); i++) {
+            String code = rates.code(i);
+            if (code.length() == 3) {
+                int key = key(code.charAt(0), code.charAt(1), code.charAt(2));
+                if (key >= 0) {
+                    indexByKey[key] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Index of the code between the absolute positions start and end, or -1.
+     */
+    public int resolve(ByteBuffer buf, int start, int end) {
+        return indexOfKey(keyOf(buf, start, end));
+    }
+
+    public int resolve(byte[] bytes, int start, int end) {
+        while (start < end && !isLetter(bytes[start])) start++;
+        while (end > start && !isLetter(bytes[end - 1])) end--;
+        if (end - start != 3) {
+            return -1;
+        }
+        int key = key(bytes[start], bytes[start + 1], bytes[start + 2]);
+        return key < 0 ? -1 : indexByKey[key];
+    }
+
+    public int resolve(CharSequence text, int start, int end) {
+        return indexOfKey(keyOf(text, start, end));
+    }
+
+    /**
+     * Index for a key from {@link #keyOf}, or -1 if the key is invalid or
+     * the code is not in the table.
+     */
+    public int indexOfKey(int key) {
+        return key < 0 ? -1 : indexByKey[key];
+    }
+
+    /**
+     * Key of the code between the absolute positions start and end, or -1.
+     * Keys depend only on the letters, not on any rate table, so they stay
+     * valid when the set of currencies changes.
+     */
+    public static int keyOf(ByteBuffer buf, int start, int end) {
+        while (start < end && !isLetter(buf.get(start))) start++;
+        while (end > start && !isLetter(buf.get(end - 1))) end--;
+        if (end - start != 3) {
+            return -1;
+        }
+        return key(buf.get(start), buf.get(start + 1), buf.get(start + 2));
+    }
+
+    public static int keyOf(CharSequence text, int start, int end) {
+        while (start < end && !isLetter(text.charAt(start))) start++;
+        while (end > start && !isLetter(text.charAt(end - 1))) end--;
+        if (end - start != 3) {
+            return -1;
+        }
+        return key(text.charAt(start), text.charAt(start + 1), text.charAt(start + 2));
+    }
+
+    public static int keyOf(CharSequence code) {
+        return keyOf(code, 0, code.length());
+    }
+
+    private static boolean isLetter(int c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static int key(int a, int b, int c) {
+        int x = (a | 0x20) - 'a';
+        int y = (b | 0x20) - 'a';
+        int z = (c | 0x20) - 'a';
+        if (x < 0 || x >= 26 || y < 0 || y >= 26 || z < 0 || z >= 26) {
+            return -1;
+        }
+        return (x * 26 + y) * 26 + z;
+    }
+}
@@ -0,0 +1,36 @@
+package engine;
+
+import dao.CurrencyDAO;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * Loads rates through the currency DAO, triangulating any pairs the
+ * table does not quote directly. Databases cannot push changes,
+ * so this source relies on the refresher's polling interval.
+ */
+public class DatabaseRateSource implements RateSource {
+
+    private final CurrencyDAO currencyDAO;
+
+    public DatabaseRateSource(CurrencyDAO currencyDAO) {
+        this.currencyDAO = currencyDAO;
+    }
+
+    @Override
+    public RateTable load(long version) throws IOException {
+        try {
+            return TriangulationEngine.of(currencyDAO.getAllCurrencies()).snapshot(version);
+        } catch (SQLException e) {
+            throw new IOException("Failed to load rates from database", e);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid rates in database: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "database";
+    }
+}
@@ -0,0 +1,21 @@
+package engine;
+
+/**
+ * Built-in exchange rates (1 USD = these amounts), used when no other
+ * rate source has been configured.
+ */
+public final class DefaultRates {
+
+    private static final String[] CODES = {
+        "USD", "EUR", "GBP", "JPY", "AUD", "CAD", "CHF", "CNY", "INR", "KRW", "BRL", "RUB"
+    };
+    private static final double[] PER_USD = {
+        1.0, 0.85, 0.73, 110.0, 1.35, 1.25, 0.92, 6.45, 82.50, 1180.0, 5.20, 73.50
+    };
+
+    private static final RateTable TABLE = RateTable.fromBaseRates(1, CODES, PER_USD);
+
+    private DefaultRates() {}
+
+    public static RateTable table() { return TABLE; }
+}
@@ -0,0 +1,330 @@
+package engine;
+
+import dao.CachingCurrencyDAO;
+import dao.CurrencyDAOImpl;
+import dao.InstrumentedCurrencyDAO;
+import util.AmountFormat;
+
+import java.io.IOException;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming conversion of large transaction files.
+ * The input is memory-mapped in fixed-size windows and parsed in place,
+ * without creating a String per row. Each accepted row is copied to the
+ * output followed by a delimiter and the converted amount, written in chunks.
+ * Amounts are read as exact minor units of the source currency, converted
+ * with {@link RateTable#convertMinor} and written with the target currency's
+ * decimals; a row with more decimals than its currency has, or whose result
+ * overflows, is rejected. Blank lines are skipped.
+ * Heap usage is bounded by the output buffer regardless of file size.
+ * Instances keep per-row parse state and are not thread-safe.
+ *
+ * Usage: java -cp bin engine.FileConverter input.csv output.csv [--skip-header]
+ *
+ * The file is converted against the current rates from the same sources the
+ * GUI and server read: {@code -Drates.shared=<file>}, {@code -Drates.file=<file>}
+ * or the database with {@code -Drates.db.ms}, and otherwise the built-in table.
+ */
+public final class FileConverter {
+
+    private static final int DEFAULT_WINDOW = 64 << 20;
+    private static final int DEFAULT_OUTPUT_BUFFER = 1 << 20;
+    private static final RoundingMode ROUNDING = RoundingMode.HALF_EVEN;
+    // Indexed by a currency's minor-unit digits. Input may carry thousands
+    // separators in fixed-width files; output never does
+    private static final AmountFormat[] INPUT_FORMATS = {
+        new AmountFormat(0, ','), new AmountFormat(1, ','), new AmountFormat(2, ','), new AmountFormat(3, ',')
+    };
+    private static final AmountFormat[] OUTPUT_FORMATS = {
+        new AmountFormat(0, (char) 0), new AmountFormat(1, (char) 0),
+        new AmountFormat(2, (char) 0), new AmountFormat(3, (char) 0)
+    };
+
+    /**
+     * Describes where the amount and currency columns sit in each row.
+     */
+    public static final class Layout {
+        final boolean csv;
+        final byte delimiter;
+        final int amountField, fromField, toField;      // CSV column numbers
+        final int amountStart, amountLength, fromStart, toStart; // fixed-width byte offsets
+
+        private Layout(boolean csv, byte delimiter, int amountField, int fromField, int toField,
+                       int amountStart, int amountLength, int fromStart, int toStart) {
+            this.csv = csv;
+            this.delimiter = delimiter;
+            this.amountField = amountField;
+            this.fromField = fromField;
+            this.toField = toField;
+            this.amountStart = amountStart;
+            this.amountLength = amountLength;
+            this.fromStart = fromStart;
+            this.toStart = toStart;
+        }
+
+        public static Layout csv(char delimiter, int amountField, int fromField, int toField) {
+            return new Layout(true, (byte) delimiter, amountField, fromField, toField, 0, 0, 0, 0);
+        }
+
+        /**
+         * Fixed-width rows; currency codes are three bytes at the given offsets.
+         */
+        public static Layout fixedWidth(int amountStart, int amountLength, int fromStart, int toStart) {
+            return new Layout(false, (byte) ',', 0, 0, 0, amountStart, amountLength, fromStart, toStart);
+        }
+    }
+
+    /**
+     * Outcome of one file conversion.
+     */
+    public static final class Result {
+        private final long rows;
+        private final long rejected;
+        private final long elapsedNanos;
+
+        Result(long rows, long rejected, long elapsedNanos) {
+            this.rows = rows;
+            this.rejected = rejected;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getRows() { return rows; }
+        public long getRejected() { return rejected; }
+        public long getElapsedNanos() { return elapsedNanos; }
+
+        public double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : (rows + rejected) * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows converted, %d rejected in %.3f s (%.0f rows/sec)",
+                rows, rejected, elapsedNanos / 1e9, rowsPerSecond());
+        }
+    }
+
+    private final RateTable rates;
+    private final Layout layout;
+    private final boolean skipHeader;
+    private final int windowSize;
+    private final CodeIndex codeIndex;
+
+    // Per-row parse state, reused for every line; the amount is parsed once
+    // both codes are known, since its scale depends on the source currency
+    private int fromIdx, toIdx;
+    private int amountStart, amountEnd;
+
+    public FileConverter(RateTable rates, Layout layout, boolean skipHeader) {
+        this(rates, layout, skipHeader, DEFAULT_WINDOW);
+    }
+
+    FileConverter(RateTable rates, Layout layout, boolean skipHeader, int windowSize) {
+        this.rates = rates;
+        this.layout = layout;
+        this.skipHeader = skipHeader;
+        this.windowSize = windowSize;
+
+        // Three-letter codes resolve straight from bytes, no String needed
+        this.codeIndex = new CodeIndex(rates);
+    }
+
+    public Result convert(Path input, Path output) throws IOException {
+        long started = System.nanoTime();
+        long rows = 0;
+        long rejected = 0;
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+                 StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer outBuffer = ByteBuffer.allocateDirect(DEFAULT_OUTPUT_BUFFER);
+            long size = in.size();
+            long position = 0;
+            boolean header = skipHeader;
+
+            while (position < size) {
+                long length = Math.min(windowSize, size - position);
+                MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+
+                int lineStart = 0;
+                int limit = (int) length;
+                for (int i = 0; i < limit; i++) {
+                    if (window.get(i) != '\n') {
+                        continue;
+                    }
+                    if (header) {
+                        header = false;
+                    } else if (isBlank(window, lineStart, i)) {
+                        // Nothing to convert
+                    } else if (processLine(window, lineStart, i, outBuffer, out)) {
+                        rows++;
+                    } else {
+                        rejected++;
+                    }
+                    lineStart = i + 1;
+                }
+
+                if (last) {
+                    if (lineStart < limit && !header && !isBlank(window, lineStart, limit)) {
+                        if (processLine(window, lineStart, limit, outBuffer, out)) {
+                            rows++;
+                        } else {
+                            rejected++;
+                        }
+                    }
+                    position = size;
+                } else {
+                    if (lineStart == 0) {
+                        throw new IOException("Row longer than mapping window at offset " + position);
+                    }
+                    // Remap from the start of the incomplete row
+                    position += lineStart;
+                }
+            }
+
+            flush(outBuffer, out);
+        }
+        return new Result(rows, rejected, System.nanoTime() - started);
+    }
+
+    private static boolean isBlank(ByteBuffer buf, int start, int end) {
+        return end == start || (end == start + 1 && buf.get(start) == '\r');
+    }
+
+    private boolean processLine(ByteBuffer buf, int start, int end, ByteBuffer outBuffer, FileChannel out)
+            throws IOException {
+        if (buf.get(end - 1) == '\r') {
+            end--;
+        }
+        boolean parsed = layout.csv ? parseCsv(buf, start, end) : parseFixed(buf, start, end);
+        if (!parsed) {
+            return false;
+        }
+        long amountMinor = formatFor(INPUT_FORMATS, rates.scale(fromIdx)).parseUnits(buf, amountStart, amountEnd);
+        if (amountMinor == AmountFormat.INVALID_UNITS) {
+            return false;
+        }
+        long resultMinor;
+        try {
+            resultMinor = rates.convertMinor(amountMinor, fromIdx, toIdx, ROUNDING);
+        } catch (ArithmeticException e) {
+            return false;
+        }
+
+        int rowBytes = end - start;
+        if (outBuffer.remaining() < rowBytes + 40) {
+            flush(outBuffer, out);
+            if (outBuffer.remaining() < rowBytes + 40) {
+                throw new IOException("Row longer than output buffer");
+            }
+        }
+        for (int i = start; i < end; i++) {
+            outBuffer.put(buf.get(i));
+        }
+        outBuffer.put(layout.delimiter);
+        formatFor(OUTPUT_FORMATS, rates.scale(toIdx)).formatUnits(resultMinor, outBuffer);
+        outBuffer.put((byte) '\n');
+        return true;
+    }
+
+    private boolean parseCsv(ByteBuffer buf, int start, int end) {
+        int field = 0;
+        int fieldStart = start;
+        int found = 0;
+        for (int i = start; i <= end; i++) {
+            if (i < end && buf.get(i) != layout.delimiter) {
+                continue;
+            }
+            if (field == layout.amountField) {
+                amountStart = fieldStart;
+                amountEnd = i;
+                found++;
+            } else if (field == layout.fromField) {
+                if ((fromIdx = resolveCode(buf, fieldStart, i)) < 0) return false;
+                found++;
+            } else if (field == layout.toField) {
+                if ((toIdx = resolveCode(buf, fieldStart, i)) < 0) return false;
+                found++;
+            }
+            field++;
+            fieldStart = i + 1;
+        }
+        return found == 3;
+    }
+
+    private boolean parseFixed(ByteBuffer buf, int start, int end) {
+        int width = end - start;
+        if (layout.amountStart + layout.amountLength > width
+                || layout.fromStart + 3 > width || layout.toStart + 3 > width) {
+            return false;
+        }
+        fromIdx = resolveCode(buf, start + layout.fromStart, start + layout.fromStart + 3);
+        toIdx = resolveCode(buf, start + layout.toStart, start + layout.toStart + 3);
+        amountStart = start + layout.amountStart;
+        amountEnd = amountStart + layout.amountLength;
+        return fromIdx >= 0 && toIdx >= 0;
+    }
+
+    private int resolveCode(ByteBuffer buf, int start, int end) {
+        return codeIndex.resolve(buf, start, end);
+    }
+
+    private static AmountFormat formatFor(AmountFormat[] formats, int scale) {
+        return formats[Math.min(scale, formats.length - 1)];
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: FileConverter <input.csv> <output.csv> [--skip-header]");
+            System.exit(1);
+        }
+        boolean skipHeader = args.length > 2 && "--skip-header".equals(args[2]);
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+
+        RateTable rates = currentRates();
+        System.out.println("Converting at rates version " + rates.getVersion() + " (" + rates.size() + " currencies)");
+        // Default CSV layout: amount,from,to
+        FileConverter converter = new FileConverter(rates, Layout.csv(',', 0, 1, 2), skipHeader);
+        Result result = converter.convert(input, output);
+        System.out.println(result);
+    }
+
+    /**
+     * Loads the rates the GUI and server would be converting with now, from
+     * the first configured source.
+     */
+    static RateTable currentRates() throws IOException {
+        String sharedRates = System.getProperty("rates.shared");
+        if (sharedRates != null) {
+            try (SharedRateFile file = SharedRateFile.openReader(Paths.get(sharedRates))) {
+                return new SharedRateSource(file).load(1);
+            }
+        }
+        String ratesFile = System.getProperty("rates.file");
+        if (ratesFile != null) {
+            return new FileRateSource(Paths.get(ratesFile)).load(1);
+        }
+        if (System.getProperty("rates.db.ms") != null) {
+            return new DatabaseRateSource(
+                new CachingCurrencyDAO(new InstrumentedCurrencyDAO(new CurrencyDAOImpl()))).load(1);
+        }
+        return DefaultRates.table();
+    }
+}
@@ -0,0 +1,114 @@
+package engine;
+
+import model.Currency;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads rates from a local text file with one pair per line:
+ * <pre>
+ * # from,to,rate
+ * USD,EUR,0.85
+ * USD,JPY,110.0
+ * </pre>
+ * Pairs may be sparse; missing cross rates are triangulated.
+ * The file is watched with a {@link WatchService} so edits are picked up
+ * without polling.
+ */
+public class FileRateSource implements RateSource {
+
+    private final Path file;
+
+    public FileRateSource(Path file) {
+        this.file = file.toAbsolutePath();
+    }
+
+    @Override
+    public RateTable load(long version) throws IOException {
+        List<Currency> pairs = readPairs(file);
+        try {
+            return TriangulationEngine.of(pairs).snapshot(version);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses the quoted pairs in a rates file without triangulating them.
+     */
+    public static List<Currency> readPairs(Path file) throws IOException {
+        List<Currency> pairs = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(",");
+                if (parts.length != 3) {
+                    throw new IOException(file + ":" + lineNumber + ": expected from,to,rate");
+                }
+                try {
+                    pairs.add(new Currency(lineNumber, parts[0].trim(), parts[1].trim(),
+                        Double.parseDouble(parts[2].trim())));
+                } catch (NumberFormatException e) {
+                    throw new IOException(file + ":" + lineNumber + ": invalid rate " + parts[2], e);
+                }
+            }
+        }
+        return pairs;
+    }
+
+    @Override
+    public Closeable watch(Runnable onChange) throws IOException {
+        WatchService watcher = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watcher,
+            StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        Thread thread = new Thread(() -> {
+            try {
+                while (true) {
+                    WatchKey key = watcher.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        Object context = event.context();
+                        if (context instanceof Path && file.getFileName().equals(context)) {
+                            changed = true;
+                        }
+                    }
+                    key.reset();
+                    if (changed) {
+                        onChange.run();
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // Watch closed
+            }
+        }, "rate-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+
+        return watcher;
+    }
+
+    @Override
+    public String getName() {
+        return "file:" + file;
+    }
+}
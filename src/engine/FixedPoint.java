@@ -0,0 +1,127 @@
+package engine;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Fixed-point helpers for exact conversion.
+ * Rates are longs scaled by 10^RATE_SCALE and products are carried in
+ * 128 bits, so amount * rate never overflows before the final division.
+ */
+final class FixedPoint {
+
+    static final int RATE_SCALE = 12;
+
+    private static final long[] POW10 = new long[19];
+
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10L;
+        }
+    }
+
+    private FixedPoint() {}
+
+    static long pow10(int exponent) {
+        return POW10[exponent];
+    }
+
+    /**
+     * Converts a decimal rate to RATE_SCALE fixed point, rounding half-even.
+     */
+    static long toFixedRate(BigDecimal rate) {
+        return rate.setScale(RATE_SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Returns round(a * b / divisor) using a 128-bit intermediate.
+     * divisor must be positive; throws ArithmeticException if the result does not fit a long.
+     */
+    static long mulDiv(long a, long b, long divisor, RoundingMode rounding) {
+        boolean negative = (a < 0) != (b < 0);
+        long x = Math.abs(a);
+        long y = Math.abs(b);
+        if (x < 0 || y < 0) {
+            throw new ArithmeticException("Long.MIN_VALUE operand");
+        }
+
+        long hi = Math.multiplyHigh(x, y);
+        long lo = x * y;
+        if (Long.compareUnsigned(hi, divisor) >= 0) {
+            throw new ArithmeticException("Fixed-point overflow");
+        }
+
+        long q = divide128(hi, lo, divisor);
+        long r = lo - q * divisor;
+        if (q < 0) {
+            throw new ArithmeticException("Fixed-point overflow");
+        }
+        if (r != 0 && roundAwayFromZero(q, r, divisor, negative, rounding)) {
+            q++;
+            if (q < 0) {
+                throw new ArithmeticException("Fixed-point overflow");
+            }
+        }
+        return negative ? -q : q;
+    }
+
+    private static boolean roundAwayFromZero(long q, long r, long divisor, boolean negative, RoundingMode rounding) {
+        // r and divisor are below 2^63, so 2r cannot wrap in unsigned terms
+        int half = Long.compareUnsigned(r << 1, divisor);
+        switch (rounding) {
+            case UP:        return true;
+            case DOWN:      return false;
+            case CEILING:   return !negative;
+            case FLOOR:     return negative;
+            case HALF_UP:   return half >= 0;
+            case HALF_DOWN: return half > 0;
+            case HALF_EVEN: return half > 0 || (half == 0 && (q & 1) != 0);
+            case UNNECESSARY:
+            default:
+                throw new ArithmeticException("Rounding necessary");
+        }
+    }
+
+    /**
+     * Unsigned division of the 128-bit value hi:lo by d, where hi < d.
+     * Knuth's algorithm D on 32-bit digits (Hacker's Delight, divlu).
+     */
+    private static long divide128(long hi, long lo, long d) {
+        if (hi == 0) {
+            return Long.divideUnsigned(lo, d);
+        }
+        final long base = 1L << 32;
+        final long mask = base - 1;
+
+        int s = Long.numberOfLeadingZeros(d);
+        d <<= s;
+        long vn1 = d >>> 32;
+        long vn0 = d & mask;
+
+        long un32 = s == 0 ? hi : (hi << s) | (lo >>> (64 - s));
+        long un10 = lo << s;
+        long un1 = un10 >>> 32;
+        long un0 = un10 & mask;
+
+        long q1 = Long.divideUnsigned(un32, vn1);
+        long rhat = un32 - q1 * vn1;
+        while (Long.compareUnsigned(q1, base) >= 0
+                || Long.compareUnsigned(q1 * vn0, (rhat << 32) | un1) > 0) {
+            q1--;
+            rhat += vn1;
+            if (Long.compareUnsigned(rhat, base) >= 0) break;
+        }
+
+        long un21 = ((un32 << 32) | un1) - q1 * d;
+        long q0 = Long.divideUnsigned(un21, vn1);
+        rhat = un21 - q0 * vn1;
+        while (Long.compareUnsigned(q0, base) >= 0
+                || Long.compareUnsigned(q0 * vn0, (rhat << 32) | un0) > 0) {
+            q0--;
+            rhat += vn1;
+            if (Long.compareUnsigned(rhat, base) >= 0) break;
+        }
+        return (q1 << 32) | q0;
+    }
+}
@@ -0,0 +1,103 @@
+package engine;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Holds the current {@link RateTable} snapshot.
+ * Readers take one volatile read and then work against an immutable table,
+ * so they never block and never see a half-updated set of rates. Writers
+ * publish a complete new table with a single reference swap.
+ *
+ * Writers (a refresher, a tick feed, a replication subscriber) are
+ * serialized on a publish lock, so versions are assigned one at a time and
+ * listeners see snapshots in version order.
+ */
+public final class LiveRates {
+
+    private static final LiveRates SHARED = new LiveRates(DefaultRates.table());
+
+    private final AtomicReference<RateTable> current;
+    private final Object publishLock = new Object();
+    private final List<Consumer<RateTable>> listeners = new CopyOnWriteArrayList<>();
+
+    public LiveRates(RateTable initial) {
+        this.current = new AtomicReference<>(initial);
+    }
+
+    /**
+     * Process-wide rates used by the UI and headless modes.
+     */
+    public static LiveRates shared() { return SHARED; }
+
+    public RateTable current() {
+        return current.get();
+    }
+
+    public long nextVersion() {
+        return current.get().getVersion() + 1;
+    }
+
+    /**
+     * Publishes a new snapshot. Returns false, leaving the current table in
+     * place, if the snapshot is not newer than the one already published.
+     */
+    public boolean publish(RateTable next) {
+        synchronized (publishLock) {
+            if (next.getVersion() <= current.get().getVersion()) {
+                return false;
+            }
+            current.set(next);
+            notifyListeners(next);
+            return true;
+        }
+    }
+
+    /**
+     * Builds and publishes the next snapshot while holding the publish lock.
+     * The factory is called once, with the version it must use, and
+     * {@link #current()} cannot change while it runs, so it can merge its
+     * changes into whatever another writer published last. Keep it short:
+     * other writers wait for it.
+     *
+     * @return the published snapshot
+     */
+    public RateTable publishNext(LongFunction<RateTable> factory) {
+        synchronized (publishLock) {
+            long version = current.get().getVersion() + 1;
+            RateTable next = factory.apply(version);
+            if (next.getVersion() != version) {
+                throw new IllegalStateException("Expected version " + version + ", got " + next.getVersion());
+            }
+            current.set(next);
+            notifyListeners(next);
+            return next;
+        }
+    }
+
+    /**
+     * Registers a callback run on the publishing thread after each new
+     * snapshot, in version order. Publishing waits for it, so slow work
+     * (disk, network) belongs on the listener's own thread.
+     */
+    public void addListener(Consumer<RateTable> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<RateTable> listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners(RateTable table) {
+        for (Consumer<RateTable> listener : listeners) {
+            try {
+                listener.accept(table);
+            } catch (RuntimeException e) {
+                System.err.println("Rate listener failed: " + e.getMessage());
+            }
+        }
+    }
+}
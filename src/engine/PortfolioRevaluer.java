@@ -0,0 +1,218 @@
+package engine;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Revalues a portfolio of positions into one reporting currency, with
+ * subtotals per source currency.
+ *
+ * Positions are parallel columns (amount, currency index), as in
+ * {@link BatchConverter}. Each leaf of the fork/join tree accumulates
+ * compensated (Neumaier) sums into primitive arrays indexed by currency,
+ * and partial results are merged left to right. The split points depend
+ * only on the position count and chunk size, never on the pool, so the
+ * result is bit-for-bit identical on one thread or many.
+ *
+ * Amounts are summed in their own currency and converted once per
+ * currency at the end, instead of once per position.
+ */
+public final class PortfolioRevaluer {
+
+    static final int DEFAULT_CHUNK_SIZE = 1 << 14;
+
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public PortfolioRevaluer() {
+        this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize positions summed sequentially per leaf; part of the
+     *                  result's definition, so keep it fixed across runs
+     */
+    public PortfolioRevaluer(ForkJoinPool pool, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Revalues every position across the fork/join pool.
+     */
+    public Revaluation revalue(RateTable rates, double[] amounts, short[] currencies, int reportingIdx) {
+        checkLengths(amounts, currencies);
+        Partial partial = pool.invoke(new SumTask(rates.size(), amounts, currencies, 0, amounts.length, chunkSize));
+        return new Revaluation(rates, reportingIdx, partial);
+    }
+
+    /**
+     * Same result as {@link #revalue}, computed on the calling thread.
+     */
+    public Revaluation revalueSequential(RateTable rates, double[] amounts, short[] currencies, int reportingIdx) {
+        checkLengths(amounts, currencies);
+        Partial partial = new SumTask(rates.size(), amounts, currencies, 0, amounts.length, chunkSize).compute();
+        return new Revaluation(rates, reportingIdx, partial);
+    }
+
+    private static void checkLengths(double[] amounts, short[] currencies) {
+        if (amounts.length != currencies.length) {
+            throw new IllegalArgumentException("amount and currency columns must have the same length");
+        }
+    }
+
+    /**
+     * Per-currency compensated sums for a range of positions.
+     */
+    private static final class Partial {
+        final double[] sum;
+        final double[] compensation;
+        final long[] count;
+
+        Partial(int n) {
+            sum = new double[n];
+            compensation = new double[n];
+            count = new long[n];
+        }
+
+        void add(int currency, double value) {
+            double s = sum[currency];
+            double t = s + value;
+            // Neumaier: keep the low-order bits lost by the larger operand
+            if (Math.abs(s) >= Math.abs(value)) {
+                compensation[currency] += (s - t) + value;
+            } else {
+                compensation[currency] += (value - t) + s;
+            }
+            sum[currency] = t;
+        }
+
+        /** Folds {@code right} into this partial; always called left-then-right. */
+        void merge(Partial right) {
+            for (int c = 0; c < sum.length; c++) {
+                add(c, right.sum[c]);
+                compensation[c] += right.compensation[c];
+                count[c] += right.count[c];
+            }
+        }
+    }
+
+    private static final class SumTask extends RecursiveTask<Partial> {
+        private static final long serialVersionUID = 1L;
+
+        private final int n;
+        private final double[] amounts;
+        private final short[] currencies;
+        private final int start;
+        private final int end;
+        private final int chunkSize;
+
+        SumTask(int n, double[] amounts, short[] currencies, int start, int end, int chunkSize) {
+            this.n = n;
+            this.amounts = amounts;
+            this.currencies = currencies;
+            this.start = start;
+            this.end = end;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (end - start <= chunkSize) {
+                Partial partial = new Partial(n);
+                for (int i = start; i < end; i++) {
+                    int currency = currencies[i];
+                    partial.add(currency, amounts[i]);
+                    partial.count[currency]++;
+                }
+                return partial;
+            }
+            // Split on a chunk boundary so leaves are the same however the work is scheduled
+            int chunks = (end - start + chunkSize - 1) / chunkSize;
+            int mid = start + (chunks >>> 1) * chunkSize;
+            SumTask left = new SumTask(n, amounts, currencies, start, mid, chunkSize);
+            SumTask right = new SumTask(n, amounts, currencies, mid, end, chunkSize);
+            if (!inForkJoinPool()) {
+                Partial merged = left.compute();
+                merged.merge(right.compute());
+                return merged;
+            }
+            right.fork();
+            Partial merged = left.compute();
+            merged.merge(right.join());
+            return merged;
+        }
+    }
+
+    /**
+     * Portfolio value in the reporting currency, with per-currency breakdown.
+     * A currency held without a rate to the reporting currency makes its
+     * reported subtotal, and the total, NaN.
+     */
+    public static final class Revaluation {
+        private final RateTable rates;
+        private final int reportingIdx;
+        private final double[] subtotals;
+        private final double[] reported;
+        private final long[] counts;
+        private final double total;
+
+        Revaluation(RateTable rates, int reportingIdx, Partial partial) {
+            int n = rates.size();
+            this.rates = rates;
+            this.reportingIdx = reportingIdx;
+            this.subtotals = new double[n];
+            this.reported = new double[n];
+            this.counts = partial.count;
+
+            double totalSum = 0.0;
+            double totalCompensation = 0.0;
+            for (int c = 0; c < n; c++) {
+                subtotals[c] = partial.sum[c] + partial.compensation[c];
+                if (counts[c] == 0) {
+                    continue;
+                }
+                reported[c] = subtotals[c] * rates.rate(c, reportingIdx);
+                double t = totalSum + reported[c];
+                if (Math.abs(totalSum) >= Math.abs(reported[c])) {
+                    totalCompensation += (totalSum - t) + reported[c];
+                } else {
+                    totalCompensation += (reported[c] - t) + totalSum;
+                }
+                totalSum = t;
+            }
+            this.total = totalSum + totalCompensation;
+        }
+
+        public RateTable getRates() { return rates; }
+        public int getReportingIndex() { return reportingIdx; }
+        public String getReportingCurrency() { return rates.code(reportingIdx); }
+
+        /** Portfolio value in the reporting currency. */
+        public double getTotal() { return total; }
+
+        /** Sum of positions held in currency {@code idx}, in that currency. */
+        public double subtotal(int idx) { return subtotals[idx]; }
+
+        /** Value of the positions held in currency {@code idx}, in the reporting currency. */
+        public double reportedSubtotal(int idx) { return reported[idx]; }
+
+        public long positionCount(int idx) { return counts[idx]; }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format("Total %.2f %s (rates v%d)%n", total, getReportingCurrency(), rates.getVersion()));
+            for (int c = 0; c < counts.length; c++) {
+                if (counts[c] > 0) {
+                    text.append(String.format("  %s %,d positions: %.2f = %.2f %s%n", rates.code(c), counts[c],
+                        subtotals[c], reported[c], getReportingCurrency()));
+                }
+            }
+            return text.toString();
+        }
+    }
+}
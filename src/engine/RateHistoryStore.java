@@ -0,0 +1,884 @@
+package engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only store of published rate snapshots for as-of conversions.
+ *
+ * Data lives in two files next to each other:
+ * <ul>
+ *   <li>{@code <name>.idx}: a header with the currency-code table, then one
+ *       32-byte entry per snapshot: timestamp, version, offset of its record
+ *       in the data file, how many codes of the table it covers, and how many
+ *       cells its record stores explicitly. Timestamps never decrease, so this
+ *       column is binary-searched in place.</li>
+ *   <li>{@code <name>.dat}: one record per snapshot over the first k stored
+ *       codes: which of them the snapshot had, their base rates, and a rule
+ *       that rebuilds every cross rate from those, either as a quotient (base
+ *       tables) or as a product through the first code (triangulated tables).
+ *       Cells the rule does not reproduce bit for bit, such as crosses quoted
+ *       on their own, follow as sorted (cell, rate, fixed rate) exceptions, so
+ *       a record costs O(k) plus its non-transitive cells rather than k x k.</li>
+ * </ul>
+ * Both files are memory-mapped for reads, so lookups touch only the pages
+ * they need and the history never has to fit on the heap.
+ *
+ * The code table is created with room for a fixed number of codes. Codes
+ * that first appear in a later snapshot are added to it; once it is full,
+ * snapshots with further new codes are rejected.
+ *
+ * Reads are safe from any thread. {@link #append} writes and syncs one
+ * record on the caller's thread; {@link #recordFrom} hands published
+ * snapshots to a background appender that syncs once per batch, so the
+ * publisher never waits for the disk unless the appender falls far behind.
+ */
+public class RateHistoryStore implements Closeable {
+
+    private static final int MAGIC = 0x52484958; // "RHIX"
+    private static final int FORMAT = 3;
+    private static final int FIXED_HEADER_BYTES = 16;
+    private static final int CODE_BYTES = 4;
+    private static final int DEFAULT_CODE_CAPACITY = 1024;
+    private static final int INDEX_RECORD_BYTES = 32;
+    private static final int INDEX_SEGMENT_RECORDS = 1 << 19;
+    private static final long SEGMENT_BYTES = 1L << 30;
+    private static final int PENDING_SNAPSHOTS = 1024;
+    private static final int MAX_BATCH = 256;
+    private static final int RECORD_HEADER_BYTES = 8;
+    private static final int EXCEPTION_BYTES = Double.BYTES + Long.BYTES + Integer.BYTES;
+    private static final long FIXED_ONE = FixedPoint.pow10(FixedPoint.RATE_SCALE);
+
+    /** Cross rates are base[to] / base[from], fixed rates their exact decimal quotient. */
+    private static final int RULE_QUOTIENT = 0;
+    /** Cross rates are (1 / base[from]) * base[to], fixed rates the decimal form of that double. */
+    private static final int RULE_PRODUCT = 1;
+
+    private final Path indexPath;
+    private final FileChannel indexChannel;
+    private final FileChannel dataChannel;
+    private final int codeCapacity;
+    private final int headerBytes;
+    private final List<String> codeList;
+    private final ByteBuffer indexBatch = ByteBuffer.allocate(MAX_BATCH * INDEX_RECORD_BYTES);
+    private ByteBuffer recordBuffer = ByteBuffer.allocate(0);
+    private int[] exceptionCells = new int[16];
+    private double[] exceptionRates = new double[16];
+    private long[] exceptionFixed = new long[16];
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    private final BlockingQueue<Pending> pending = new ArrayBlockingQueue<>(PENDING_SNAPSHOTS);
+    private final AtomicLong queued = new AtomicLong();
+    private final Object flushLock = new Object();
+    private long written;
+    private Thread appender;
+    private volatile boolean closed;
+
+    private volatile View view;
+
+    /**
+     * Consistent read-only mapping of the first {@code count} records and
+     * the code table they use.
+     */
+    private static final class View {
+        final long count;
+        final long dataEnd;
+        final String[] codes;
+        final Map<String, Integer> indexByCode;
+        final MappedByteBuffer[] index;
+        final MappedByteBuffer[] segments;
+
+        View(long count, long dataEnd, String[] codes, Map<String, Integer> indexByCode,
+             MappedByteBuffer[] index, MappedByteBuffer[] segments) {
+            this.count = count;
+            this.dataEnd = dataEnd;
+            this.codes = codes;
+            this.indexByCode = indexByCode;
+            this.index = index;
+            this.segments = segments;
+        }
+    }
+
+    /**
+     * A published snapshot waiting for the appender; a null table stops it.
+     */
+    private static final class Pending {
+        final long timestampMillis;
+        final RateTable table;
+
+        Pending(long timestampMillis, RateTable table) {
+            this.timestampMillis = timestampMillis;
+            this.table = table;
+        }
+    }
+
+    /**
+     * Receives records from {@link #scan}.
+     */
+    public interface RecordVisitor {
+        void visit(long record, long timestamp, long version);
+    }
+
+    private RateHistoryStore(Path indexPath, FileChannel indexChannel, FileChannel dataChannel,
+                             int codeCapacity, List<String> codes) throws IOException {
+        this.indexPath = indexPath;
+        this.indexChannel = indexChannel;
+        this.dataChannel = dataChannel;
+        this.codeCapacity = codeCapacity;
+        this.headerBytes = headerBytes(codeCapacity);
+        this.codeList = new ArrayList<>(codes);
+
+        // Drop a torn tail left by a crash: entries whose record is not fully in the data file
+        long count = (indexChannel.size() - headerBytes) / INDEX_RECORD_BYTES;
+        long dataSize = dataChannel.size();
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_RECORD_BYTES);
+        long dataEnd = 0;
+        while (count > 0) {
+            entry.clear();
+            readFully(indexChannel, entry, headerBytes + (count - 1) * INDEX_RECORD_BYTES);
+            long offset = entry.getLong(16);
+            int k = entry.getInt(24);
+            int exceptions = entry.getInt(28);
+            long end = offset + recordBytes(k, exceptions);
+            if (k > 0 && k <= codes.size() && exceptions >= 0 && exceptions <= (long) k * k
+                && offset >= 0 && end <= dataSize) {
+                dataEnd = end;
+                lastTimestamp = entry.getLong(0);
+                break;
+            }
+            count--;
+        }
+        indexChannel.truncate(headerBytes + count * INDEX_RECORD_BYTES);
+        dataChannel.truncate(dataEnd);
+        this.view = map(count, dataEnd, null);
+    }
+
+    /**
+     * Opens the store at {@code <base>.idx} / {@code <base>.dat}, creating it
+     * with the given currency codes if it does not exist yet.
+     */
+    public static RateHistoryStore open(Path base, String[] codes) throws IOException {
+        return open(base, codes, DEFAULT_CODE_CAPACITY);
+    }
+
+    /**
+     * Opens or creates the store; a new one has room for {@code codeCapacity}
+     * currency codes. An existing store keeps its own code table and capacity.
+     */
+    public static RateHistoryStore open(Path base, String[] codes, int codeCapacity) throws IOException {
+        Path indexPath = Paths.get(base + ".idx");
+        Path dataPath = Paths.get(base + ".dat");
+        boolean exists = Files.exists(indexPath) && Files.size(indexPath) > 0;
+
+        FileChannel indexChannel = FileChannel.open(indexPath,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        FileChannel dataChannel = FileChannel.open(dataPath,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (exists) {
+                ByteBuffer fixed = ByteBuffer.allocate(FIXED_HEADER_BYTES);
+                readFully(indexChannel, fixed, 0);
+                fixed.flip();
+                if (fixed.getInt() != MAGIC || fixed.getInt() != FORMAT) {
+                    throw new IOException(indexPath + " is not a rate history file in format " + FORMAT);
+                }
+                int capacity = fixed.getInt();
+                int n = fixed.getInt();
+                if (capacity <= 0 || n < 0 || n > capacity) {
+                    throw new IOException(indexPath + " has a corrupt code table");
+                }
+                ByteBuffer table = ByteBuffer.allocate(n * CODE_BYTES);
+                readFully(indexChannel, table, FIXED_HEADER_BYTES);
+                List<String> stored = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    stored.add(decodeCode(table, i * CODE_BYTES));
+                }
+                return new RateHistoryStore(indexPath, indexChannel, dataChannel, capacity, stored);
+            }
+
+            if (codes == null || codes.length == 0) {
+                throw new IOException("Currency codes are required to create " + indexPath);
+            }
+            if (codes.length > codeCapacity) {
+                throw new IllegalArgumentException(codes.length + " codes do not fit a capacity of " + codeCapacity);
+            }
+            ByteBuffer header = ByteBuffer.allocate(headerBytes(codeCapacity));
+            header.putInt(MAGIC).putInt(FORMAT).putInt(codeCapacity).putInt(codes.length);
+            for (String code : codes) {
+                encodeCode(header, code);
+            }
+            header.clear();
+            writeFully(indexChannel, header, 0);
+            indexChannel.truncate(header.capacity());
+            dataChannel.truncate(0);
+            indexChannel.force(true);
+            return new RateHistoryStore(indexPath, indexChannel, dataChannel, codeCapacity, Arrays.asList(codes));
+        } catch (IOException | RuntimeException e) {
+            indexChannel.close();
+            dataChannel.close();
+            throw e;
+        }
+    }
+
+    public String[] codes() { return view.codes.clone(); }
+    public long size() { return view.count; }
+
+    public int indexOf(String code) {
+        Integer index = view.indexByCode.get(code);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Appends a snapshot taken at the given time and waits until it is on
+     * disk. Timestamps must not go backwards.
+     *
+     * @throws IllegalArgumentException if the snapshot has new codes and the code table is full
+     */
+    public synchronized void append(long timestampMillis, RateTable table) throws IOException {
+        if (timestampMillis < lastTimestamp) {
+            throw new IllegalArgumentException("Timestamp " + timestampMillis + " is older than the last record");
+        }
+        writeBatch(Collections.singletonList(new Pending(timestampMillis, table)));
+    }
+
+    /**
+     * Appends every snapshot published to the given rates from now on. The
+     * listener only stamps and queues the snapshot; a background thread
+     * writes queued snapshots in batches.
+     */
+    public void recordFrom(LiveRates rates) {
+        startAppender();
+        AtomicLong recorded = new AtomicLong(Long.MIN_VALUE);
+        rates.addListener(table -> {
+            // Never record an older snapshot after a newer one
+            long last = recorded.get();
+            if (closed || table.getVersion() <= last || !recorded.compareAndSet(last, table.getVersion())) {
+                return;
+            }
+            try {
+                pending.put(new Pending(System.currentTimeMillis(), table));
+                queued.incrementAndGet();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                System.err.println("Rate history skipped version " + table.getVersion() + ": interrupted");
+            }
+        });
+    }
+
+    /**
+     * Blocks until every snapshot queued by {@link #recordFrom} so far has
+     * been written, or the appender has stopped.
+     */
+    public void flush() throws InterruptedException {
+        long target = queued.get();
+        synchronized (flushLock) {
+            while (written < target && appender != null && appender.isAlive()) {
+                flushLock.wait(10);
+            }
+        }
+    }
+
+    private synchronized void startAppender() {
+        if (appender == null) {
+            appender = new Thread(this::appendLoop, "rate-history-appender");
+            appender.setDaemon(true);
+            appender.start();
+        }
+    }
+
+    private void appendLoop() {
+        List<Pending> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            try {
+                batch.add(pending.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            pending.drainTo(batch, MAX_BATCH - 1);
+            boolean stop = batch.get(batch.size() - 1).table == null;
+            if (stop) {
+                batch.remove(batch.size() - 1);
+            }
+            int taken = batch.size();
+            try {
+                if (!batch.isEmpty()) {
+                    appendQueued(batch);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed to record rate history: " + e.getMessage());
+            }
+            synchronized (flushLock) {
+                written += taken;
+                flushLock.notifyAll();
+            }
+            batch.clear();
+            if (stop) {
+                return;
+            }
+        }
+    }
+
+    private synchronized void appendQueued(List<Pending> batch) throws IOException {
+        List<Pending> accepted = new ArrayList<>(batch.size());
+        long previous = lastTimestamp;
+        for (Pending p : batch) {
+            try {
+                addNewCodes(p.table);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Failed to record rate history: " + e.getMessage());
+                continue;
+            }
+            // A clock step backwards must not break the timestamp order
+            previous = Math.max(previous, p.timestampMillis);
+            accepted.add(previous == p.timestampMillis ? p : new Pending(previous, p.table));
+        }
+        if (!accepted.isEmpty()) {
+            writeBatch(accepted);
+        }
+    }
+
+    /**
+     * Writes the records, then their index entries, syncing each file once.
+     */
+    private void writeBatch(List<Pending> batch) throws IOException {
+        View current = view;
+        int codeCount = current.codes.length;
+        for (Pending p : batch) {
+            addNewCodes(p.table);
+        }
+        if (codeList.size() > codeCount) {
+            // Entries may only refer to codes whose names are already durable
+            ByteBuffer added = ByteBuffer.allocate((codeList.size() - codeCount) * CODE_BYTES);
+            for (int i = codeCount; i < codeList.size(); i++) {
+                encodeCode(added, codeList.get(i));
+            }
+            added.flip();
+            writeFully(indexChannel, added, FIXED_HEADER_BYTES + (long) codeCount * CODE_BYTES);
+            ByteBuffer count = ByteBuffer.allocate(Integer.BYTES);
+            count.putInt(codeList.size()).flip();
+            writeFully(indexChannel, count, 12);
+            indexChannel.force(false);
+        }
+
+        int k = codeList.size();
+        long dataEnd = current.dataEnd;
+        indexBatch.clear();
+        for (Pending p : batch) {
+            int exceptions = encodeRecord(p.table, k);
+            long offset = dataEnd;
+            long bytes = recordBytes(k, exceptions);
+            if (offset % SEGMENT_BYTES + bytes > SEGMENT_BYTES) {
+                // Records never straddle a mapped segment
+                offset = (offset / SEGMENT_BYTES + 1) * SEGMENT_BYTES;
+            }
+            writeFully(dataChannel, recordBuffer, offset);
+            dataEnd = offset + bytes;
+            indexBatch.putLong(p.timestampMillis).putLong(p.table.getVersion()).putLong(offset).putInt(k)
+                .putInt(exceptions);
+        }
+
+        // Data first, index second: an entry is visible only once its record is durable
+        dataChannel.force(false);
+        indexBatch.flip();
+        writeFully(indexChannel, indexBatch, headerBytes + current.count * INDEX_RECORD_BYTES);
+        indexChannel.force(false);
+        lastTimestamp = batch.get(batch.size() - 1).timestampMillis;
+        view = map(current.count + batch.size(), dataEnd, current);
+    }
+
+    private void addNewCodes(RateTable table) {
+        List<String> added = null;
+        for (int i = 0; i < table.size(); i++) {
+            String code = table.code(i);
+            if (!codeList.contains(code)) {
+                if (added == null) {
+                    added = new ArrayList<>();
+                }
+                added.add(code);
+            }
+        }
+        if (added == null) {
+            return;
+        }
+        if (codeList.size() + added.size() > codeCapacity) {
+            throw new IllegalArgumentException("Rate history " + indexPath + " has no room for " + added
+                + " (capacity " + codeCapacity + " codes); version " + table.getVersion() + " was not recorded");
+        }
+        for (String code : added) {
+            checkCode(code);
+        }
+        codeList.addAll(added);
+    }
+
+    /**
+     * Fills the record buffer with the table's rates over the first k stored
+     * codes and returns how many cells it had to store explicitly.
+     */
+    private int encodeRecord(RateTable table, int k) {
+        int[] tableIndex = new int[k];
+        double[] base = new double[k];
+        for (int i = 0; i < k; i++) {
+            tableIndex[i] = table.indexOf(codeList.get(i));
+            base[i] = tableIndex[i] < 0 ? Double.NaN : table.baseRate(tableIndex[i]);
+        }
+
+        // Use whichever rule reproduces more of the double matrix
+        int quotientMisses = 0;
+        int productMisses = 0;
+        for (int from = 0; from < k; from++) {
+            for (int to = 0; to < k && tableIndex[from] >= 0; to++) {
+                if (tableIndex[to] >= 0) {
+                    double rate = table.rate(tableIndex[from], tableIndex[to]);
+                    if (!sameRate(rate, crossRate(RULE_QUOTIENT, base[from], base[to], from == to))) {
+                        quotientMisses++;
+                    }
+                    if (!sameRate(rate, crossRate(RULE_PRODUCT, base[from], base[to], from == to))) {
+                        productMisses++;
+                    }
+                }
+            }
+        }
+        int rule = productMisses < quotientMisses ? RULE_PRODUCT : RULE_QUOTIENT;
+
+        BigDecimal[] decimal = decimals(base);
+        int exceptions = 0;
+        for (int from = 0; from < k; from++) {
+            for (int to = 0; to < k && tableIndex[from] >= 0; to++) {
+                if (tableIndex[to] < 0) {
+                    continue;
+                }
+                double rate = table.rate(tableIndex[from], tableIndex[to]);
+                long fixed = table.fixedRate(tableIndex[from], tableIndex[to]);
+                double rebuilt = crossRate(rule, base[from], base[to], from == to);
+                if (sameRate(rate, rebuilt) && fixed == crossFixed(rule, decimal, rebuilt, from, to)) {
+                    continue;
+                }
+                if (exceptions == exceptionCells.length) {
+                    exceptionCells = Arrays.copyOf(exceptionCells, exceptions * 2);
+                    exceptionRates = Arrays.copyOf(exceptionRates, exceptions * 2);
+                    exceptionFixed = Arrays.copyOf(exceptionFixed, exceptions * 2);
+                }
+                exceptionCells[exceptions] = from * k + to;
+                exceptionRates[exceptions] = rate;
+                exceptionFixed[exceptions] = fixed;
+                exceptions++;
+            }
+        }
+
+        int bytes = (int) recordBytes(k, exceptions);
+        if (recordBuffer.capacity() < bytes) {
+            recordBuffer = ByteBuffer.allocate(Math.max(bytes, recordBuffer.capacity() * 2));
+        }
+        recordBuffer.clear();
+        recordBuffer.putInt(rule).putInt(0);
+        long[] presence = new long[presenceWords(k)];
+        for (int i = 0; i < k; i++) {
+            if (tableIndex[i] >= 0) {
+                presence[i >>> 6] |= 1L << i;
+            }
+        }
+        for (long word : presence) {
+            recordBuffer.putLong(word);
+        }
+        for (double rate : base) {
+            recordBuffer.putDouble(rate);
+        }
+        for (int i = 0; i < exceptions; i++) {
+            recordBuffer.putDouble(exceptionRates[i]);
+        }
+        for (int i = 0; i < exceptions; i++) {
+            recordBuffer.putLong(exceptionFixed[i]);
+        }
+        for (int i = 0; i < exceptions; i++) {
+            recordBuffer.putInt(exceptionCells[i]);
+        }
+        recordBuffer.position(0).limit(bytes);
+        return exceptions;
+    }
+
+    private static double crossRate(int rule, double fromBase, double toBase, boolean diagonal) {
+        if (diagonal) {
+            return 1.0;
+        }
+        return rule == RULE_QUOTIENT ? toBase / fromBase : (1.0 / fromBase) * toBase;
+    }
+
+    /**
+     * Fixed-point rate the rule implies for a cell, or -1 where it implies
+     * none that fits, which no stored rate equals.
+     */
+    private static long crossFixed(int rule, BigDecimal[] decimal, double rate, int from, int to) {
+        if (from == to) {
+            return FIXED_ONE;
+        }
+        try {
+            if (rule == RULE_QUOTIENT) {
+                return decimal[from] == null || decimal[to] == null ? 0L : FixedPoint.toFixedRate(
+                    decimal[to].divide(decimal[from], FixedPoint.RATE_SCALE, RoundingMode.HALF_EVEN));
+            }
+            return Double.isNaN(rate) ? 0L
+                : Double.isInfinite(rate) ? -1L : FixedPoint.toFixedRate(BigDecimal.valueOf(rate));
+        } catch (ArithmeticException e) {
+            return -1L;
+        }
+    }
+
+    /** Decimal form of each valid base rate, null where there is none. */
+    private static BigDecimal[] decimals(double[] base) {
+        BigDecimal[] decimal = new BigDecimal[base.length];
+        for (int i = 0; i < base.length; i++) {
+            if (base[i] > 0.0 && !Double.isInfinite(base[i])) {
+                decimal[i] = BigDecimal.valueOf(base[i]);
+            }
+        }
+        return decimal;
+    }
+
+    private static boolean sameRate(double a, double b) {
+        return Double.doubleToLongBits(a) == Double.doubleToLongBits(b);
+    }
+
+    /**
+     * Returns the last record at or before the timestamp, or -1 if there is none.
+     */
+    public long recordAsOf(long timestampMillis) {
+        View v = view;
+        long lo = 0;
+        long hi = v.count - 1;
+        long found = -1;
+        while (lo <= hi) {
+            long mid = (lo + hi) >>> 1;
+            if (timestamp(v, mid) <= timestampMillis) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    public long timestamp(long record) { return timestamp(view, record); }
+    public long version(long record) { return entryLong(view, record, 8); }
+
+    /**
+     * Cross rate in a record, or NaN if either currency was missing.
+     */
+    public double rate(long record, int fromIdx, int toIdx) {
+        View v = view;
+        long offset = entryLong(v, record, 16);
+        int k = entryInt(v, record, 24);
+        int exceptions = entryInt(v, record, 28);
+        if (fromIdx < 0 || toIdx < 0 || fromIdx >= k || toIdx >= k) {
+            return Double.NaN;
+        }
+        MappedByteBuffer segment = segment(v, offset);
+        int start = segmentOffset(offset);
+        if (!isPresent(segment, start, fromIdx) || !isPresent(segment, start, toIdx)) {
+            return Double.NaN;
+        }
+        int ratesStart = baseStart(start, k) + k * Double.BYTES;
+        int exception = findException(segment, ratesStart + exceptions * (Double.BYTES + Long.BYTES),
+            exceptions, fromIdx * k + toIdx);
+        if (exception >= 0) {
+            return segment.getDouble(ratesStart + exception * Double.BYTES);
+        }
+        int baseStart = baseStart(start, k);
+        return crossRate(segment.getInt(start), segment.getDouble(baseStart + fromIdx * Double.BYTES),
+            segment.getDouble(baseStart + toIdx * Double.BYTES), fromIdx == toIdx);
+    }
+
+    /**
+     * Converts at the rates in force at the given time; NaN if no rates were known then.
+     */
+    public double convertAsOf(double amount, int fromIdx, int toIdx, long timestampMillis) {
+        long record = recordAsOf(timestampMillis);
+        return record < 0 ? Double.NaN : amount * rate(record, fromIdx, toIdx);
+    }
+
+    public double convertAsOf(double amount, String from, String to, long timestampMillis) {
+        int fromIdx = indexOf(from);
+        int toIdx = indexOf(to);
+        if (fromIdx < 0 || toIdx < 0) {
+            throw new IllegalArgumentException("Unknown currency: " + (fromIdx < 0 ? from : to));
+        }
+        return convertAsOf(amount, fromIdx, toIdx, timestampMillis);
+    }
+
+    /**
+     * Visits records whose timestamps fall in [fromMillis, toMillis], oldest first.
+     */
+    public void scan(long fromMillis, long toMillis, RecordVisitor visitor) {
+        View v = view;
+        long start = recordAsOf(fromMillis - 1) + 1;
+        for (long record = start; record < v.count; record++) {
+            long ts = timestamp(v, record);
+            if (ts > toMillis) {
+                break;
+            }
+            visitor.visit(record, ts, entryLong(v, record, 8));
+        }
+    }
+
+    /**
+     * Rebuilds the snapshot stored in a record, with the same double and
+     * fixed-point rates that were published, over the codes it contained.
+     */
+    public RateTable snapshotAt(long record) {
+        View v = view;
+        long offset = entryLong(v, record, 16);
+        int k = entryInt(v, record, 24);
+        int exceptions = entryInt(v, record, 28);
+        MappedByteBuffer segment = segment(v, offset);
+        int start = segmentOffset(offset);
+        int rule = segment.getInt(start);
+        int baseStart = baseStart(start, k);
+
+        int[] present = new int[k];
+        int[] position = new int[k];
+        int n = 0;
+        for (int i = 0; i < k; i++) {
+            position[i] = -1;
+            if (isPresent(segment, start, i)) {
+                position[i] = n;
+                present[n++] = i;
+            }
+        }
+        String[] codes = new String[n];
+        double[] base = new double[n];
+        for (int i = 0; i < n; i++) {
+            codes[i] = v.codes[present[i]];
+            base[i] = segment.getDouble(baseStart + present[i] * Double.BYTES);
+        }
+        BigDecimal[] decimal = decimals(base);
+        double[] matrix = new double[n * n];
+        long[] fixedMatrix = new long[n * n];
+        for (int from = 0; from < n; from++) {
+            for (int to = 0; to < n; to++) {
+                double rate = crossRate(rule, base[from], base[to], from == to);
+                matrix[from * n + to] = rate;
+                fixedMatrix[from * n + to] = crossFixed(rule, decimal, rate, from, to);
+            }
+        }
+
+        int ratesStart = baseStart + k * Double.BYTES;
+        int fixedStart = ratesStart + exceptions * Double.BYTES;
+        int cellsStart = fixedStart + exceptions * Long.BYTES;
+        for (int i = 0; i < exceptions; i++) {
+            int cell = segment.getInt(cellsStart + i * Integer.BYTES);
+            int at = position[cell / k] * n + position[cell % k];
+            matrix[at] = segment.getDouble(ratesStart + i * Double.BYTES);
+            fixedMatrix[at] = segment.getLong(fixedStart + i * Long.BYTES);
+        }
+        return RateTable.fromArrays(entryLong(v, record, 8), codes, matrix, fixedMatrix);
+    }
+
+    private static boolean isPresent(MappedByteBuffer segment, int start, int code) {
+        long word = segment.getLong(start + RECORD_HEADER_BYTES + (code >>> 6) * Long.BYTES);
+        return (word & (1L << code)) != 0;
+    }
+
+    /** Binary search of a record's sorted exception cells; the position, or -1. */
+    private static int findException(MappedByteBuffer segment, int cellsStart, int exceptions, int cell) {
+        int lo = 0;
+        int hi = exceptions - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int found = segment.getInt(cellsStart + mid * Integer.BYTES);
+            if (found < cell) {
+                lo = mid + 1;
+            } else if (found > cell) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private long timestamp(View v, long record) {
+        return entryLong(v, record, 0);
+    }
+
+    private static long entryLong(View v, long record, int field) {
+        return indexSegment(v, record).getLong(entryOffset(record) + field);
+    }
+
+    private static int entryInt(View v, long record, int field) {
+        return indexSegment(v, record).getInt(entryOffset(record) + field);
+    }
+
+    private static MappedByteBuffer indexSegment(View v, long record) {
+        if (record < 0 || record >= v.count) {
+            throw new IndexOutOfBoundsException("Record " + record + " of " + v.count);
+        }
+        return v.index[(int) (record / INDEX_SEGMENT_RECORDS)];
+    }
+
+    private static int entryOffset(long record) {
+        return (int) (record % INDEX_SEGMENT_RECORDS) * INDEX_RECORD_BYTES;
+    }
+
+    private static MappedByteBuffer segment(View v, long offset) {
+        return v.segments[(int) (offset / SEGMENT_BYTES)];
+    }
+
+    private static int segmentOffset(long offset) {
+        return (int) (offset % SEGMENT_BYTES);
+    }
+
+    /**
+     * Maps the first count entries and the data up to dataEnd, reusing full
+     * segments of both files from the previous view.
+     */
+    private View map(long count, long dataEnd, View previous) throws IOException {
+        int indexCount = (int) ((count + INDEX_SEGMENT_RECORDS - 1) / INDEX_SEGMENT_RECORDS);
+        MappedByteBuffer[] index = previous == null ? new MappedByteBuffer[indexCount]
+            : Arrays.copyOf(previous.index, indexCount);
+        long indexSegmentBytes = (long) INDEX_SEGMENT_RECORDS * INDEX_RECORD_BYTES;
+        for (int s = 0; s < indexCount; s++) {
+            long start = s * indexSegmentBytes;
+            long length = Math.min(indexSegmentBytes, count * INDEX_RECORD_BYTES - start);
+            if (index[s] == null || index[s].capacity() != length) {
+                index[s] = indexChannel.map(FileChannel.MapMode.READ_ONLY, headerBytes + start, length);
+            }
+        }
+
+        int segmentCount = (int) ((dataEnd + SEGMENT_BYTES - 1) / SEGMENT_BYTES);
+        MappedByteBuffer[] segments = previous == null ? new MappedByteBuffer[segmentCount]
+            : Arrays.copyOf(previous.segments, segmentCount);
+        for (int s = 0; s < segmentCount; s++) {
+            long start = s * SEGMENT_BYTES;
+            long length = Math.min(SEGMENT_BYTES, dataEnd - start);
+            if (segments[s] == null || segments[s].capacity() != length) {
+                segments[s] = dataChannel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+        }
+
+        if (previous != null && previous.codes.length == codeList.size()) {
+            return new View(count, dataEnd, previous.codes, previous.indexByCode, index, segments);
+        }
+        String[] codes = codeList.toArray(new String[0]);
+        return new View(count, dataEnd, codes, indexByCode(codeList), index, segments);
+    }
+
+    private static Map<String, Integer> indexByCode(List<String> codes) {
+        Map<String, Integer> indexByCode = new HashMap<>(codes.size() * 2);
+        for (int i = 0; i < codes.size(); i++) {
+            indexByCode.put(codes.get(i), i);
+        }
+        return indexByCode;
+    }
+
+    private static int presenceWords(int k) {
+        return (k + 63) >>> 6;
+    }
+
+    private static int baseStart(int start, int k) {
+        return start + RECORD_HEADER_BYTES + presenceWords(k) * Long.BYTES;
+    }
+
+    /** Header, presence bits, base column and exceptions, padded to 8 bytes. */
+    private static long recordBytes(int k, int exceptions) {
+        long bytes = RECORD_HEADER_BYTES + (long) presenceWords(k) * Long.BYTES + (long) k * Double.BYTES
+            + (long) exceptions * EXCEPTION_BYTES;
+        return (bytes + 7) & ~7L;
+    }
+
+    private static int headerBytes(int codeCapacity) {
+        int size = FIXED_HEADER_BYTES + codeCapacity * CODE_BYTES;
+        return (size + INDEX_RECORD_BYTES - 1) / INDEX_RECORD_BYTES * INDEX_RECORD_BYTES;
+    }
+
+    /** Codes are stored as up to four ASCII bytes, zero-padded. */
+    private static void checkCode(String code) {
+        if (code.isEmpty() || code.length() > CODE_BYTES) {
+            throw new IllegalArgumentException("Currency code does not fit the rate history: " + code);
+        }
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c == 0 || c > 0x7F) {
+                throw new IllegalArgumentException("Currency code does not fit the rate history: " + code);
+            }
+        }
+    }
+
+    private static void encodeCode(ByteBuffer buffer, String code) {
+        checkCode(code);
+        for (int i = 0; i < CODE_BYTES; i++) {
+            buffer.put(i < code.length() ? (byte) code.charAt(i) : 0);
+        }
+    }
+
+    private static String decodeCode(ByteBuffer buffer, int offset) {
+        int length = 0;
+        while (length < CODE_BYTES && buffer.get(offset + length) != 0) {
+            length++;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new IOException("Unexpected end of rate history file");
+            }
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long offset = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, offset + buffer.position());
+        }
+    }
+
+    /**
+     * Writes out every snapshot queued so far, then closes the files.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        Thread running;
+        synchronized (this) {
+            running = appender;
+        }
+        if (running != null) {
+            try {
+                pending.put(new Pending(0L, null));
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            indexChannel.close();
+        } finally {
+            dataChannel.close();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package engine;
+
+import metrics.Metrics;
+import metrics.OperationStats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads rates from a {@link RateSource} in the background and publishes
+ * each result to {@link LiveRates} as a new versioned snapshot.
+ * Loads run on a single thread, so a slow source never races with itself.
+ */
+public class RateRefresher implements Closeable {
+
+    private static final OperationStats LOAD_STATS = Metrics.operation("rates.load");
+
+    private final RateSource source;
+    private final LiveRates target;
+    private final long intervalMillis;
+    private final ScheduledExecutorService scheduler;
+    private Closeable watch;
+
+    public RateRefresher(RateSource source, LiveRates target, long intervalMillis) {
+        this.source = source;
+        this.target = target;
+        this.intervalMillis = intervalMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() throws IOException {
+        if (intervalMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            scheduler.execute(this::refreshQuietly);
+        }
+        // Change notifications are funnelled onto the refresher thread
+        watch = source.watch(() -> scheduler.execute(this::refreshQuietly));
+    }
+
+    /**
+     * Loads and publishes one snapshot on the calling thread. If another
+     * writer took the version while the source was loading, the snapshot
+     * is published under the next free version instead.
+     */
+    public RateTable refresh() throws IOException {
+        long start = LOAD_STATS.start();
+        try {
+            RateTable loaded = source.load(target.nextVersion());
+            RateTable published = target.publishNext(
+                version -> version == loaded.getVersion() ? loaded : loaded.withVersion(version));
+            LOAD_STATS.stop(start);
+            return published;
+        } catch (IOException | RuntimeException e) {
+            LOAD_STATS.failed(start);
+            throw e;
+        }
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (IOException | RuntimeException e) {
+            // Keep serving the last good snapshot
+            System.err.println("Rate refresh from " + source.getName() + " failed: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        scheduler.shutdownNow();
+        if (watch != null) {
+            watch.close();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Somewhere exchange rates can be loaded from.
+ */
+public interface RateSource {
+
+    /**
+     * Loads the current rates into a new snapshot tagged with the given version.
+     */
+    RateTable load(long version) throws IOException;
+
+    /**
+     * Calls onChange whenever the source knows its rates have changed.
+     * Sources that cannot detect changes return a no-op handle and rely on polling.
+     */
+    default Closeable watch(Runnable onChange) throws IOException {
+        return () -> { };
+    }
+
+    String getName();
+}
@@ -0,0 +1,239 @@
+package engine;
+
+import model.Currency;
+import model.Money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of exchange rates.
+ * Every currency code gets a small int index once, and all cross rates are
+ * precomputed into a dense N x N matrix so a conversion is one array read
+ * and one multiply. Alongside the double matrix it keeps a fixed-point
+ * matrix and per-currency minor-unit scales for exact {@link Money} conversion.
+ */
+public final class RateTable {
+
+    private final long version;
+    private final String[] codes;
+    private final Map<String, Integer> indexByCode;
+    private final double[] perBase;   // 1 base unit = perBase[i] units of codes[i]
+    private final double[] matrix;    // matrix[from * n + to] = units of 'to' per unit of 'from'
+    private final long[] fixedMatrix; // same rates scaled by 10^FixedPoint.RATE_SCALE
+    private final int[] scales;       // minor-unit digits per currency
+    private final int n;
+
+    private RateTable(long version, String[] codes, double[] perBase, double[] matrix, long[] fixedMatrix) {
+        this.version = version;
+        this.codes = codes;
+        this.perBase = perBase;
+        this.matrix = matrix;
+        this.fixedMatrix = fixedMatrix;
+        this.n = codes.length;
+        this.indexByCode = new HashMap<>(n * 2);
+        this.scales = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (indexByCode.put(codes[i], i) != null) {
+                throw new IllegalArgumentException("Duplicate currency code: " + codes[i]);
+            }
+            scales[i] = Money.scaleOf(codes[i]);
+        }
+    }
+
+    /**
+     * Builds a table from rates quoted against a single base currency,
+     * e.g. 1 USD = 0.85 EUR. The base currency itself should appear with rate 1.0.
+     */
+    public static RateTable fromBaseRates(long version, String[] codes, double[] perBase) {
+        if (codes.length != perBase.length) {
+            throw new IllegalArgumentException("codes and rates must have the same length");
+        }
+        for (int i = 0; i < perBase.length; i++) {
+            if (!(perBase[i] > 0.0) || Double.isInfinite(perBase[i])) {
+                throw new IllegalArgumentException("Invalid rate for " + codes[i] + ": " + perBase[i]);
+            }
+        }
+
+        int n = codes.length;
+        double[] matrix = new double[n * n];
+        for (int from = 0; from < n; from++) {
+            for (int to = 0; to < n; to++) {
+                matrix[from * n + to] = from == to ? 1.0 : perBase[to] / perBase[from];
+            }
+        }
+
+        // Exact cross rates come from the decimal form of the quoted rates, not the double quotient
+        long[] fixedMatrix = new long[n * n];
+        BigDecimal[] decimal = new BigDecimal[n];
+        for (int i = 0; i < n; i++) {
+            decimal[i] = BigDecimal.valueOf(perBase[i]);
+        }
+        for (int from = 0; from < n; from++) {
+            for (int to = 0; to < n; to++) {
+                BigDecimal cross = from == to ? BigDecimal.ONE
+                    : decimal[to].divide(decimal[from], FixedPoint.RATE_SCALE, RoundingMode.HALF_EVEN);
+                fixedMatrix[from * n + to] = FixedPoint.toFixedRate(cross);
+            }
+        }
+        return new RateTable(version, codes.clone(), perBase.clone(), matrix, fixedMatrix);
+    }
+
+    /**
+     * Builds a table from a full N x N cross-rate matrix, row = from, column = to.
+     * NaN marks a pair with no known rate; such pairs convert to NaN and
+     * {@link #convertMinor} rejects them.
+     */
+    public static RateTable fromMatrix(long version, String[] codes, double[] matrix) {
+        int n = codes.length;
+        if (matrix.length != n * n) {
+            throw new IllegalArgumentException("matrix must be " + n + " x " + n);
+        }
+        long[] fixedMatrix = new long[n * n];
+        for (int i = 0; i < matrix.length; i++) {
+            double rate = matrix[i];
+            if (Double.isNaN(rate)) {
+                continue; // stays 0: no rate
+            }
+            if (!(rate > 0.0) || Double.isInfinite(rate)) {
+                throw new IllegalArgumentException("Invalid rate " + codes[i / n] + "->" + codes[i % n] + ": " + rate);
+            }
+            fixedMatrix[i] = FixedPoint.toFixedRate(BigDecimal.valueOf(rate));
+        }
+
+        // Rates against the first currency stand in for base rates
+        double[] perBase = new double[n];
+        if (n > 0) {
+            System.arraycopy(matrix, 0, perBase, 0, n);
+        }
+        return new RateTable(version, codes.clone(), perBase, matrix.clone(), fixedMatrix);
+    }
+
+    /**
+     * Wraps already-computed double and fixed-point matrices without
+     * recomputing either, e.g. when they were copied from a shared snapshot
+     * file. The table takes ownership of the arrays.
+     */
+    static RateTable fromArrays(long version, String[] codes, double[] matrix, long[] fixedMatrix) {
+        int n = codes.length;
+        if (matrix.length != n * n || fixedMatrix.length != n * n) {
+            throw new IllegalArgumentException("matrices must be " + n + " x " + n);
+        }
+        return new RateTable(version, codes, Arrays.copyOf(matrix, n), matrix, fixedMatrix);
+    }
+
+    /**
+     * The same rates under another version number. Shares the matrices.
+     */
+    RateTable withVersion(long newVersion) {
+        return new RateTable(newVersion, codes, perBase, matrix, fixedMatrix);
+    }
+
+    /**
+     * Builds a table from {@link Currency} rows quoted as base -> X.
+     * Rows that are not quoted against the base currency are ignored.
+     */
+    public static RateTable fromPairs(long version, String base, Collection<Currency> pairs) {
+        Map<String, Double> rates = new LinkedHashMap<>();
+        rates.put(base, 1.0);
+        for (Currency pair : pairs) {
+            if (base.equals(pair.getFromCurrency())) {
+                rates.put(pair.getToCurrency(), pair.getRate());
+            }
+        }
+
+        String[] codes = rates.keySet().toArray(new String[0]);
+        double[] perBase = new double[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            perBase[i] = rates.get(codes[i]);
+        }
+        return fromBaseRates(version, codes, perBase);
+    }
+
+    public long getVersion() { return version; }
+    public int size() { return n; }
+    public String code(int index) { return codes[index]; }
+    public String[] codes() { return codes.clone(); }
+    public double baseRate(int index) { return perBase[index]; }
+
+    /**
+     * Returns the index for a currency code, or -1 if the code is unknown.
+     */
+    public int indexOf(String code) {
+        Integer index = indexByCode.get(code);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Resolves a currency code to its index, failing on unknown codes.
+     */
+    public int require(String code) {
+        int index = indexOf(code);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown currency: " + code);
+        }
+        return index;
+    }
+
+    public int fromIndex(Currency pair) { return require(pair.getFromCurrency()); }
+    public int toIndex(Currency pair) { return require(pair.getToCurrency()); }
+
+    public boolean hasRate(int fromIdx, int toIdx) {
+        return !Double.isNaN(matrix[fromIdx * n + toIdx]);
+    }
+
+    public double rate(int fromIdx, int toIdx) {
+        return matrix[fromIdx * n + toIdx];
+    }
+
+    public double convert(double amount, int fromIdx, int toIdx) {
+        return amount * matrix[fromIdx * n + toIdx];
+    }
+
+    public int scale(int index) { return scales[index]; }
+
+    /**
+     * Cross rate as a long scaled by 10^12.
+     */
+    public long fixedRate(int fromIdx, int toIdx) {
+        return fixedMatrix[fromIdx * n + toIdx];
+    }
+
+    /**
+     * Exact conversion of an amount in the source currency's minor units to
+     * the target currency's minor units, rounded with the given mode.
+     *
+     * @throws ArithmeticException on overflow, or with UNNECESSARY when rounding is required
+     */
+    public long convertMinor(long minorUnits, int fromIdx, int toIdx, RoundingMode rounding) {
+        long rate = fixedMatrix[fromIdx * n + toIdx];
+        if (rate == 0) {
+            throw new ArithmeticException("No rate for " + codes[fromIdx] + " -> " + codes[toIdx]);
+        }
+        long divisor = FixedPoint.pow10(FixedPoint.RATE_SCALE + scales[fromIdx] - scales[toIdx]);
+        return FixedPoint.mulDiv(minorUnits, rate, divisor, rounding);
+    }
+
+    public Money convert(Money amount, int toIdx, RoundingMode rounding) {
+        int fromIdx = require(amount.getCurrency());
+        return Money.ofMinor(codes[toIdx], convertMinor(amount.getMinorUnits(), fromIdx, toIdx, rounding));
+    }
+
+    /**
+     * Direct access to the cross-rate matrix for bulk loops. Callers must not modify it.
+     */
+    double[] matrix() { return matrix; }
+
+    long[] fixedMatrix() { return fixedMatrix; }
+    int[] scales() { return scales; }
+
+    @Override
+    public String toString() {
+        return "RateTable{version=" + version + ", currencies=" + Arrays.toString(codes) + "}";
+    }
+}
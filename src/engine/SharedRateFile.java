@@ -0,0 +1,368 @@
+package engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.function.Consumer;
+
+/**
+ * Rate snapshot in a memory-mapped file, shared by every process on a host.
+ *
+ * One process opens it for writing and publishes each new {@link RateTable};
+ * any number of processes map the same file read-only. The file itself has
+ * a single copy in the page cache; each reader copies a snapshot out of it
+ * once per change (see {@link SharedRateSource}) and converts from that
+ * private {@link RateTable}, so lookups never retry against a concurrent
+ * write. Put the file on tmpfs (e.g. /dev/shm) when it does not need to
+ * survive a reboot.
+ *
+ * Layout, in native byte order since the file never leaves the host:
+ * <pre>
+ * 0   magic "RSNP" | format | byte order | capacity       (4 ints)
+ * 16  sequence (long)  odd while a write is in progress
+ * 24  version (long) | count (int) | pad
+ * 64  capacity x 4-byte code slots (3 ASCII letters + 0)
+ *     capacity x capacity double rates, row = from
+ *     capacity x capacity fixed-point rates (10^12 scale)
+ * </pre>
+ * Writes follow the seqlock protocol: bump the sequence to odd, write,
+ * bump it to even. Readers retry if the sequence was odd or moved while
+ * they read, so they never lock and never see a half-written snapshot.
+ * Only one writer may hold the file; this is enforced with a file lock.
+ * A writer that finds a file with another layout never resizes it under
+ * readers that have it mapped: it renames a new file over the path, and
+ * readers notice through {@link #isReplaced}.
+ */
+public class SharedRateFile implements Closeable {
+
+    private static final int MAGIC = 0x52534E50; // "RSNP"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int CODE_SLOT_BYTES = 4;
+    private static final int SEQUENCE_OFFSET = 16;
+    private static final int VERSION_OFFSET = 24;
+    private static final int COUNT_OFFSET = 32;
+    private static final int NATIVE_ORDER = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN ? 1 : 2;
+    private static final long STALLED_WRITE_NANOS = 1_000_000_000L;
+
+    private static final VarHandle LONGS =
+        MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Path path;
+    private final Object fileKey;
+    private final FileChannel channel;
+    private final FileLock writeLock;     // null for readers
+    private final MappedByteBuffer mapped;
+    private final int capacity;
+    private final int codesOffset;
+    private final int matrixOffset;
+    private final int fixedOffset;
+    private final DoubleBuffer rates;
+    private final LongBuffer fixedRates;
+    private long mirroredVersion = Long.MIN_VALUE; // guarded by this
+
+    private SharedRateFile(Path path, FileChannel channel, FileLock writeLock, MappedByteBuffer mapped, int capacity)
+            throws IOException {
+        this.path = path;
+        this.fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        this.channel = channel;
+        this.writeLock = writeLock;
+        this.mapped = mapped;
+        this.capacity = capacity;
+        this.codesOffset = HEADER_BYTES;
+        this.matrixOffset = align8(codesOffset + capacity * CODE_SLOT_BYTES);
+        this.fixedOffset = matrixOffset + capacity * capacity * Double.BYTES;
+        this.rates = view(mapped, matrixOffset, fixedOffset).asDoubleBuffer();
+        this.fixedRates = view(mapped, fixedOffset, fixedOffset + capacity * capacity * Long.BYTES).asLongBuffer();
+    }
+
+    /**
+     * Creates or reopens the file for publishing, sized for up to {@code capacity}
+     * currencies. Fails if another process already holds it for writing.
+     */
+    public static SharedRateFile openWriter(Path path, int capacity) throws IOException {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        FileChannel channel = FileChannel.open(path,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            FileLock lock = lockForWriting(channel, path);
+            if (channel.size() >= HEADER_BYTES && !hasLayout(readHeader(channel), capacity)) {
+                // Readers may have this file mapped, and shrinking it would fault their
+                // next read; they keep the old file until they notice the new one
+                Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName() + ".", ".tmp");
+                FileChannel replacement = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                try {
+                    // Locked before the rename, so no other writer can take the new file first,
+                    FileLock replacementLock = lockForWriting(replacement, temp);
+                    // and with its header in place, so a reader that opens it right away accepts it
+                    writeHeader(replacement.map(FileChannel.MapMode.READ_WRITE, 0, fileSize(capacity)), capacity);
+                    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    lock.release();
+                    channel.close();
+                    channel = replacement;
+                    lock = replacementLock;
+                } catch (IOException | RuntimeException e) {
+                    replacement.close();
+                    Files.deleteIfExists(temp);
+                    throw e;
+                }
+            }
+            long size = fileSize(capacity);
+            boolean fresh = channel.size() < size;
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            mapped.order(ByteOrder.nativeOrder());
+            if (fresh) {
+                writeHeader(mapped, capacity);
+            }
+            return new SharedRateFile(path, channel, lock, mapped, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static FileLock lockForWriting(FileChannel channel, Path path) throws IOException {
+        FileLock lock = channel.tryLock();
+        if (lock == null) {
+            throw new IOException(path + " is already open for writing by another process");
+        }
+        return lock;
+    }
+
+    private static void writeHeader(MappedByteBuffer mapped, int capacity) {
+        mapped.order(ByteOrder.nativeOrder());
+        mapped.putInt(0, MAGIC).putInt(4, FORMAT).putInt(8, NATIVE_ORDER).putInt(12, capacity);
+    }
+
+    private static boolean hasLayout(ByteBuffer header, int capacity) {
+        return header.getInt(0) == MAGIC && header.getInt(4) == FORMAT
+            && header.getInt(8) == NATIVE_ORDER && header.getInt(12) == capacity;
+    }
+
+    /**
+     * Maps an existing file read-only.
+     */
+    public static SharedRateFile openReader(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException(path + " is not a shared rate file");
+            }
+            ByteBuffer header = readHeader(channel);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT) {
+                throw new IOException(path + " is not a shared rate file");
+            }
+            if (header.getInt(8) != NATIVE_ORDER) {
+                throw new IOException(path + " was written with a different byte order");
+            }
+            int capacity = header.getInt(12);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize(capacity));
+            mapped.order(ByteOrder.nativeOrder());
+            return new SharedRateFile(path, channel, null, mapped, capacity);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.nativeOrder());
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // keep reading
+        }
+        return header;
+    }
+
+    private static long fileSize(int capacity) {
+        long matrixBytes = (long) capacity * capacity * Double.BYTES;
+        return align8(HEADER_BYTES + capacity * CODE_SLOT_BYTES) + 2 * matrixBytes;
+    }
+
+    private static int align8(int offset) {
+        return (offset + 7) & ~7;
+    }
+
+    private static ByteBuffer view(MappedByteBuffer mapped, int start, int end) {
+        ByteBuffer view = mapped.duplicate();
+        view.limit(end).position(start);
+        return view.slice().order(ByteOrder.nativeOrder());
+    }
+
+    public Path getPath() { return path; }
+    public int getCapacity() { return capacity; }
+
+    /**
+     * True once another file has been renamed over (or the file removed
+     * from) this one's path. The mapping stays valid but is no longer
+     * written; reopen the path to follow the writer.
+     */
+    public boolean isReplaced() {
+        try {
+            Object current = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            return current != null && !current.equals(fileKey);
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /** Current sequence; changes every time a snapshot is published. */
+    public long getSequence() {
+        return (long) LONGS.getAcquire(mapped, SEQUENCE_OFFSET);
+    }
+
+    /**
+     * Writes a snapshot for readers to pick up. Writer only.
+     */
+    public synchronized void publish(RateTable table) {
+        if (writeLock == null) {
+            throw new IllegalStateException(path + " is open read-only");
+        }
+        int n = table.size();
+        if (n > capacity) {
+            throw new IllegalArgumentException(n + " currencies do not fit in capacity " + capacity);
+        }
+        double[] matrix = table.matrix();
+        long[] fixed = table.fixedMatrix();
+
+        // Already odd if a previous writer died mid-publish; that write is simply redone
+        long writing = (long) LONGS.getVolatile(mapped, SEQUENCE_OFFSET) | 1L;
+        LONGS.setVolatile(mapped, SEQUENCE_OFFSET, writing);
+        VarHandle.storeStoreFence();
+
+        mapped.putLong(VERSION_OFFSET, table.getVersion());
+        mapped.putInt(COUNT_OFFSET, n);
+        for (int i = 0; i < n; i++) {
+            String code = table.code(i);
+            int slot = codesOffset + i * CODE_SLOT_BYTES;
+            for (int c = 0; c < CODE_SLOT_BYTES; c++) {
+                mapped.put(slot + c, c < code.length() ? (byte) code.charAt(c) : 0);
+            }
+        }
+        for (int row = 0; row < n; row++) {
+            rates.put(row * capacity, matrix, row * n, n);
+            fixedRates.put(row * capacity, fixed, row * n, n);
+        }
+
+        LONGS.setRelease(mapped, SEQUENCE_OFFSET, writing + 1);
+    }
+
+    /**
+     * Copies the current snapshot out of the mapping, tagged with the
+     * version the writer published. Returns null if nothing has been
+     * published yet.
+     */
+    public RateTable snapshot() {
+        return read(-1);
+    }
+
+    /**
+     * Same as {@link #snapshot()} but tagged with the given version, for
+     * publishing into a {@link LiveRates} that keeps its own numbering.
+     */
+    public RateTable snapshot(long version) {
+        return read(version);
+    }
+
+    private RateTable read(long versionOverride) {
+        long stalledSince = 0;
+        while (true) {
+            long before = (long) LONGS.getAcquire(mapped, SEQUENCE_OFFSET);
+            if (before == 0) {
+                return null;
+            }
+            if ((before & 1) != 0) {
+                stalledSince = awaitWriter(stalledSince);
+                continue;
+            }
+
+            long version = mapped.getLong(VERSION_OFFSET);
+            int n = mapped.getInt(COUNT_OFFSET);
+            if (n < 0 || n > capacity) {
+                continue; // torn read; the sequence check below would reject it anyway
+            }
+            String[] codes = new String[n];
+            byte[] codeBytes = new byte[CODE_SLOT_BYTES];
+            double[] matrix = new double[n * n];
+            long[] fixed = new long[n * n];
+            for (int i = 0; i < n; i++) {
+                mapped.get(codesOffset + i * CODE_SLOT_BYTES, codeBytes);
+                int length = 0;
+                while (length < CODE_SLOT_BYTES && codeBytes[length] != 0) {
+                    length++;
+                }
+                codes[i] = new String(codeBytes, 0, length, StandardCharsets.US_ASCII);
+            }
+            for (int row = 0; row < n; row++) {
+                rates.get(row * capacity, matrix, row * n, n);
+                fixedRates.get(row * capacity, fixed, row * n, n);
+            }
+
+            VarHandle.loadLoadFence();
+            if ((long) LONGS.getVolatile(mapped, SEQUENCE_OFFSET) == before) {
+                return RateTable.fromArrays(versionOverride >= 0 ? versionOverride : version, codes, matrix, fixed);
+            }
+        }
+    }
+
+    /**
+     * Spins while a write is in progress. A write takes microseconds, so one
+     * still open after a second means the writer died in the middle of it.
+     */
+    private long awaitWriter(long stalledSince) {
+        long now = System.nanoTime();
+        if (stalledSince == 0) {
+            return now;
+        }
+        if (now - stalledSince > STALLED_WRITE_NANOS) {
+            throw new IllegalStateException("Writer of " + path + " stopped in the middle of a publish");
+        }
+        Thread.onSpinWait();
+        return stalledSince;
+    }
+
+    /**
+     * Publishes every snapshot that reaches {@code rates} into this file.
+     * Returns a handle that stops mirroring when closed.
+     */
+    public Closeable mirror(LiveRates rates) {
+        Consumer<RateTable> listener = this::publishIfNewer;
+        rates.addListener(listener);
+        publishIfNewer(rates.current());
+        return () -> rates.removeListener(listener);
+    }
+
+    /**
+     * Publishes only snapshots newer than the last one mirrored, so a late
+     * or repeated notification never puts older rates back in the file.
+     */
+    private synchronized void publishIfNewer(RateTable table) {
+        if (table.getVersion() > mirroredVersion) {
+            mirroredVersion = table.getVersion();
+            publish(table);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writeLock != null) {
+            writeLock.release();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,86 @@
+package engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rates read from a {@link SharedRateFile} published by another process.
+ * Loading copies the mapped matrices straight into a {@link RateTable},
+ * with no parsing. Changes are detected by polling the file's sequence
+ * number, which costs one memory read per poll. When the writer renames a
+ * new file over the path, the source reopens it and closes the old one.
+ */
+public class SharedRateSource implements RateSource {
+
+    private static final long DEFAULT_POLL_MILLIS = 20;
+
+    private volatile SharedRateFile file;
+    private final long pollMillis;
+
+    public SharedRateSource(SharedRateFile file) {
+        this(file, DEFAULT_POLL_MILLIS);
+    }
+
+    public SharedRateSource(SharedRateFile file, long pollMillis) {
+        this.file = file;
+        this.pollMillis = pollMillis;
+    }
+
+    @Override
+    public RateTable load(long version) throws IOException {
+        RateTable table = file.snapshot(version);
+        if (table == null) {
+            throw new IOException(file.getPath() + " has no published rates yet");
+        }
+        return table;
+    }
+
+    @Override
+    public Closeable watch(Runnable onChange) {
+        ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "shared-rates-poll");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] seen = { file.getSequence() };
+        poller.scheduleWithFixedDelay(() -> {
+            if (file.isReplaced() && reopen()) {
+                seen[0] = file.getSequence();
+                onChange.run();
+                return;
+            }
+            long sequence = file.getSequence();
+            if (sequence != seen[0] && (sequence & 1) == 0) {
+                seen[0] = sequence;
+                onChange.run();
+            }
+        }, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        return poller::shutdownNow;
+    }
+
+    /**
+     * Switches to the file now at the path; keeps the old one if that fails.
+     */
+    private boolean reopen() {
+        SharedRateFile old = file;
+        try {
+            file = SharedRateFile.openReader(old.getPath());
+        } catch (IOException | RuntimeException e) {
+            return false; // not there yet, or still being created
+        }
+        try {
+            old.close();
+        } catch (IOException e) {
+            System.err.println("Could not close " + old.getPath() + ": " + e.getMessage());
+        }
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "shared:" + file.getPath();
+    }
+}
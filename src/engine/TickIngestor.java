@@ -0,0 +1,427 @@
+package engine;
+
+import metrics.Metrics;
+import metrics.OperationStats;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Push ingestion of market rate ticks into {@link LiveRates}.
+ *
+ * One producer thread decodes binary ticks (from a socket, a replay file or
+ * direct {@link #offer} calls) into a preallocated single-producer ring.
+ * Currencies travel through the ring as {@link CodeIndex#keyOf} keys, so
+ * the producer needs no rate table. A publisher thread drains the ring into
+ * a per-pair "latest rate" array, keeping the tick with the latest
+ * timestamp, so within one publish interval only the newest tick for each
+ * pair survives and a late, older tick never replaces a newer one.
+ *
+ * Once per interval the changed pairs are applied to a
+ * {@link TriangulationEngine} and one snapshot is built and published
+ * through {@link LiveRates#publishNext}. If another writer (a refresher or
+ * replication subscriber) published since this ingestor's last snapshot,
+ * the engine is first re-seeded from that snapshot, so ticks are applied on
+ * top of its rates instead of reverting them, and currencies it added or
+ * dropped are picked up.
+ *
+ * Tick wire format, {@value #TICK_BYTES} bytes big-endian:
+ * <pre>
+ * from (3 ASCII) | to (3 ASCII) | pad (2) | rate double (8) | timestamp ms (8)
+ * </pre>
+ * Ticks for currencies outside the current snapshot, or with a rate that
+ * is not positive and finite, are rejected. When the ring is full the
+ * producer waits up to a configured budget (counted as backpressure) and
+ * then drops the tick (counted as dropped).
+ */
+public class TickIngestor implements Closeable {
+
+    public static final int TICK_BYTES = 24;
+
+    private static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int READ_BUFFER_BYTES = TICK_BYTES * 4096;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final OperationStats PUBLISH_STATS = Metrics.operation("ticks.publish");
+
+    private final LiveRates target;
+    private final long intervalNanos;
+    private final long maxWaitNanos;
+
+    // Single-producer ring of (pair key, rate, timestamp); pair key = fromKey * KEYS + toKey
+    private final int mask;
+    private final int[] pairs;
+    private final double[] rates;
+    private final long[] timestamps;
+    private final AtomicLong tail = new AtomicLong(); // next slot the producer fills
+    private final AtomicLong head = new AtomicLong(); // next slot the publisher reads
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+
+    // Publisher-owned state; pair = from * n + to over the current code set
+    private String[] codes;
+    private int n;
+    private CodeIndex codeIndex;
+    private RateTable mappedFrom;       // snapshot the code set was taken from
+    private TriangulationEngine engine;
+    private RateTable lastPublished;
+    private double[] latest;
+    private long[] latestTimestamps;
+    private boolean[] dirty;
+    private int[] dirtyPairs;
+    private int dirtyCount;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder backpressure = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder outOfOrder = new LongAdder();
+    private final LongAdder published = new LongAdder();
+
+    private final Thread publisher;
+    private volatile boolean running = true;
+
+    /**
+     * @param interval   how often changed pairs are published
+     * @param maxWait    how long a producer waits on a full ring before dropping; 0 drops at once
+     * @param capacity   ring size in ticks, a power of two
+     */
+    public TickIngestor(LiveRates target, long interval, long maxWait, TimeUnit unit, int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.target = target;
+        this.intervalNanos = unit.toNanos(interval);
+        this.maxWaitNanos = unit.toNanos(maxWait);
+        this.mask = capacity - 1;
+        this.pairs = new int[capacity];
+        this.rates = new double[capacity];
+        this.timestamps = new long[capacity];
+        this.codes = new String[0];
+        this.latest = new double[0];
+        this.latestTimestamps = new long[0];
+        this.dirty = new boolean[0];
+        this.dirtyPairs = new int[0];
+        reseed(target.current());
+
+        this.publisher = new Thread(this::publishLoop, "tick-publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+    }
+
+    public TickIngestor(LiveRates target, long intervalMillis) {
+        this(target, intervalMillis, 0, TimeUnit.MILLISECONDS, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Queues one tick. Currencies are {@link CodeIndex#keyOf} keys. Must only
+     * be called from the single producer thread. Returns false if the tick
+     * was rejected or dropped; ticks for unknown currencies are rejected
+     * later, when the publisher drains them.
+     */
+    public boolean offer(int fromKey, int toKey, double rate, long timestampMillis) {
+        received.increment();
+        if (fromKey < 0 || toKey < 0 || fromKey == toKey || !(rate > 0.0) || Double.isInfinite(rate)) {
+            rejected.increment();
+            return false;
+        }
+        long slot = tail.get();
+        if (slot - head.get() > mask && !awaitSpace(slot)) {
+            dropped.increment();
+            return false;
+        }
+        int i = (int) slot & mask;
+        pairs[i] = fromKey * CodeIndex.KEYS + toKey;
+        rates[i] = rate;
+        timestamps[i] = timestampMillis;
+        tail.lazySet(slot + 1);
+        return true;
+    }
+
+    /**
+     * Queues one tick stamped with the current time.
+     */
+    public boolean offer(String from, String to, double rate) {
+        return offer(CodeIndex.keyOf(from), CodeIndex.keyOf(to), rate, System.currentTimeMillis());
+    }
+
+    private boolean awaitSpace(long slot) {
+        if (maxWaitNanos <= 0) {
+            return false;
+        }
+        backpressure.increment();
+        long deadline = System.nanoTime() + maxWaitNanos;
+        while (slot - head.get() > mask) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !running) {
+                return false;
+            }
+            LockSupport.unpark(publisher);
+            LockSupport.parkNanos(Math.min(remaining, 10_000L));
+        }
+        return true;
+    }
+
+    /**
+     * Decodes ticks from the channel on the calling thread until end of
+     * stream. Partial ticks are carried over between reads. Returns the
+     * number of ticks decoded.
+     */
+    public long ingest(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = readBuffer;
+        buffer.clear();
+        long count = 0;
+        while (running && channel.read(buffer) >= 0) {
+            buffer.flip();
+            while (buffer.remaining() >= TICK_BYTES) {
+                int p = buffer.position();
+                int from = CodeIndex.keyOf(buffer, p, p + 3);
+                int to = CodeIndex.keyOf(buffer, p + 3, p + 6);
+                offer(from, to, buffer.getDouble(p + 8), buffer.getLong(p + 16));
+                buffer.position(p + TICK_BYTES);
+                count++;
+            }
+            buffer.compact();
+        }
+        return count;
+    }
+
+    /**
+     * Accepts feed connections on a daemon thread, one at a time (the ring
+     * has a single producer), and ingests each until it closes.
+     */
+    public void listen(int port) throws IOException {
+        ServerSocketChannel server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(port));
+        Thread acceptor = new Thread(() -> {
+            try (ServerSocketChannel s = server) {
+                while (running) {
+                    try (SocketChannel feed = s.accept()) {
+                        ingest(feed);
+                    } catch (IOException e) {
+                        System.err.println("Tick feed connection failed: " + e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Tick listener stopped: " + e.getMessage());
+            }
+        }, "tick-listener");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Writes one tick in the wire format, for feeds and test files.
+     */
+    public static void encode(ByteBuffer out, String from, String to, double rate, long timestamp) {
+        for (int i = 0; i < 3; i++) {
+            out.put((byte) from.charAt(i));
+        }
+        for (int i = 0; i < 3; i++) {
+            out.put((byte) to.charAt(i));
+        }
+        out.putShort((short) 0);
+        out.putDouble(rate);
+        out.putLong(timestamp);
+    }
+
+    private void publishLoop() {
+        long nextPublish = System.nanoTime() + intervalNanos;
+        while (running) {
+            drain();
+            long now = System.nanoTime();
+            if (now - nextPublish >= 0) {
+                if (dirtyCount > 0) {
+                    publishDirty();
+                }
+                nextPublish = now + intervalNanos;
+                continue;
+            }
+            LockSupport.parkNanos(this, Math.min(nextPublish - now, MAX_PARK_NANOS));
+        }
+        // Final flush so nothing accepted before close is lost
+        drain();
+        if (dirtyCount > 0) {
+            publishDirty();
+        }
+    }
+
+    private void drain() {
+        long from = head.get();
+        long to = tail.get();
+        for (long slot = from; slot < to; slot++) {
+            int i = (int) slot & mask;
+            int fromIdx = codeIndex.indexOfKey(pairs[i] / CodeIndex.KEYS);
+            int toIdx = codeIndex.indexOfKey(pairs[i] % CodeIndex.KEYS);
+            if ((fromIdx < 0 || toIdx < 0) && target.current() != mappedFrom) {
+                // Another writer may have added the currency since we last looked
+                remapCodes(target.current());
+                fromIdx = codeIndex.indexOfKey(pairs[i] / CodeIndex.KEYS);
+                toIdx = codeIndex.indexOfKey(pairs[i] % CodeIndex.KEYS);
+            }
+            if (fromIdx < 0 || toIdx < 0) {
+                rejected.increment();
+                continue;
+            }
+            int pair = fromIdx * n + toIdx;
+            if (timestamps[i] < latestTimestamps[pair]) {
+                outOfOrder.increment();
+                continue;
+            }
+            if (dirty[pair]) {
+                coalesced.increment();
+            } else {
+                dirty[pair] = true;
+                dirtyPairs[dirtyCount++] = pair;
+            }
+            latest[pair] = rates[i];
+            latestTimestamps[pair] = timestamps[i];
+        }
+        head.lazySet(to);
+    }
+
+    private void publishDirty() {
+        long start = PUBLISH_STATS.start();
+        try {
+            target.publishNext(this::buildSnapshot);
+            published.increment();
+            PUBLISH_STATS.stop(start);
+        } catch (RuntimeException e) {
+            PUBLISH_STATS.failed(start);
+            System.err.println("Tick publish failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs under the publish lock, so the current snapshot cannot change
+     * while the changed pairs are applied on top of it.
+     */
+    private RateTable buildSnapshot(long version) {
+        RateTable base = target.current();
+        if (base != lastPublished) {
+            reseed(base);
+        }
+        for (int k = 0; k < dirtyCount; k++) {
+            int pair = dirtyPairs[k];
+            dirty[pair] = false;
+            engine.setPair(codes[pair / n], codes[pair % n], latest[pair]);
+        }
+        dirtyCount = 0;
+        lastPublished = engine.snapshot(version);
+        return lastPublished;
+    }
+
+    /**
+     * Rebuilds the graph from a snapshot another writer published and
+     * follows its currency set.
+     */
+    private void reseed(RateTable base) {
+        engine = TriangulationEngine.seededFrom(base);
+        lastPublished = base;
+        remapCodes(base);
+    }
+
+    /**
+     * If the snapshot's currencies differ from ours, re-indexes the per-pair
+     * state, carrying over pending ticks and timestamps for pairs that remain.
+     */
+    private void remapCodes(RateTable base) {
+        mappedFrom = base;
+        if (sameCodes(base)) {
+            return;
+        }
+
+        String[] oldCodes = codes;
+        int oldN = n;
+        double[] oldLatest = latest;
+        long[] oldTimestamps = latestTimestamps;
+        boolean[] oldDirty = dirty;
+
+        codes = base.codes();
+        n = codes.length;
+        codeIndex = new CodeIndex(base);
+        latest = new double[n * n];
+        latestTimestamps = new long[n * n];
+        dirty = new boolean[n * n];
+        dirtyPairs = new int[n * n];
+        dirtyCount = 0;
+        Arrays.fill(latestTimestamps, Long.MIN_VALUE);
+
+        int[] remap = new int[oldN];
+        for (int i = 0; i < oldN; i++) {
+            remap[i] = base.indexOf(oldCodes[i]);
+        }
+        for (int pair = 0; pair < oldN * oldN; pair++) {
+            int from = remap[pair / oldN];
+            int to = remap[pair % oldN];
+            if (from < 0 || to < 0) {
+                continue;
+            }
+            int moved = from * n + to;
+            latest[moved] = oldLatest[pair];
+            latestTimestamps[moved] = oldTimestamps[pair];
+            if (oldDirty[pair]) {
+                dirty[moved] = true;
+                dirtyPairs[dirtyCount++] = moved;
+            }
+        }
+    }
+
+    private boolean sameCodes(RateTable table) {
+        if (codeIndex == null || table.size() != n) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (!table.code(i).equals(codes[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Ticks seen by the producer, including rejected and dropped ones. */
+    public long getReceived() { return received.sum(); }
+    /** Ticks with an unknown currency or invalid rate. */
+    public long getRejected() { return rejected.sum(); }
+    /** Ticks discarded because the ring stayed full. */
+    public long getDropped() { return dropped.sum(); }
+    /** Times the producer found the ring full and had to wait. */
+    public long getBackpressureEvents() { return backpressure.sum(); }
+    /** Ticks overwritten by a later tick for the same pair before publishing. */
+    public long getCoalesced() { return coalesced.sum(); }
+    /** Ticks ignored because a tick with a later timestamp had already arrived for the pair. */
+    public long getOutOfOrder() { return outOfOrder.sum(); }
+    public long getPublished() { return published.sum(); }
+
+    @Override
+    public String toString() {
+        return "received=" + getReceived() + " rejected=" + getRejected() + " dropped=" + getDropped()
+            + " backpressure=" + getBackpressureEvents() + " coalesced=" + getCoalesced()
+            + " outOfOrder=" + getOutOfOrder()
+            + " snapshots=" + getPublished();
+    }
+
+    /**
+     * Stops the publisher after publishing whatever has been accepted.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(publisher);
+        try {
+            publisher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package engine;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Test harness for {@link TickIngestor}: writes synthetic tick files and
+ * replays them, optionally paced to a target rate, then prints the
+ * ingestion counters.
+ *
+ * <pre>
+ * java -cp bin engine.TickReplay generate ticks.bin 5000000
+ * java -cp bin engine.TickReplay replay ticks.bin [ticksPerSecond] [intervalMs]
+ * </pre>
+ */
+public final class TickReplay {
+
+    private TickReplay() { }
+
+    /**
+     * Writes {@code count} random-walk ticks over pairs of the default currencies.
+     */
+    public static void generate(Path file, long count, long seed) throws IOException {
+        RateTable rates = DefaultRates.table();
+        int n = rates.size();
+        double[] walk = new double[n * n];
+        for (int i = 0; i < walk.length; i++) {
+            walk[i] = rates.rate(i / n, i % n);
+        }
+        Random random = new Random(seed);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(TickIngestor.TICK_BYTES * 4096);
+        long timestamp = System.currentTimeMillis();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (long t = 0; t < count; t++) {
+                // Mostly quotes against the first currency, like a real feed
+                int from = random.nextInt(4) == 0 ? random.nextInt(n) : 0;
+                int to = random.nextInt(n);
+                if (from == to) {
+                    to = (to + 1) % n;
+                }
+                int pair = from * n + to;
+                walk[pair] *= 1.0 + random.nextGaussian() * 1e-4;
+                TickIngestor.encode(buffer, rates.code(from), rates.code(to), walk[pair], timestamp + t / 1000);
+                if (!buffer.hasRemaining()) {
+                    write(out, buffer);
+                }
+            }
+            write(out, buffer);
+        }
+    }
+
+    private static void write(FileChannel out, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Feeds a tick file through the ingestor. A positive {@code ticksPerSecond}
+     * paces the reads; zero replays as fast as possible.
+     */
+    public static long replay(Path file, TickIngestor ingestor, long ticksPerSecond) throws IOException {
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            return ingestor.ingest(ticksPerSecond > 0 ? new PacedChannel(in, ticksPerSecond) : in);
+        }
+    }
+
+    /**
+     * Hands out at most as many whole ticks as the elapsed time allows.
+     */
+    private static final class PacedChannel implements ReadableByteChannel {
+        private final ReadableByteChannel in;
+        private final long ticksPerSecond;
+        private final long started = System.nanoTime();
+        private long ticksRead;
+
+        PacedChannel(ReadableByteChannel in, long ticksPerSecond) {
+            this.in = in;
+            this.ticksPerSecond = ticksPerSecond;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            long allowed;
+            while ((allowed = (System.nanoTime() - started) * ticksPerSecond / 1_000_000_000L - ticksRead) <= 0) {
+                LockSupport.parkNanos(100_000L);
+            }
+            int limit = dst.limit();
+            long bytes = Math.min(dst.remaining(), allowed * TickIngestor.TICK_BYTES);
+            dst.limit(dst.position() + (int) bytes);
+            try {
+                int read = in.read(dst);
+                if (read > 0) {
+                    ticksRead += read / TickIngestor.TICK_BYTES;
+                }
+                return read;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() { return in.isOpen(); }
+
+        @Override
+        public void close() throws IOException { in.close(); }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: TickReplay generate <file> <count> | replay <file> [ticksPerSecond] [intervalMs]");
+            System.exit(2);
+        }
+        Path file = Paths.get(args[1]);
+        if ("generate".equals(args[0])) {
+            long count = args.length > 2 ? Long.parseLong(args[2]) : 1_000_000L;
+            generate(file, count, 42L);
+            System.out.printf("Wrote %,d ticks to %s%n", count, file);
+            return;
+        }
+
+        long ticksPerSecond = args.length > 2 ? Long.parseLong(args[2]) : 0L;
+        long intervalMs = args.length > 3 ? Long.parseLong(args[3]) : 10L;
+        LiveRates rates = new LiveRates(DefaultRates.table());
+        TickIngestor ingestor = new TickIngestor(rates, intervalMs, 5, TimeUnit.MILLISECONDS, 1 << 16);
+        long started = System.nanoTime();
+        long ticks = replay(file, ingestor, ticksPerSecond);
+        ingestor.close();
+        double seconds = (System.nanoTime() - started) / 1e9;
+        System.out.printf("Replayed %,d ticks in %.2f s (%,.0f ticks/s)%n", ticks, seconds, ticks / seconds);
+        System.out.println(ingestor);
+        System.out.println("Final snapshot: " + rates.current());
+    }
+}
@@ -0,0 +1,371 @@
+package engine;
+
+import model.Currency;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Derives a full cross-rate matrix from a sparse set of quoted pairs.
+ *
+ * Currencies are nodes and each quoted pair is an edge usable in both
+ * directions (a missing reverse quote is taken as 1 / rate). For every
+ * source currency the engine keeps a shortest-hop tree, so each cross
+ * rate is the product of the fewest quotes possible. Changing the rate of
+ * an existing pair only recomputes the tree nodes below that edge;
+ * adding or removing a pair rebuilds the trees. Snapshots are plain
+ * {@link RateTable}s, so lookups stay O(1). The fixed-point form of each
+ * cross rate is cached as well and only re-derived for the cells an update
+ * touched, so a snapshot after a few ticks costs two array copies rather
+ * than n^2 decimal conversions.
+ *
+ * Instances are not thread-safe; feed them from one refresher thread.
+ */
+public class TriangulationEngine {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final double SEED_TOLERANCE = 1e-12;
+
+    private final double arbitrageTolerance;
+    private final Map<String, Integer> indexByCode = new HashMap<>();
+    private final List<String> codes = new ArrayList<>();
+
+    private int capacity = INITIAL_CAPACITY;
+    private double[] quoted = newNaN(capacity * capacity); // quoted[u * capacity + v], NaN if not quoted
+    private int[][] adjacency = new int[0][];
+
+    // Per-source shortest-hop trees, flattened as [source * n + node]
+    private int n;
+    private double[] cross = new double[0];
+    private int[] parent = new int[0];
+    private int[] order = new int[0];   // BFS visit order per source
+    private int[] depth = new int[0];
+    private boolean[] below = new boolean[0]; // updateEdge scratch, one flag per node
+    private boolean topologyDirty;
+
+    // Fixed-point copy of cross, refreshed lazily for the cells listed in staleCells
+    private long[] fixed = new long[0];
+    private boolean[] stale = new boolean[0];
+    private int[] staleCells = new int[0];
+    private int staleCount;
+    private String[] codeArray = new String[0];
+
+    /**
+     * @param arbitrageTolerance relative gain below which a cycle is not reported, e.g. 1e-9
+     */
+    public TriangulationEngine(double arbitrageTolerance) {
+        this.arbitrageTolerance = arbitrageTolerance;
+    }
+
+    public static TriangulationEngine of(Collection<Currency> pairs) {
+        TriangulationEngine engine = new TriangulationEngine(1e-9);
+        for (Currency pair : pairs) {
+            engine.setPair(pair.getFromCurrency(), pair.getToCurrency(), pair.getRate());
+        }
+        return engine;
+    }
+
+    /**
+     * Seeds an engine with the rates of an existing snapshot, so its first
+     * snapshot reproduces them. Rates against the table's first currency
+     * become quotes, and so does every pair that those do not imply, such
+     * as a cross quoted on its own in a non-transitive table. Currencies
+     * keep the table's order, including ones with no rates.
+     */
+    public static TriangulationEngine seededFrom(RateTable table) {
+        TriangulationEngine engine = new TriangulationEngine(1e-9);
+        int n = table.size();
+        for (int i = 0; i < n; i++) {
+            engine.indexFor(table.code(i));
+        }
+        for (int from = 0; from < n; from++) {
+            for (int to = 0; to < n; to++) {
+                if (from == to || !table.hasRate(from, to)) {
+                    continue;
+                }
+                double rate = table.rate(from, to);
+                if (from != 0) {
+                    double implied = table.rate(0, to) / table.rate(0, from);
+                    if (Math.abs(rate / implied - 1.0) <= SEED_TOLERANCE) {
+                        continue;
+                    }
+                }
+                engine.setPair(table.code(from), table.code(to), rate);
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * A cycle of quotes whose product exceeds one.
+     */
+    public static final class ArbitrageCycle {
+        private final String[] path;
+        private final double gain;
+
+        ArbitrageCycle(String[] path, double gain) {
+            this.path = path;
+            this.gain = gain;
+        }
+
+        /** Currencies visited, starting and ending at the same code. */
+        public String[] getPath() { return path.clone(); }
+
+        /** Product of the rates around the cycle; 1.0 means no profit. */
+        public double getGain() { return gain; }
+
+        @Override
+        public String toString() {
+            return String.join(" -> ", path) + String.format(" (x%.8f)", gain);
+        }
+    }
+
+    /**
+     * Adds or updates the quote 1 from = rate to.
+     */
+    public void setPair(String from, String to, double rate) {
+        if (!(rate > 0.0) || Double.isInfinite(rate)) {
+            throw new IllegalArgumentException("Invalid rate " + from + "->" + to + ": " + rate);
+        }
+        if (from.equals(to)) {
+            throw new IllegalArgumentException("Pair must have two different currencies: " + from);
+        }
+        int u = indexFor(from);
+        int v = indexFor(to);
+        boolean connected = hasEdge(u, v);
+        quoted[u * capacity + v] = rate;
+
+        if (!connected || topologyDirty) {
+            topologyDirty = true;
+        } else {
+            updateEdge(u, v);
+        }
+    }
+
+    public void removePair(String from, String to) {
+        Integer u = indexByCode.get(from);
+        Integer v = indexByCode.get(to);
+        if (u == null || v == null || Double.isNaN(quoted[u * capacity + v])) {
+            return;
+        }
+        quoted[u * capacity + v] = Double.NaN;
+        if (hasEdge(u, v)) {
+            // Reverse quote still connects the pair; only the weight changed
+            if (!topologyDirty) {
+                updateEdge(u, v);
+            }
+        } else {
+            topologyDirty = true;
+        }
+    }
+
+    /**
+     * Returns the current cross rates as an immutable snapshot.
+     */
+    public RateTable snapshot(long version) {
+        rebuildIfDirty();
+        for (int k = 0; k < staleCount; k++) {
+            int cell = staleCells[k];
+            stale[cell] = false;
+            fixed[cell] = toFixed(cross[cell]);
+        }
+        staleCount = 0;
+        return RateTable.fromArrays(version, codeArray, cross.clone(), fixed.clone());
+    }
+
+    /**
+     * Checks every quoted pair against the triangulated rate back to its
+     * source and reports cycles that return more than they started with.
+     */
+    public List<ArbitrageCycle> findArbitrage() {
+        rebuildIfDirty();
+        List<ArbitrageCycle> cycles = new ArrayList<>();
+        for (int u = 0; u < n; u++) {
+            for (int v = 0; v < n; v++) {
+                double rate = quoted[u * capacity + v];
+                if (Double.isNaN(rate)) {
+                    continue;
+                }
+                // Go u -> v on the quote, then back v -> u along v's tree
+                double back = cross[v * n + u];
+                double gain = rate * back;
+                if (gain > 1.0 + arbitrageTolerance) {
+                    cycles.add(new ArbitrageCycle(cyclePath(u, v), gain));
+                }
+            }
+        }
+        return cycles;
+    }
+
+    private String[] cyclePath(int u, int v) {
+        // Tree path from v back to u, read by walking parents from u towards the root v
+        List<String> back = new ArrayList<>();
+        for (int x = u; x != v; x = parent[v * n + x]) {
+            back.add(codes.get(x));
+        }
+        String[] path = new String[back.size() + 2];
+        path[0] = codes.get(u);
+        path[1] = codes.get(v);
+        for (int i = 0; i < back.size(); i++) {
+            path[i + 2] = back.get(back.size() - 1 - i);
+        }
+        return path;
+    }
+
+    public int size() { return codes.size(); }
+
+    private int indexFor(String code) {
+        Integer index = indexByCode.get(code);
+        if (index != null) {
+            return index;
+        }
+        int next = codes.size();
+        if (next == capacity) {
+            grow();
+        }
+        indexByCode.put(code, next);
+        codes.add(code);
+        topologyDirty = true;
+        return next;
+    }
+
+    private void grow() {
+        int newCapacity = capacity * 2;
+        double[] grown = newNaN(newCapacity * newCapacity);
+        for (int u = 0; u < capacity; u++) {
+            System.arraycopy(quoted, u * capacity, grown, u * newCapacity, capacity);
+        }
+        quoted = grown;
+        capacity = newCapacity;
+    }
+
+    private boolean hasEdge(int u, int v) {
+        return !Double.isNaN(quoted[u * capacity + v]) || !Double.isNaN(quoted[v * capacity + u]);
+    }
+
+    /** Effective rate along an edge: the direct quote, else the inverse of the reverse quote. */
+    private double weight(int u, int v) {
+        double direct = quoted[u * capacity + v];
+        return Double.isNaN(direct) ? 1.0 / quoted[v * capacity + u] : direct;
+    }
+
+    private void rebuildIfDirty() {
+        if (!topologyDirty) {
+            return;
+        }
+        n = codes.size();
+        adjacency = new int[n][];
+        int[] neighbours = new int[n];
+        for (int u = 0; u < n; u++) {
+            int count = 0;
+            for (int v = 0; v < n; v++) {
+                if (u != v && hasEdge(u, v)) {
+                    neighbours[count++] = v;
+                }
+            }
+            adjacency[u] = Arrays.copyOf(neighbours, count);
+        }
+
+        cross = newNaN(n * n);
+        parent = new int[n * n];
+        order = new int[n * n];
+        depth = new int[n * n];
+        below = new boolean[n];
+        for (int source = 0; source < n; source++) {
+            buildTree(source);
+        }
+
+        fixed = new long[n * n];
+        for (int cell = 0; cell < cross.length; cell++) {
+            fixed[cell] = toFixed(cross[cell]);
+        }
+        stale = new boolean[n * n];
+        staleCells = new int[n * n];
+        staleCount = 0;
+        codeArray = codes.toArray(new String[0]);
+        topologyDirty = false;
+    }
+
+    /** Same conversion as {@link RateTable#fromMatrix}; 0 marks a pair with no rate. */
+    private static long toFixed(double rate) {
+        return Double.isNaN(rate) ? 0L : FixedPoint.toFixedRate(BigDecimal.valueOf(rate));
+    }
+
+    private void buildTree(int source) {
+        int base = source * n;
+        Arrays.fill(parent, base, base + n, -1);
+        Arrays.fill(order, base, base + n, -1);
+        Arrays.fill(depth, base, base + n, -1);
+        cross[base + source] = 1.0;
+        depth[base + source] = 0;
+        order[base] = source;
+
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int u = order[base + head++];
+            for (int v : adjacency[u]) {
+                if (depth[base + v] >= 0) {
+                    continue;
+                }
+                depth[base + v] = depth[base + u] + 1;
+                parent[base + v] = u;
+                cross[base + v] = cross[base + u] * weight(u, v);
+                order[base + tail++] = v;
+            }
+        }
+    }
+
+    /**
+     * Re-derives rates in every tree that routes through edge u-v.
+     * Only nodes below the edge change, and they are visited in BFS order
+     * so each parent is final before its children.
+     */
+    private void updateEdge(int u, int v) {
+        boolean[] dirty = below;
+        for (int source = 0; source < n; source++) {
+            int base = source * n;
+            int child;
+            if (parent[base + v] == u) {
+                child = v;
+            } else if (parent[base + u] == v) {
+                child = u;
+            } else {
+                continue;
+            }
+
+            Arrays.fill(dirty, false);
+            dirty[child] = true;
+            boolean started = false;
+            for (int i = 0; i < n; i++) {
+                int x = order[base + i];
+                if (x < 0) {
+                    break;
+                }
+                if (x == child) {
+                    started = true;
+                } else if (!started || !dirty[parent[base + x]]) {
+                    continue;
+                }
+                dirty[x] = true;
+                int p = parent[base + x];
+                cross[base + x] = cross[base + p] * weight(p, x);
+                if (!stale[base + x]) {
+                    stale[base + x] = true;
+                    staleCells[staleCount++] = base + x;
+                }
+            }
+        }
+    }
+
+    private static double[] newNaN(int length) {
+        double[] values = new double[length];
+        Arrays.fill(values, Double.NaN);
+        return values;
+    }
+}
@@ -0,0 +1,519 @@
+package loadtest;
+
+import engine.CodeIndex;
+import engine.DefaultRates;
+import engine.LiveRates;
+import engine.RateTable;
+import engine.TickIngestor;
+import metrics.GcMonitor;
+import metrics.LatencyHistogram;
+import util.AmountFormat;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Headless load and soak test for the conversion path: look up the current
+ * {@link RateTable}, resolve both codes, parse the amount text into exact
+ * minor units, convert with {@link RateTable#convertMinor} and format the
+ * result at the target currency's scale, as the GUI and server do for
+ * every request. Amount texts are generated up front, with each source
+ * currency's decimals, so producing them is not part of the measurement.
+ *
+ * Workers run on platform threads, or virtual threads when the JVM has
+ * them, and draw both currencies of each pair from a Zipfian distribution
+ * over the configured currencies, most traded first. Meanwhile a feed
+ * thread random-walks rates through a {@link TickIngestor}, so snapshots
+ * are replaced under the workers exactly as with a live tick feed.
+ *
+ * Every report interval prints throughput, latency percentiles, GC
+ * activity and bytes allocated per conversion: by the workers alone, and
+ * by the whole process (rate feed, ingestor, JIT and all) as measured by
+ * {@link GcMonitor}. With a target rate,
+ * latency is measured from each conversion's scheduled start, so a stall
+ * counts against every conversion it delayed rather than only the first.
+ *
+ * Configured through system properties:
+ * <pre>
+ * load.threads       concurrent workers (default 2 x cores)
+ * load.virtual       true to run workers on virtual threads (default false)
+ * load.rate          target conversions per second across all workers; 0 = flat out (default)
+ * load.warmup.s      unmeasured warm-up (default 10)
+ * load.duration.s    measured run length (default 60)
+ * load.report.s      seconds per report line (default 5)
+ * load.currencies    comma-separated codes, most traded first (default: every currency)
+ * load.zipf          skew of the pair distribution; 0 = uniform (default 1.0)
+ * load.updates       rate ticks per second fed concurrently; 0 = none (default 1000)
+ * load.publish.ms    tick coalescing interval (default 10)
+ * load.min.ops       fail if measured throughput is below this
+ * load.max.p99.us    fail if overall p99 latency is above this
+ * load.max.drift     fail if the second half's throughput or p99 is worse than
+ *                    the first half's by more than this fraction, e.g. 0.2
+ * </pre>
+ * Exits with status 1 when a limit is missed, so a deploy pipeline can
+ * gate on it.
+ */
+public final class LoadGenerator {
+
+    private static final RoundingMode ROUNDING = RoundingMode.HALF_EVEN;
+    // Indexed by a currency's minor-unit digits, grouped like the GUI's
+    private static final AmountFormat[] FORMATS = {
+        new AmountFormat(0, ','), new AmountFormat(1, ','), new AmountFormat(2, ','), new AmountFormat(3, ',')
+    };
+    private static final int AMOUNT_TEXTS = 1024;
+    private static final int ALLOCATION_SAMPLE_OPS = 1024;
+    private static final long SETTLE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final int threads;
+    private final boolean virtual;
+    private final double targetRate;
+    private final long warmupSeconds;
+    private final long durationSeconds;
+    private final long reportSeconds;
+    private final String[] codes;
+    private final ZipfianSampler popularity;
+    private final String[][] amountTexts; // per code, with that currency's decimals
+    private final int updatesPerSecond;
+    private final long publishMillis;
+    private final double minOps;
+    private final double maxP99Micros;
+    private final double maxDrift;
+
+    private final LiveRates rates = new LiveRates(DefaultRates.table());
+    private final com.sun.management.ThreadMXBean threadBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private boolean onVirtualThreads;
+    private volatile boolean running = true;
+    private volatile boolean measuring;
+    private volatile LatencyHistogram interval = new LatencyHistogram();
+    private LatencyHistogram spare = new LatencyHistogram();
+    private final LatencyHistogram total = new LatencyHistogram();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private volatile boolean allocationTracked = true;
+    private final DoubleAdder sink = new DoubleAdder();
+
+    private LoadGenerator() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.threads = Integer.getInteger("load.threads", cores * 2);
+        this.virtual = Boolean.getBoolean("load.virtual");
+        this.targetRate = doubleProperty("load.rate", 0.0);
+        this.warmupSeconds = Long.getLong("load.warmup.s", 10L);
+        this.durationSeconds = Long.getLong("load.duration.s", 60L);
+        this.reportSeconds = Long.getLong("load.report.s", 5L);
+        this.updatesPerSecond = Integer.getInteger("load.updates", 1000);
+        this.publishMillis = Long.getLong("load.publish.ms", 10L);
+        this.minOps = doubleProperty("load.min.ops", Double.NaN);
+        this.maxP99Micros = doubleProperty("load.max.p99.us", Double.NaN);
+        this.maxDrift = doubleProperty("load.max.drift", Double.NaN);
+
+        RateTable table = rates.current();
+        String list = System.getProperty("load.currencies");
+        this.codes = list == null ? table.codes() : list.split("\\s*,\\s*");
+        for (String code : codes) {
+            table.require(code);
+        }
+        if (codes.length < 2) {
+            throw new IllegalArgumentException("load.currencies needs at least two currencies");
+        }
+        if (threads < 1 || durationSeconds < 1 || reportSeconds < 1) {
+            throw new IllegalArgumentException("load.threads, load.duration.s and load.report.s must be positive");
+        }
+        if (warmupSeconds < 0 || targetRate < 0 || updatesPerSecond < 0) {
+            throw new IllegalArgumentException("load.warmup.s, load.rate and load.updates cannot be negative");
+        }
+        this.popularity = new ZipfianSampler(codes.length, doubleProperty("load.zipf", 1.0));
+
+        Random random = new Random(7);
+        this.amountTexts = new String[codes.length][AMOUNT_TEXTS];
+        char[] text = new char[64];
+        for (int c = 0; c < codes.length; c++) {
+            int scale = table.scale(table.require(codes[c]));
+            long unitsPerMajor = (long) Math.pow(10, scale);
+            for (int i = 0; i < AMOUNT_TEXTS; i++) {
+                long units = unitsPerMajor + (long) (random.nextDouble() * 9999.0 * unitsPerMajor);
+                amountTexts[c][i] = new String(text, 0, formatFor(scale).formatUnits(units, text, 0));
+            }
+        }
+    }
+
+    private static AmountFormat formatFor(int scale) {
+        return FORMATS[Math.min(scale, FORMATS.length - 1)];
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        return value == null ? defaultValue : Double.parseDouble(value);
+    }
+
+    /**
+     * One report line's worth of measurements.
+     */
+    private static final class Interval {
+        final double opsPerSecond;
+        final long p50;
+        final long p99;
+        final long p999;
+        final long max;
+
+        Interval(double opsPerSecond, LatencyHistogram.Snapshot latency) {
+            this.opsPerSecond = opsPerSecond;
+            this.p50 = latency.percentileNanos(0.50);
+            this.p99 = latency.percentileNanos(0.99);
+            this.p999 = latency.percentileNanos(0.999);
+            this.max = latency.getMaxNanos();
+        }
+    }
+
+    /**
+     * Runs warm-up and the measured period, printing as it goes.
+     * Returns false if any configured limit was missed.
+     */
+    public boolean run(PrintStream out) throws InterruptedException {
+        TickIngestor ingestor = updatesPerSecond > 0 ? new TickIngestor(rates, publishMillis) : null;
+        Thread feed = null;
+        if (ingestor != null) {
+            feed = new Thread(() -> feedRates(ingestor), "load-rate-feed");
+            feed.setDaemon(true);
+            feed.start();
+        }
+        ExecutorService workers = newWorkerExecutor();
+        long periodNanos = targetRate > 0 ? (long) (threads * 1e9 / targetRate) : 0;
+        for (int i = 0; i < threads; i++) {
+            workers.execute(() -> work(periodNanos));
+        }
+        GcMonitor gc = new GcMonitor();
+
+        out.printf("%d %s workers, %s, %d currencies (%s takes %.0f%% of draws), %d rate ticks/s%n", threads,
+            onVirtualThreads ? "virtual" : "platform", targetRate > 0 ? String.format("%.0f conversions/s", targetRate) : "unthrottled",
+            codes.length, codes[0], popularity.probability(0) * 100, updatesPerSecond);
+        if (warmupSeconds > 0) {
+            out.printf("Warming up for %d s%n", warmupSeconds);
+            TimeUnit.SECONDS.sleep(warmupSeconds);
+        }
+
+        // Start measuring from a clean slate
+        swapInterval();
+        total.reset();
+        gc.getPauses().reset();
+        measuring = true;
+        long gcCount = gc.getCollections();
+        long gcMillis = gc.getCollectionMillis();
+        long allocated = allocatedBytes.sum();
+        long measureAllocated = allocatedBytes.sum();
+        long processAllocated = gc.getAllocatedBytes();
+        long measureProcessAllocated = processAllocated;
+        long measureStart = System.nanoTime();
+        long intervalStart = measureStart;
+        List<Interval> intervals = new ArrayList<>();
+
+        out.printf("%8s %12s %9s %9s %9s %9s %5s %7s %8s %9s %8s%n",
+            "time s", "ops/s", "p50 us", "p99 us", "p99.9 us", "max us", "gcs", "gc ms", "B/op", "all B/op", "all MB/s");
+        long end = measureStart + TimeUnit.SECONDS.toNanos(durationSeconds);
+        while (true) {
+            long next = Math.min(intervalStart + TimeUnit.SECONDS.toNanos(reportSeconds), end);
+            long wait;
+            while ((wait = next - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            LatencyHistogram.Snapshot latency = swapInterval().snapshot();
+            long now = System.nanoTime();
+            double seconds = (now - intervalStart) / 1e9;
+            Interval sample = new Interval(latency.getCount() / seconds, latency);
+            intervals.add(sample);
+
+            long gcCountNow = gc.getCollections();
+            long gcMillisNow = gc.getCollectionMillis();
+            long allocatedNow = allocatedBytes.sum();
+            long processAllocatedNow = gc.getAllocatedBytes();
+            long processBytes = processAllocatedNow - processAllocated;
+            out.printf("%8.1f %12.0f %9.2f %9.2f %9.2f %9.2f %5d %7d %8s %9s %8.1f%n",
+                (now - measureStart) / 1e9, sample.opsPerSecond, sample.p50 / 1e3, sample.p99 / 1e3,
+                sample.p999 / 1e3, sample.max / 1e3, gcCountNow - gcCount, gcMillisNow - gcMillis,
+                bytesPerOp(allocatedNow - allocated, latency.getCount()),
+                processBytesPerOp(processBytes, latency.getCount()), processBytes / seconds / (1 << 20));
+            gcCount = gcCountNow;
+            gcMillis = gcMillisNow;
+            allocated = allocatedNow;
+            processAllocated = processAllocatedNow;
+            intervalStart = now;
+            if (now - end >= 0) {
+                break;
+            }
+        }
+        long measuredNanos = System.nanoTime() - measureStart;
+        long workerBytes = allocatedBytes.sum() - measureAllocated;
+        long processBytes = gc.getAllocatedBytes() - measureProcessAllocated;
+
+        running = false;
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            out.println("Workers did not stop within 10 s");
+        }
+        if (feed != null) {
+            feed.join();
+            ingestor.close();
+        }
+        gc.close();
+
+        return summarize(out, intervals, measuredNanos, workerBytes, processBytes, gc, ingestor);
+    }
+
+    /**
+     * Points workers at a fresh histogram and returns the one they were using,
+     * after giving in-flight records a moment to land. Records that straddle
+     * the swap may be counted in the neighbouring interval.
+     */
+    private LatencyHistogram swapInterval() {
+        LatencyHistogram finished = interval;
+        spare.reset();
+        interval = spare;
+        spare = finished;
+        LockSupport.parkNanos(SETTLE_NANOS);
+        return finished;
+    }
+
+    private boolean summarize(PrintStream out, List<Interval> intervals, long measuredNanos,
+                              long workerBytes, long processBytes, GcMonitor gc, TickIngestor ingestor) {
+        LatencyHistogram.Snapshot latency = total.snapshot();
+        long conversions = latency.getCount();
+        double opsPerSecond = conversions / (measuredNanos / 1e9);
+        double p99Micros = latency.percentileNanos(0.99) / 1e3;
+        LatencyHistogram.Snapshot pauses = gc.getPauses().snapshot();
+
+        out.println();
+        out.printf("Measured %.1f s: %,d conversions (%,.0f/s), %,d failed%n",
+            measuredNanos / 1e9, conversions, opsPerSecond, failures.sum());
+        out.printf("Latency us: p50 %.2f  p99 %.2f  p99.9 %.2f  p99.99 %.2f  max %.2f%n",
+            latency.percentileNanos(0.50) / 1e3, p99Micros, latency.percentileNanos(0.999) / 1e3,
+            latency.percentileNanos(0.9999) / 1e3, latency.getMaxNanos() / 1e3);
+        out.printf("GC pauses: %d, p99 %d ms, max %d ms%n", pauses.getCount(),
+            TimeUnit.NANOSECONDS.toMillis(pauses.percentileNanos(0.99)), TimeUnit.NANOSECONDS.toMillis(pauses.getMaxNanos()));
+        out.printf("Allocation: %s B/op in workers, %s B/op across the process (%.1f MB/s)%n",
+            bytesPerOp(workerBytes, conversions), processBytesPerOp(processBytes, conversions),
+            Math.max(0, processBytes) / (measuredNanos / 1e9) / (1 << 20));
+        if (ingestor != null) {
+            out.println("Rate feed: " + ingestor);
+        }
+
+        List<String> missed = new ArrayList<>();
+        if (!Double.isNaN(minOps) && opsPerSecond < minOps) {
+            missed.add(String.format("throughput %.0f/s is below load.min.ops %.0f", opsPerSecond, minOps));
+        }
+        if (!Double.isNaN(maxP99Micros) && p99Micros > maxP99Micros) {
+            missed.add(String.format("p99 %.2f us is above load.max.p99.us %.2f", p99Micros, maxP99Micros));
+        }
+        if (intervals.size() >= 2) {
+            int half = intervals.size() / 2;
+            double firstOps = meanOps(intervals.subList(0, half));
+            double secondOps = meanOps(intervals.subList(intervals.size() - half, intervals.size()));
+            double firstP99 = meanP99(intervals.subList(0, half));
+            double secondP99 = meanP99(intervals.subList(intervals.size() - half, intervals.size()));
+            double throughputDrift = secondOps / firstOps - 1.0;
+            double p99Drift = secondP99 / firstP99 - 1.0;
+            out.printf("Drift, second half vs first: throughput %+.1f%%, p99 %+.1f%%%n",
+                throughputDrift * 100, p99Drift * 100);
+            if (!Double.isNaN(maxDrift) && (-throughputDrift > maxDrift || p99Drift > maxDrift)) {
+                missed.add(String.format("drift exceeds load.max.drift %.2f", maxDrift));
+            }
+        }
+        for (String reason : missed) {
+            out.println("FAILED: " + reason);
+        }
+        if (missed.isEmpty()) {
+            out.println("PASSED");
+        }
+        out.printf("(checksum %.1f)%n", sink.sum());
+        return missed.isEmpty();
+    }
+
+    private static double meanOps(List<Interval> intervals) {
+        double sum = 0.0;
+        for (Interval interval : intervals) {
+            sum += interval.opsPerSecond;
+        }
+        return sum / intervals.size();
+    }
+
+    private static double meanP99(List<Interval> intervals) {
+        double sum = 0.0;
+        for (Interval interval : intervals) {
+            sum += interval.p99;
+        }
+        return sum / intervals.size();
+    }
+
+    private String bytesPerOp(long bytes, long ops) {
+        if (!allocationTracked) {
+            return "n/a";
+        }
+        return ops == 0 ? "-" : String.format("%.1f", (double) bytes / ops);
+    }
+
+    private static String processBytesPerOp(long bytes, long ops) {
+        return ops == 0 ? "-" : String.format("%.1f", (double) Math.max(0, bytes) / ops);
+    }
+
+    private ExecutorService newWorkerExecutor() {
+        if (virtual) {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                ExecutorService executor = (ExecutorService) factory.invoke(null);
+                onVirtualThreads = true;
+                return executor;
+            } catch (ReflectiveOperationException e) {
+                System.err.println("Virtual threads are not available on this JVM; using platform threads");
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "load-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private void work(long periodNanos) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        char[] text = new char[64];
+        double checksum = 0.0;
+        // Stagger paced workers so they do not all fire together
+        long next = System.nanoTime() + (periodNanos > 0 ? random.nextLong(periodNanos) : 0);
+        long allocationMark = threadBean.getCurrentThreadAllocatedBytes();
+        int sinceSample = 0;
+
+        while (running) {
+            long intended;
+            if (periodNanos > 0) {
+                intended = next;
+                next += periodNanos;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            } else {
+                intended = System.nanoTime();
+            }
+
+            int from = popularity.sample(random);
+            int to = popularity.sample(random);
+            while (to == from) {
+                to = popularity.sample(random);
+            }
+            checksum += convert(codes[from], codes[to], amountTexts[from][random.nextInt(AMOUNT_TEXTS)], text);
+
+            long latency = System.nanoTime() - intended;
+            interval.record(latency);
+            if (measuring) {
+                total.record(latency);
+            }
+            if (++sinceSample == ALLOCATION_SAMPLE_OPS) {
+                sinceSample = 0;
+                allocationMark = sampleAllocation(allocationMark);
+            }
+        }
+        sampleAllocation(allocationMark);
+        sink.add(checksum);
+    }
+
+    /**
+     * The per-request work of a conversion, minus the UI or HTTP around it.
+     */
+    private double convert(String fromCode, String toCode, String amountText, char[] text) {
+        RateTable table = rates.current();
+        int from = table.indexOf(fromCode);
+        int to = table.indexOf(toCode);
+        if (from < 0 || to < 0 || !table.hasRate(from, to)) {
+            failures.increment();
+            return 0.0;
+        }
+        long amountMinor = formatFor(table.scale(from)).parseUnits(amountText);
+        if (amountMinor == AmountFormat.INVALID_UNITS) {
+            failures.increment();
+            return 0.0;
+        }
+        long resultMinor;
+        try {
+            resultMinor = table.convertMinor(amountMinor, from, to, ROUNDING);
+        } catch (ArithmeticException e) {
+            failures.increment();
+            return 0.0;
+        }
+        int length = formatFor(table.scale(to)).formatUnits(resultMinor, text, 0);
+        return resultMinor + text[length - 1];
+    }
+
+    private long sampleAllocation(long mark) {
+        long now = threadBean.getCurrentThreadAllocatedBytes();
+        if (now < 0 || mark < 0) {
+            // Not supported here, e.g. on virtual threads
+            allocationTracked = false;
+        } else {
+            allocatedBytes.add(now - mark);
+        }
+        return now;
+    }
+
+    /**
+     * Random-walks the rates of pairs drawn from the same popularity
+     * distribution, feeding them as ticks at {@code load.updates} per second.
+     */
+    private void feedRates(TickIngestor ingestor) {
+        RateTable start = rates.current();
+        int n = codes.length;
+        int[] index = new int[n];
+        int[] keys = new int[n];
+        for (int i = 0; i < n; i++) {
+            index[i] = start.require(codes[i]);
+            keys[i] = CodeIndex.keyOf(codes[i]);
+        }
+        double[] walk = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                walk[i * n + j] = start.rate(index[i], index[j]);
+            }
+        }
+        Random random = new Random(42);
+        long period = (long) (1e9 / updatesPerSecond);
+        long next = System.nanoTime();
+        while (running) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+                continue;
+            }
+            int from = popularity.sample(random);
+            int to = popularity.sample(random);
+            if (from == to) {
+                continue;
+            }
+            // Quote each pair in one direction only, as a feed would
+            int a = Math.min(from, to);
+            int b = Math.max(from, to);
+            double rate = walk[a * n + b] * (1.0 + random.nextGaussian() * 1e-4);
+            walk[a * n + b] = rate;
+            ingestor.offer(keys[a], keys[b], rate, System.currentTimeMillis());
+            next += period;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        boolean passed = new LoadGenerator().run(System.out);
+        System.exit(passed ? 0 : 1);
+    }
+}
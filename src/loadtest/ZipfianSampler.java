@@ -0,0 +1,59 @@
+package loadtest;
+
+import java.util.Random;
+
+/**
+ * Draws ranks 0..n-1 with probability proportional to 1 / (rank + 1)^s,
+ * so a few items take most of the traffic, as major currencies do.
+ * The cumulative distribution is built once; sampling is a binary search
+ * and allocates nothing. Safe to share between threads when each caller
+ * passes its own {@link Random}.
+ */
+public final class ZipfianSampler {
+
+    private final double[] cumulative;
+
+    /**
+     * @param exponent skew; 0 is uniform, around 1 is typical of real traffic
+     */
+    public ZipfianSampler(int n, double exponent) {
+        if (n < 1) {
+            throw new IllegalArgumentException("n must be positive");
+        }
+        if (!(exponent >= 0.0) || Double.isInfinite(exponent)) {
+            throw new IllegalArgumentException("Invalid exponent " + exponent);
+        }
+        cumulative = new double[n];
+        double total = 0.0;
+        for (int rank = 0; rank < n; rank++) {
+            total += 1.0 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = total;
+        }
+        for (int rank = 0; rank < n; rank++) {
+            cumulative[rank] /= total;
+        }
+        cumulative[n - 1] = 1.0;
+    }
+
+    public int size() { return cumulative.length; }
+
+    /** Probability of drawing {@code rank}. */
+    public double probability(int rank) {
+        return rank == 0 ? cumulative[0] : cumulative[rank] - cumulative[rank - 1];
+    }
+
+    public int sample(Random random) {
+        double u = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cumulative[mid] > u) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,135 @@
+package metrics;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.Closeable;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Watches stop-the-world garbage collections through the platform MXBeans.
+ *
+ * Counts and accumulated time come from the collector beans; individual
+ * pause durations arrive as GC notifications and go into a
+ * {@link LatencyHistogram} (millisecond resolution, as the JVM reports
+ * them). Beans named "... Cycles" (ZGC, Shenandoah) describe concurrent
+ * work rather than pauses and are skipped for those.
+ *
+ * Every collection, pausing or concurrent, also reports how much heap it
+ * freed. That plus the heap in use gives the bytes allocated by the whole
+ * process, every thread included, which per-thread counters cannot see
+ * for threads that have already exited.
+ */
+public final class GcMonitor implements Closeable {
+
+    private final List<GarbageCollectorMXBean> collectors = new ArrayList<>();
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final LatencyHistogram pauses = new LatencyHistogram();
+    private final NotificationListener listener = this::onNotification;
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final Set<String> heapPools = new HashSet<>();
+    private final LongAdder freedBytes = new LongAdder();
+
+    public GcMonitor() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool.getName());
+            }
+        }
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (isPauseCollector(bean.getName())) {
+                collectors.add(bean);
+            }
+            if (bean instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) bean;
+                emitter.addNotificationListener(listener, null, null);
+                emitters.add(emitter);
+            }
+        }
+    }
+
+    private static boolean isPauseCollector(String name) {
+        return !name.endsWith(" Cycles");
+    }
+
+    private void onNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info =
+            GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        if (isPauseCollector(info.getGcName())) {
+            pauses.record(TimeUnit.MILLISECONDS.toNanos(info.getGcInfo().getDuration()));
+        }
+        Map<String, MemoryUsage> after = info.getGcInfo().getMemoryUsageAfterGc();
+        long freed = 0;
+        for (Map.Entry<String, MemoryUsage> before : info.getGcInfo().getMemoryUsageBeforeGc().entrySet()) {
+            MemoryUsage remaining = after.get(before.getKey());
+            if (remaining != null && heapPools.contains(before.getKey())) {
+                freed += before.getValue().getUsed() - remaining.getUsed();
+            }
+        }
+        // Promotion moves bytes between pools; only what left the heap counts
+        if (freed > 0) {
+            freedBytes.add(freed);
+        }
+    }
+
+    /** Collections so far, across every pausing collector. */
+    public long getCollections() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : collectors) {
+            total += Math.max(0, bean.getCollectionCount());
+        }
+        return total;
+    }
+
+    /** Milliseconds spent in collections so far. */
+    public long getCollectionMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : collectors) {
+            total += Math.max(0, bean.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Heap bytes allocated by the whole process since this monitor was
+     * created, give or take the allocation buffers threads hold but have
+     * not filled. Only differences between two calls are meaningful.
+     */
+    public long getAllocatedBytes() {
+        return memory.getHeapMemoryUsage().getUsed() + freedBytes.sum();
+    }
+
+    /** Individual pause durations since creation or the last reset, in nanoseconds. */
+    public LatencyHistogram getPauses() { return pauses; }
+
+    @Override
+    public void close() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException e) {
+                // Already removed
+            }
+        }
+        emitters.clear();
+    }
+}
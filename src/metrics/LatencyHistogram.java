@@ -0,0 +1,141 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with log-linear buckets in nanoseconds.
+ *
+ * Values below 128 ns get exact buckets; above that every power of two is
+ * split into 64 buckets, so any recorded value is reported to within about
+ * 1.6%. Values are clamped at 2^36 ns (about 68 seconds).
+ *
+ * Recording is a few shifts and one atomic add with no allocation. Counts
+ * are striped by thread so concurrent recorders do not fight over the same
+ * cache lines; readers sum the stripes. Reads and {@link #reset} are not
+ * atomic with respect to concurrent recording, which is fine for monitoring.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;      // 128
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS >> 1;      // 64
+    private static final int MAX_VALUE_BITS = 36;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKETS = bucketIndex(MAX_VALUE) + 1;
+
+    // Each stripe holds the buckets, then the running sum, then padding
+    private static final int SUM_SLOT = BUCKETS;
+    private static final int STRIDE = BUCKETS + 16;
+    private static final int MAX_STRIPES = 16;
+
+    private final int stripeMask;
+    private final AtomicLongArray cells;
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram() {
+        int stripes = Integer.highestOneBit(Math.min(MAX_STRIPES, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        this.stripeMask = stripes - 1;
+        this.cells = new AtomicLongArray(stripes * STRIDE);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // Keep the top 7 bits: (value >>> shift) falls in [64, 128)
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /** Largest value that lands in the bucket. */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        long mantissa = index - shift * HALF_SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    public void record(long nanos) {
+        long value = nanos < 0 ? 0 : Math.min(nanos, MAX_VALUE);
+        int base = ((int) Thread.currentThread().getId() & stripeMask) * STRIDE;
+        cells.getAndIncrement(base + bucketIndex(value));
+        cells.getAndAdd(base + SUM_SLOT, value);
+
+        long seen = max.get();
+        while (value > seen && !max.compareAndSet(seen, value)) {
+            seen = max.get();
+        }
+    }
+
+    /**
+     * Sums the stripes into a point-in-time view for percentile queries.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long sum = 0;
+        for (int base = 0; base < cells.length(); base += STRIDE) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += cells.get(base + i);
+            }
+            sum += cells.get(base + SUM_SLOT);
+        }
+        return new Snapshot(counts, sum, max.get());
+    }
+
+    public void reset() {
+        for (int i = 0; i < cells.length(); i++) {
+            cells.set(i, 0);
+        }
+        max.set(0);
+    }
+
+    /**
+     * Immutable, summed view of the histogram.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long sum, long max) {
+            this.counts = counts;
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.count = total;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() { return count; }
+        public long getMaxNanos() { return max; }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+
+        /**
+         * Value at or below which the given fraction of samples fall, e.g.
+         * 0.999 for p99.9. Reported as the upper bound of its bucket.
+         */
+        public long percentileNanos(double fraction) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
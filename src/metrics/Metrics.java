@@ -0,0 +1,137 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of {@link OperationStats}, exposed over JMX and optionally
+ * written to a log file on a schedule.
+ *
+ * Configured through system properties:
+ * <pre>
+ * metrics.enabled          false turns every start/stop into a no-op (default true)
+ * metrics.log              file to append a summary of all operations to
+ * metrics.log.interval.s   seconds between summaries (default 60)
+ * </pre>
+ */
+public final class Metrics {
+
+    public static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty("metrics.enabled"));
+
+    private static final String DOMAIN = "CurrencyConverter";
+    private static final Map<String, OperationStats> OPERATIONS = new ConcurrentSkipListMap<>();
+    private static volatile boolean jmxInstalled;
+    private static ScheduledExecutorService logger;
+
+    private Metrics() { }
+
+    /**
+     * Returns the stats for an operation, creating them on first use.
+     * Look them up once and keep the reference; this is not for the hot path.
+     */
+    public static OperationStats operation(String name) {
+        OperationStats created = new OperationStats(name);
+        OperationStats existing = OPERATIONS.putIfAbsent(name, created);
+        if (existing != null) {
+            return existing;
+        }
+        if (jmxInstalled) {
+            register(created);
+        }
+        return created;
+    }
+
+    public static Collection<OperationStats> all() {
+        return new ArrayList<>(OPERATIONS.values());
+    }
+
+    /**
+     * Registers every operation, current and future, with the platform
+     * MBean server and starts the periodic log if {@code metrics.log} is set.
+     */
+    public static synchronized void install() {
+        if (!ENABLED || jmxInstalled) {
+            return;
+        }
+        jmxInstalled = true;
+        for (OperationStats stats : OPERATIONS.values()) {
+            register(stats);
+        }
+
+        String logFile = System.getProperty("metrics.log");
+        if (logFile != null && !logFile.isEmpty()) {
+            long interval = Long.getLong("metrics.log.interval.s", 60L);
+            startLogging(Paths.get(logFile), interval, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void register(OperationStats stats) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":type=Operation,name=" + ObjectName.quote(stats.getName()));
+            if (!server.isRegistered(name)) {
+                server.registerMBean(stats, name);
+            }
+        } catch (JMException e) {
+            System.err.println("Could not register metrics for " + stats.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Appends a timestamped summary of all operations to the file at a fixed rate.
+     */
+    public static synchronized void startLogging(Path file, long interval, TimeUnit unit) {
+        if (logger != null) {
+            logger.shutdownNow();
+        }
+        logger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.scheduleAtFixedRate(() -> {
+            try {
+                writeSummary(file);
+            } catch (IOException e) {
+                System.err.println("Metrics log write failed: " + e.getMessage());
+            }
+        }, interval, interval, unit);
+    }
+
+    public static synchronized void stopLogging() {
+        if (logger != null) {
+            logger.shutdownNow();
+            logger = null;
+        }
+    }
+
+    static void writeSummary(Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            String timestamp = Instant.now().toString();
+            for (OperationStats stats : OPERATIONS.values()) {
+                out.write(timestamp);
+                out.write(' ');
+                out.write(stats.toString());
+                out.newLine();
+            }
+        }
+    }
+}
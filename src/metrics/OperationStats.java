@@ -0,0 +1,103 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Call count, error count and latency distribution for one operation.
+ *
+ * Call sites keep a static reference and bracket the work:
+ * <pre>
+ * long start = STATS.start();
+ * try {
+ *     ...
+ *     STATS.stop(start);
+ * } catch (...) {
+ *     STATS.failed(start);
+ * }
+ * </pre>
+ * Both calls are lock-free and allocation-free, and do nothing at all
+ * when metrics are disabled.
+ */
+public final class OperationStats implements OperationStatsMBean {
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+    private volatile long resetAt = System.nanoTime();
+
+    OperationStats(String name) {
+        this.name = name;
+    }
+
+    /** Returns the start timestamp to pass to {@link #stop} or {@link #failed}. */
+    public long start() {
+        return Metrics.ENABLED ? System.nanoTime() : 0L;
+    }
+
+    public void stop(long startNanos) {
+        if (Metrics.ENABLED) {
+            latency.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    /** Records the latency of a failed call and counts it as an error. */
+    public void failed(long startNanos) {
+        if (Metrics.ENABLED) {
+            latency.record(System.nanoTime() - startNanos);
+            errors.increment();
+        }
+    }
+
+    public LatencyHistogram.Snapshot snapshot() {
+        return latency.snapshot();
+    }
+
+    @Override
+    public String getName() { return name; }
+
+    @Override
+    public long getCount() { return latency.snapshot().getCount(); }
+
+    @Override
+    public long getErrors() { return errors.sum(); }
+
+    @Override
+    public double getThroughputPerSecond() {
+        double seconds = (System.nanoTime() - resetAt) / 1e9;
+        return seconds <= 0 ? 0.0 : getCount() / seconds;
+    }
+
+    @Override
+    public double getMeanMicros() { return latency.snapshot().getMeanNanos() / 1e3; }
+
+    @Override
+    public double getP50Micros() { return latency.snapshot().percentileNanos(0.50) / 1e3; }
+
+    @Override
+    public double getP99Micros() { return latency.snapshot().percentileNanos(0.99) / 1e3; }
+
+    @Override
+    public double getP999Micros() { return latency.snapshot().percentileNanos(0.999) / 1e3; }
+
+    @Override
+    public double getMaxMicros() { return latency.snapshot().getMaxNanos() / 1e3; }
+
+    @Override
+    public void reset() {
+        latency.reset();
+        errors.reset();
+        resetAt = System.nanoTime();
+    }
+
+    /**
+     * One-line summary, e.g. for the periodic metrics log.
+     */
+    @Override
+    public String toString() {
+        LatencyHistogram.Snapshot s = latency.snapshot();
+        return String.format("%s count=%d errors=%d mean=%.1fus p50=%.1fus p99=%.1fus p999=%.1fus max=%.1fus",
+                name, s.getCount(), errors.sum(), s.getMeanNanos() / 1e3,
+                s.percentileNanos(0.50) / 1e3, s.percentileNanos(0.99) / 1e3,
+                s.percentileNanos(0.999) / 1e3, s.getMaxNanos() / 1e3);
+    }
+}
@@ -0,0 +1,28 @@
+package metrics;
+
+/**
+ * JMX view of one instrumented operation. Latencies are in microseconds.
+ */
+public interface OperationStatsMBean {
+
+    String getName();
+
+    long getCount();
+
+    long getErrors();
+
+    /** Calls per second since the stats were created or last reset. */
+    double getThroughputPerSecond();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    void reset();
+}
@@ -0,0 +1,120 @@
+package model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Exact monetary amount stored as a scaled long in minor units,
+ * e.g. 12.34 USD is 1234 with scale 2 and 500 JPY is 500 with scale 0.
+ */
+public final class Money implements Comparable<Money> {
+
+    private static final int DEFAULT_SCALE = 2;
+    private static final Map<String, Integer> SCALES = new HashMap<>();
+
+    static {
+        // ISO 4217 minor units that differ from the default of 2
+        for (String code : new String[] {"JPY", "KRW", "CLP", "ISK", "VND", "PYG", "UGX", "XAF", "XOF"}) {
+            SCALES.put(code, 0);
+        }
+        for (String code : new String[] {"BHD", "IQD", "JOD", "KWD", "LYD", "OMR", "TND"}) {
+            SCALES.put(code, 3);
+        }
+    }
+
+    private final String currency;
+    private final long minorUnits;
+    private final int scale;
+
+    private Money(String currency, long minorUnits, int scale) {
+        this.currency = currency;
+        this.minorUnits = minorUnits;
+        this.scale = scale;
+    }
+
+    /**
+     * Number of minor-unit digits for a currency code.
+     */
+    public static int scaleOf(String currency) {
+        Integer scale = SCALES.get(currency);
+        return scale == null ? DEFAULT_SCALE : scale;
+    }
+
+    public static Money ofMinor(String currency, long minorUnits) {
+        return new Money(currency, minorUnits, scaleOf(currency));
+    }
+
+    /**
+     * Converts a decimal amount to minor units, rounding with the given mode.
+     */
+    public static Money of(String currency, BigDecimal amount, RoundingMode rounding) {
+        int scale = scaleOf(currency);
+        long minor = amount.setScale(scale, rounding).unscaledValue().longValueExact();
+        return new Money(currency, minor, scale);
+    }
+
+    /**
+     * Parses text such as "1234.56"; fails if it has more digits than the currency allows.
+     */
+    public static Money parse(String currency, String amount) {
+        return of(currency, new BigDecimal(amount.trim()), RoundingMode.UNNECESSARY);
+    }
+
+    public String getCurrency() { return currency; }
+    public long getMinorUnits() { return minorUnits; }
+    public int getScale() { return scale; }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(minorUnits, scale);
+    }
+
+    public double toDouble() {
+        return toBigDecimal().doubleValue();
+    }
+
+    public Money plus(Money other) {
+        checkSameCurrency(other);
+        return new Money(currency, Math.addExact(minorUnits, other.minorUnits), scale);
+    }
+
+    public Money minus(Money other) {
+        checkSameCurrency(other);
+        return new Money(currency, Math.subtractExact(minorUnits, other.minorUnits), scale);
+    }
+
+    public Money negate() {
+        return new Money(currency, Math.negateExact(minorUnits), scale);
+    }
+
+    private void checkSameCurrency(Money other) {
+        if (!currency.equals(other.currency)) {
+            throw new IllegalArgumentException("Currency mismatch: " + currency + " vs " + other.currency);
+        }
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        checkSameCurrency(other);
+        return Long.compare(minorUnits, other.minorUnits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Money)) return false;
+        Money other = (Money) o;
+        return minorUnits == other.minorUnits && currency.equals(other.currency);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * currency.hashCode() + Long.hashCode(minorUnits);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString() + " " + currency;
+    }
+}
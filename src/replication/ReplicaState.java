@@ -0,0 +1,70 @@
+package replication;
+
+import engine.LiveRates;
+import engine.TriangulationEngine;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The quoted pairs at one replication version, kept alongside a
+ * {@link TriangulationEngine} so applying a delta only touches the
+ * changed edges. Pairs are keyed by the two codes concatenated
+ * ("USDEUR"). Owned by a single thread.
+ */
+final class ReplicaState {
+
+    private final Map<String, Double> rates = new LinkedHashMap<>();
+    private TriangulationEngine engine = new TriangulationEngine(1e-9);
+    private long version;
+
+    static String key(String from, String to) {
+        return from + to;
+    }
+
+    long getVersion() { return version; }
+    void setVersion(long version) { this.version = version; }
+    int size() { return rates.size(); }
+
+    Double rate(String pair) {
+        return rates.get(pair);
+    }
+
+    Map<String, Double> rates() {
+        return Collections.unmodifiableMap(rates);
+    }
+
+    void put(String pair, double rate) {
+        rates.put(pair, rate);
+        engine.setPair(pair.substring(0, 3), pair.substring(3), rate);
+    }
+
+    void remove(String pair) {
+        if (rates.remove(pair) != null) {
+            engine.removePair(pair.substring(0, 3), pair.substring(3));
+        }
+    }
+
+    /**
+     * Replaces every pair, dropping currencies that are no longer quoted.
+     */
+    void reset(long version, Map<String, Double> pairs) {
+        rates.clear();
+        engine = new TriangulationEngine(1e-9);
+        pairs.forEach(this::put);
+        this.version = version;
+    }
+
+    /**
+     * Publishes the triangulated rates under the target's own numbering.
+     * The replicated pair set is authoritative, so it replaces whatever the
+     * target held. Does nothing while no pairs are known.
+     */
+    void publishTo(LiveRates target) {
+        if (rates.isEmpty()) {
+            return;
+        }
+        target.publishNext(engine::snapshot);
+    }
+}
@@ -0,0 +1,363 @@
+package replication;
+
+import dao.CurrencyDAO;
+import engine.FileRateSource;
+import engine.LiveRates;
+import model.Currency;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves versioned rate sets to {@link ReplicationSubscriber}s over TCP, so
+ * only one node reads the database and the rest follow it.
+ *
+ * Each {@link #update} that changes anything becomes the next version.
+ * Subscribers receive only the changed pairs (see {@link Wire}), plus a
+ * full checkpoint every {@code checkpointInterval} versions. The last
+ * {@code historyLimit} deltas are kept, so a subscriber that reconnects
+ * with a recent version catches up from there; one that is further behind,
+ * or that last saw a different publisher run (epoch), gets a checkpoint.
+ *
+ * Every subscriber has its own writer thread and bounded queue. One that
+ * falls a full queue behind is disconnected rather than slowing the
+ * others down; it reconnects and catches up by version like any other.
+ * Idle connections carry a heartbeat every second.
+ */
+public class ReplicationPublisher implements Closeable {
+
+    private static final int DEFAULT_CHECKPOINT_INTERVAL = 100;
+    private static final int DEFAULT_HISTORY_LIMIT = 1024;
+    private static final long HEARTBEAT_MILLIS = 1000;
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+
+    private final ServerSocket server;
+    private final LiveRates local;
+    private final int checkpointInterval;
+    private final int historyLimit;
+    private final long epoch = ThreadLocalRandom.current().nextLong() | 1L;
+
+    // Guarded by this
+    private final ReplicaState state = new ReplicaState();
+    private final ArrayDeque<byte[]> history = new ArrayDeque<>(); // deltas, newest last
+    private byte[] checkpoint;                                      // for the current version, built lazily
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final List<Closeable> feeds = new CopyOnWriteArrayList<>();
+    private volatile boolean running = true;
+
+    private final LongAdder deltaBytes = new LongAdder();
+    private final LongAdder checkpointBytes = new LongAdder();
+    private final LongAdder catchUps = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    /**
+     * @param local receives every version this publisher produces, so the
+     *              publishing node converts with the same rates; may be null
+     */
+    public ReplicationPublisher(int port, LiveRates local, int checkpointInterval, int historyLimit) throws IOException {
+        if (checkpointInterval < 1 || historyLimit < 1) {
+            throw new IllegalArgumentException("checkpointInterval and historyLimit must be positive");
+        }
+        this.local = local;
+        this.checkpointInterval = checkpointInterval;
+        this.historyLimit = historyLimit;
+        this.server = new ServerSocket();
+        server.bind(new InetSocketAddress(port));
+
+        Thread acceptor = new Thread(this::acceptLoop, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public ReplicationPublisher(int port, LiveRates local) throws IOException {
+        this(port, local, DEFAULT_CHECKPOINT_INTERVAL, DEFAULT_HISTORY_LIMIT);
+    }
+
+    public int getPort() { return server.getLocalPort(); }
+
+    /**
+     * Replaces the published pair set. Pairs missing from {@code pairs} are
+     * removed. Returns true if anything changed, i.e. a new version was sent.
+     */
+    public synchronized boolean update(Collection<Currency> pairs) {
+        Map<String, Double> next = new LinkedHashMap<>();
+        for (Currency pair : pairs) {
+            String from = pair.getFromCurrency();
+            String to = pair.getToCurrency();
+            double rate = pair.getRate();
+            if (!isWireCode(from) || !isWireCode(to) || from.equals(to)) {
+                throw new IllegalArgumentException("Invalid pair " + from + "->" + to);
+            }
+            if (!(rate > 0.0) || Double.isInfinite(rate)) {
+                throw new IllegalArgumentException("Invalid rate " + from + "->" + to + ": " + rate);
+            }
+            next.put(ReplicaState.key(from, to), rate);
+        }
+
+        Map<String, Double> changes = new LinkedHashMap<>();
+        next.forEach((pair, rate) -> {
+            Double before = state.rate(pair);
+            if (before == null || Double.doubleToRawLongBits(before) != Double.doubleToRawLongBits(rate)) {
+                changes.put(pair, rate);
+            }
+        });
+        for (String pair : state.rates().keySet()) {
+            if (!next.containsKey(pair)) {
+                changes.put(pair, null);
+            }
+        }
+        if (changes.isEmpty()) {
+            return false;
+        }
+
+        long version = state.getVersion() + 1;
+        byte[] delta = Wire.delta(version, state.rates(), changes);
+        changes.forEach((pair, rate) -> {
+            if (rate == null) {
+                state.remove(pair);
+            } else {
+                state.put(pair, rate);
+            }
+        });
+        state.setVersion(version);
+        history.addLast(delta);
+        if (history.size() > historyLimit) {
+            history.removeFirst();
+        }
+        checkpoint = null;
+
+        byte[] frame = version % checkpointInterval == 0 ? checkpointFrame() : delta;
+        for (Subscription subscription : subscriptions) {
+            subscription.send(frame);
+        }
+        if (local != null) {
+            state.publishTo(local);
+        }
+        return true;
+    }
+
+    private static boolean isWireCode(String code) {
+        if (code == null || code.length() != 3) {
+            return false;
+        }
+        for (int i = 0; i < 3; i++) {
+            if (code.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Caller holds the lock
+    private byte[] checkpointFrame() {
+        if (checkpoint == null) {
+            checkpoint = Wire.checkpoint(state.getVersion(), state.rates());
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Reads all pairs through the DAO every {@code intervalMillis} on a
+     * daemon thread and publishes whatever changed. This is the only
+     * database load the replicated cluster generates.
+     */
+    public void poll(CurrencyDAO dao, long intervalMillis) {
+        Thread poller = new Thread(() -> {
+            while (running) {
+                try {
+                    update(dao.getAllCurrencies());
+                } catch (SQLException | IllegalArgumentException e) {
+                    System.err.println("Replication poll failed: " + e.getMessage());
+                }
+                try {
+                    Thread.sleep(intervalMillis);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "replication-poller");
+        poller.setDaemon(true);
+        poller.start();
+    }
+
+    /**
+     * Publishes the pairs in a rates file (see {@link FileRateSource}) now
+     * and again whenever the file changes.
+     */
+    public void follow(Path file) throws IOException {
+        Runnable reload = () -> {
+            try {
+                update(FileRateSource.readPairs(file));
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Replication reload of " + file + " failed: " + e.getMessage());
+            }
+        };
+        reload.run();
+        feeds.add(new FileRateSource(file).watch(reload));
+    }
+
+    public synchronized long getVersion() { return state.getVersion(); }
+    public int getSubscriberCount() { return subscriptions.size(); }
+    /** Bytes of delta frames written to subscribers. */
+    public long getDeltaBytes() { return deltaBytes.sum(); }
+    /** Bytes of checkpoint frames written, periodic and on connect. */
+    public long getCheckpointBytes() { return checkpointBytes.sum(); }
+    /** Connections served from the delta history instead of a checkpoint. */
+    public long getCatchUps() { return catchUps.sum(); }
+    /** Subscribers disconnected for falling too far behind. */
+    public long getEvicted() { return evicted.sum(); }
+
+    @Override
+    public String toString() {
+        return "version=" + getVersion() + " subscribers=" + getSubscriberCount()
+            + " deltaBytes=" + getDeltaBytes() + " checkpointBytes=" + getCheckpointBytes()
+            + " catchUps=" + getCatchUps() + " evicted=" + getEvicted();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Replication listener stopped: " + e.getMessage());
+                }
+                return;
+            }
+            Subscription subscription = new Subscription(socket);
+            Thread writer = new Thread(subscription::run, "replication-writer-" + socket.getRemoteSocketAddress());
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * Queues the frames that bring a subscriber from {@code (epoch, version)}
+     * to the current version, and registers it for live frames in the same
+     * step so nothing is missed in between.
+     */
+    private synchronized void register(Subscription subscription, long subscriberEpoch, long subscriberVersion) {
+        long current = state.getVersion();
+        subscription.send(Wire.hello(current, epoch));
+        long behind = current - subscriberVersion;
+        if (subscriberEpoch == epoch && behind >= 0 && behind <= history.size()) {
+            if (behind > 0) {
+                catchUps.increment();
+                Iterator<byte[]> deltas = history.descendingIterator();
+                byte[][] missing = new byte[(int) behind][];
+                for (int i = missing.length - 1; i >= 0; i--) {
+                    missing[i] = deltas.next();
+                }
+                for (byte[] delta : missing) {
+                    subscription.send(delta);
+                }
+            }
+        } else {
+            subscription.send(checkpointFrame());
+        }
+        subscriptions.add(subscription);
+    }
+
+    private final class Subscription {
+        private final Socket socket;
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(historyLimit + 64);
+
+        Subscription(Socket socket) {
+            this.socket = socket;
+        }
+
+        void send(byte[] frame) {
+            if (!queue.offer(frame)) {
+                evicted.increment();
+                System.err.println("Replication subscriber " + socket.getRemoteSocketAddress() + " fell behind; disconnecting");
+                closeQuietly();
+            }
+        }
+
+        void run() {
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                if (in.readInt() != Wire.MAGIC) {
+                    throw new IOException("not a replication subscriber");
+                }
+                long subscriberEpoch = in.readLong();
+                long subscriberVersion = in.readLong();
+                register(this, subscriberEpoch, subscriberVersion);
+
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+                while (running && !socket.isClosed()) {
+                    byte[] frame = queue.poll(HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (frame == null) {
+                        frame = Wire.heartbeat(getVersion());
+                    } else if (frame[Integer.BYTES] == Wire.DELTA) {
+                        deltaBytes.add(frame.length);
+                    } else if (frame[Integer.BYTES] == Wire.CHECKPOINT) {
+                        checkpointBytes.add(frame.length);
+                    }
+                    out.write(frame);
+                    if (queue.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                if (running && !socket.isClosed()) {
+                    System.err.println("Replication subscriber " + socket.getRemoteSocketAddress()
+                        + " disconnected: " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                subscriptions.remove(this);
+                closeQuietly();
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already gone
+            }
+        }
+    }
+
+    /**
+     * Stops accepting, disconnects every subscriber and stops polling or
+     * watching.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        server.close();
+        for (Subscription subscription : subscriptions) {
+            subscription.closeQuietly();
+        }
+        for (Closeable feed : feeds) {
+            feed.close();
+        }
+    }
+}
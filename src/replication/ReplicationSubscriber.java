@@ -0,0 +1,276 @@
+package replication;
+
+import engine.LiveRates;
+import metrics.Metrics;
+import metrics.OperationStats;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Follows a {@link ReplicationPublisher} and publishes each version it
+ * receives into a {@link LiveRates}, so this node never reads the
+ * database for rates.
+ *
+ * Deltas are applied to a local {@link engine.TriangulationEngine}, which
+ * only recomputes the cross rates below the changed pairs. A delta that
+ * does not follow the last applied version means the stream is broken;
+ * the subscriber drops the connection and reconnects with its version,
+ * getting either the missing deltas or a checkpoint. Connection failures
+ * are retried with exponential backoff, and a connection that stays
+ * silent past several heartbeats is treated as failed.
+ */
+public class ReplicationSubscriber implements Closeable {
+
+    private static final OperationStats APPLY_STATS = Metrics.operation("replication.apply");
+
+    private static final int CONNECT_TIMEOUT_MILLIS = 2000;
+    private static final int READ_TIMEOUT_MILLIS = 5000;
+    private static final long MIN_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+
+    private final String host;
+    private final int port;
+    private final LiveRates target;
+
+    // Owned by the subscriber thread
+    private final ReplicaState state = new ReplicaState();
+    private long epoch;
+    private byte[] buffer = new byte[1 << 12];
+    private boolean established;
+
+    private volatile long version;
+    private volatile long lagMillis;
+    private volatile boolean connected;
+    private volatile boolean running = true;
+    private volatile Socket socket;
+    private Thread thread;
+
+    private final LongAdder checkpoints = new LongAdder();
+    private final LongAdder deltas = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+
+    public ReplicationSubscriber(String host, int port, LiveRates target) {
+        this.host = host;
+        this.port = port;
+        this.target = target;
+    }
+
+    /**
+     * Parses {@code host:port}, as given to {@code -Dreplication.subscribe}.
+     */
+    public static ReplicationSubscriber forAddress(String address, LiveRates target) {
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0 || colon == address.length() - 1) {
+            throw new IllegalArgumentException("Expected host:port, got " + address);
+        }
+        try {
+            return new ReplicationSubscriber(address.substring(0, colon),
+                Integer.parseInt(address.substring(colon + 1)), target);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid port in " + address, e);
+        }
+    }
+
+    /**
+     * Connects and follows the publisher on a daemon thread until closed.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::run, "replication-subscriber");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        while (running) {
+            established = false;
+            try {
+                follow();
+            } catch (EOFException e) {
+                if (!running) {
+                    break;
+                }
+                System.err.println("Replication from " + host + ":" + port + " closed by the publisher"
+                    + "; retrying in " + backoff + " ms");
+            } catch (IOException | RuntimeException e) {
+                if (!running) {
+                    break;
+                }
+                if (e instanceof RuntimeException) {
+                    // State may be half applied; ask for a checkpoint next time
+                    epoch = 0;
+                }
+                System.err.println("Replication from " + host + ":" + port + " failed: " + e.getMessage()
+                    + "; retrying in " + backoff + " ms");
+            } finally {
+                connected = false;
+            }
+            if (!running) {
+                break;
+            }
+            reconnects.increment();
+            backoff = established ? MIN_BACKOFF_MILLIS : Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void follow() throws IOException {
+        try (Socket s = new Socket()) {
+            socket = s;
+            if (!running) {
+                return;
+            }
+            s.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            s.setSoTimeout(READ_TIMEOUT_MILLIS);
+            s.setTcpNoDelay(true);
+
+            DataOutputStream out = new DataOutputStream(s.getOutputStream());
+            out.writeInt(Wire.MAGIC);
+            out.writeLong(epoch);
+            out.writeLong(state.getVersion());
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream(), 1 << 16));
+            long sessionEpoch = 0;
+            while (running) {
+                int length = in.readInt();
+                if (length < Wire.HEADER_BYTES || length > Wire.MAX_FRAME_BYTES) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                if (buffer.length < length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                }
+                in.readFully(buffer, 0, length);
+                bytesReceived.add(Integer.BYTES + length);
+
+                ByteBuffer frame = ByteBuffer.wrap(buffer, 0, length);
+                byte type = frame.get();
+                long frameVersion = frame.getLong();
+                long publishedAt = frame.getLong();
+                switch (type) {
+                    case Wire.HELLO:
+                        sessionEpoch = frame.getLong();
+                        established = true;
+                        connected = true;
+                        break;
+                    case Wire.CHECKPOINT:
+                        applyCheckpoint(frameVersion, frame, sessionEpoch, publishedAt);
+                        break;
+                    case Wire.DELTA:
+                        if (sessionEpoch == 0 || sessionEpoch != epoch || frameVersion != state.getVersion() + 1) {
+                            throw new IOException("Delta for v" + frameVersion + " does not follow v" + state.getVersion());
+                        }
+                        applyDelta(frameVersion, frame, publishedAt);
+                        break;
+                    case Wire.HEARTBEAT:
+                        break;
+                    default:
+                        throw new IOException("Unknown frame type " + type);
+                }
+            }
+        } finally {
+            socket = null;
+        }
+    }
+
+    private void applyCheckpoint(long frameVersion, ByteBuffer body, long sessionEpoch, long publishedAt) {
+        long start = APPLY_STATS.start();
+        state.reset(frameVersion, Wire.readCheckpoint(body));
+        epoch = sessionEpoch;
+        state.publishTo(target);
+        APPLY_STATS.stop(start);
+        checkpoints.increment();
+        applied(frameVersion, publishedAt);
+    }
+
+    private void applyDelta(long frameVersion, ByteBuffer body, long publishedAt) throws IOException {
+        long start = APPLY_STATS.start();
+        Map<String, Double> changes = Wire.readDelta(body, state.rates());
+        changes.forEach((pair, rate) -> {
+            if (rate == null) {
+                state.remove(pair);
+            } else {
+                state.put(pair, rate);
+            }
+        });
+        state.setVersion(frameVersion);
+        state.publishTo(target);
+        APPLY_STATS.stop(start);
+        deltas.increment();
+        applied(frameVersion, publishedAt);
+    }
+
+    private void applied(long frameVersion, long publishedAt) {
+        lagMillis = Math.max(0, System.currentTimeMillis() - publishedAt);
+        synchronized (this) {
+            version = frameVersion;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until the given replication version has been applied.
+     * Returns false on timeout.
+     */
+    public synchronized boolean awaitVersion(long wanted, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (version < wanted) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    /** Last replication version applied; 0 before the first one. */
+    public long getVersion() { return version; }
+    /** Time from the publisher sending the last applied version to it being applied here. */
+    public long getLagMillis() { return lagMillis; }
+    public boolean isConnected() { return connected; }
+    public long getCheckpoints() { return checkpoints.sum(); }
+    public long getDeltas() { return deltas.sum(); }
+    public long getBytesReceived() { return bytesReceived.sum(); }
+    public long getReconnects() { return reconnects.sum(); }
+
+    @Override
+    public String toString() {
+        return "version=" + getVersion() + " lagMs=" + getLagMillis() + " checkpoints=" + getCheckpoints()
+            + " deltas=" + getDeltas() + " bytes=" + getBytesReceived() + " reconnects=" + getReconnects();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        Socket s = socket;
+        if (s != null) {
+            s.close();
+        }
+        Thread t;
+        synchronized (this) {
+            t = thread;
+        }
+        if (t != null) {
+            t.interrupt();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package replication;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Replication wire format, big-endian.
+ *
+ * The subscriber opens with {@code magic | epoch | version} (20 bytes),
+ * naming the last version it applied. Everything after that flows from
+ * the publisher as length-prefixed frames:
+ * <pre>
+ * length (int) | type (byte) | version (long) | published at, epoch ms (long) | body
+ *
+ * HELLO       epoch (long)
+ * CHECKPOINT  count (int), count x [from (3) | to (3) | rate (double)]
+ * DELTA       count (int), count x [from (3) | to (3) | tag (byte) | payload]
+ * HEARTBEAT   (empty)
+ * </pre>
+ * A delta turns version - 1 into version. Its tag is {@link #NEW_PAIR}
+ * (followed by the full rate), {@link #REMOVED} (no payload), or 1 to 8:
+ * that many low-order bytes of the XOR between the old and new rate bits.
+ * Small moves keep sign, exponent and leading mantissa bits, so most
+ * updates need a few bytes instead of eight.
+ */
+final class Wire {
+
+    static final int MAGIC = 0x52504C31; // "RPL1"
+    static final int HANDSHAKE_BYTES = 20;
+
+    static final byte HELLO = 0;
+    static final byte CHECKPOINT = 1;
+    static final byte DELTA = 2;
+    static final byte HEARTBEAT = 3;
+
+    static final byte NEW_PAIR = 9;
+    static final byte REMOVED = 10;
+
+    static final int HEADER_BYTES = 1 + Long.BYTES + Long.BYTES;
+    static final int MAX_FRAME_BYTES = 16 << 20;
+
+    private static final int CHECKPOINT_ENTRY_BYTES = 6 + Double.BYTES;
+    private static final int MAX_DELTA_ENTRY_BYTES = 6 + 1 + Double.BYTES;
+
+    private Wire() {}
+
+    static byte[] hello(long version, long epoch) {
+        ByteBuffer frame = start(HELLO, version, Long.BYTES);
+        frame.putLong(epoch);
+        return finish(frame);
+    }
+
+    static byte[] heartbeat(long version) {
+        return finish(start(HEARTBEAT, version, 0));
+    }
+
+    static byte[] checkpoint(long version, Map<String, Double> rates) {
+        ByteBuffer frame = start(CHECKPOINT, version, Integer.BYTES + rates.size() * CHECKPOINT_ENTRY_BYTES);
+        frame.putInt(rates.size());
+        for (Map.Entry<String, Double> entry : rates.entrySet()) {
+            putPair(frame, entry.getKey());
+            frame.putDouble(entry.getValue());
+        }
+        return finish(frame);
+    }
+
+    /**
+     * Encodes the changes from {@code previous} to {@code next}; a null
+     * next rate means the pair was removed.
+     */
+    static byte[] delta(long version, Map<String, Double> previous, Map<String, Double> next) {
+        ByteBuffer frame = start(DELTA, version, Integer.BYTES + next.size() * MAX_DELTA_ENTRY_BYTES);
+        frame.putInt(next.size());
+        for (Map.Entry<String, Double> entry : next.entrySet()) {
+            putPair(frame, entry.getKey());
+            Double before = previous.get(entry.getKey());
+            Double after = entry.getValue();
+            if (after == null) {
+                frame.put(REMOVED);
+            } else if (before == null) {
+                frame.put(NEW_PAIR).putDouble(after);
+            } else {
+                long xor = Double.doubleToRawLongBits(before) ^ Double.doubleToRawLongBits(after);
+                int bytes = Math.max(1, Long.BYTES - Long.numberOfLeadingZeros(xor) / Byte.SIZE);
+                frame.put((byte) bytes);
+                for (int shift = (bytes - 1) * Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+                    frame.put((byte) (xor >>> shift));
+                }
+            }
+        }
+        return finish(frame);
+    }
+
+    /**
+     * Reads a delta body against the rates it applies to; removed pairs map to null.
+     */
+    static Map<String, Double> readDelta(ByteBuffer body, Map<String, Double> current) throws IOException {
+        int count = body.getInt();
+        Map<String, Double> changes = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String pair = getPair(body);
+            byte tag = body.get();
+            if (tag == REMOVED) {
+                changes.put(pair, null);
+            } else if (tag == NEW_PAIR) {
+                changes.put(pair, body.getDouble());
+            } else if (tag >= 1 && tag <= Long.BYTES) {
+                Double before = current.get(pair);
+                if (before == null) {
+                    throw new IOException("Delta changes unknown pair " + pair);
+                }
+                long xor = 0;
+                for (int b = 0; b < tag; b++) {
+                    xor = (xor << Byte.SIZE) | (body.get() & 0xFF);
+                }
+                changes.put(pair, Double.longBitsToDouble(Double.doubleToRawLongBits(before) ^ xor));
+            } else {
+                throw new IOException("Unknown delta tag " + tag);
+            }
+        }
+        return changes;
+    }
+
+    static Map<String, Double> readCheckpoint(ByteBuffer body) {
+        int count = body.getInt();
+        Map<String, Double> rates = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            rates.put(getPair(body), body.getDouble());
+        }
+        return rates;
+    }
+
+    private static ByteBuffer start(byte type, long version, int bodyBytes) {
+        ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + HEADER_BYTES + bodyBytes);
+        frame.putInt(0).put(type).putLong(version).putLong(System.currentTimeMillis());
+        return frame;
+    }
+
+    private static byte[] finish(ByteBuffer frame) {
+        frame.putInt(0, frame.position() - Integer.BYTES);
+        return Arrays.copyOf(frame.array(), frame.position());
+    }
+
+    private static void putPair(ByteBuffer frame, String pair) {
+        for (int i = 0; i < 6; i++) {
+            frame.put((byte) pair.charAt(i));
+        }
+    }
+
+    private static String getPair(ByteBuffer body) {
+        char[] pair = new char[6];
+        for (int i = 0; i < 6; i++) {
+            pair[i] = (char) (body.get() & 0xFF);
+        }
+        return new String(pair);
+    }
+}
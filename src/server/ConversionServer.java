@@ -0,0 +1,602 @@
+package server;
+
+import audit.AuditJournal;
+import audit.AuditUsers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import dao.CachingCurrencyDAO;
+import dao.CurrencyDAO;
+import dao.CurrencyDAOImpl;
+import dao.InstrumentedCurrencyDAO;
+import dao.UserDAOImpl;
+import engine.CodeIndex;
+import engine.LiveRates;
+import engine.DatabaseRateSource;
+import engine.RateHistoryStore;
+import engine.RateRefresher;
+import engine.RateTable;
+import engine.SharedRateFile;
+import engine.SharedRateSource;
+import engine.TickIngestor;
+import metrics.Metrics;
+import metrics.OperationStats;
+import model.User;
+import replication.ReplicationPublisher;
+import replication.ReplicationSubscriber;
+import util.AmountFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.math.RoundingMode;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Headless HTTP front end for the conversion engine, built on the JDK's
+ * HTTP server so it starts without Swing or AWT.
+ *
+ * <pre>
+ * GET  /convert?amount=100&amp;from=USD&amp;to=EUR   -> JSON result
+ * POST /batch   body: amount,from,to per line -> one result (or ERR) per line
+ * </pre>
+ *
+ * When an {@link AuditJournal} is supplied, every request must carry an
+ * {@code X-User-Id} header naming a user that {@link AuditUsers} finds in
+ * the user table, and its conversions are journaled under that id.
+ * Requests without one get 400, unknown ids 403. The header itself is not
+ * authenticated here; put the server behind a proxy that sets it.
+ *
+ * Requests run on virtual threads when the JVM provides them, otherwise on
+ * a fixed pool. Bodies are parsed straight from bytes and responses are
+ * built in pooled buffers, so a request allocates almost nothing.
+ *
+ * Usage: java -cp bin [-Daudit.file=audit.jnl] server.ConversionServer [port]
+ *
+ * With {@code -Drates.shared=<file>} the server follows a snapshot file
+ * published by another process; with {@code -Drates.shared.out=<file>} it
+ * publishes its own rates there for other processes on the host. With
+ * {@code -Drates.db.ms=<interval>} it polls the database for rates.
+ *
+ * Across hosts, {@code -Dreplication.publish=<port>} makes this server the
+ * one node that reads rates (from the database, or from
+ * {@code -Dreplication.rates=<file>}) and streams changes to servers
+ * started with {@code -Dreplication.subscribe=<host:port>}.
+ */
+public class ConversionServer {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int MAX_BODY_BYTES = 64 << 20;
+    private static final int POOLED_CONTEXTS = 256;
+    private static final int INITIAL_BODY_BYTES = 8 << 10;
+    private static final int INITIAL_OUT_BYTES = 16 << 10;
+    /** Buffers that grew past this go back to their initial size before a context is pooled. */
+    private static final int MAX_RETAINED_BYTES = 64 << 10;
+    private static final AmountFormat RATE_FORMAT = new AmountFormat(8, (char) 0);
+    private static final RoundingMode ROUNDING = RoundingMode.HALF_EVEN;
+    private static final AmountFormat[] AMOUNT_FORMATS = {
+        new AmountFormat(0, (char) 0), new AmountFormat(1, (char) 0),
+        new AmountFormat(2, (char) 0), new AmountFormat(3, (char) 0)
+    };
+
+    private static final OperationStats CONVERT_STATS = Metrics.operation("server.convert");
+    private static final OperationStats BATCH_STATS = Metrics.operation("server.batch");
+
+    private final LiveRates rates;
+    private final AuditJournal journal;
+    private final AuditUsers users;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final BlockingQueue<RequestContext> contexts = new ArrayBlockingQueue<>(POOLED_CONTEXTS);
+    private volatile Resolver resolver;
+
+    /**
+     * Code lookup built once per rate snapshot.
+     */
+    private static final class Resolver {
+        final RateTable table;
+        final CodeIndex codes;
+
+        Resolver(RateTable table) {
+            this.table = table;
+            this.codes = new CodeIndex(table);
+        }
+    }
+
+    /**
+     * Reusable per-request buffers, borrowed from a pool rather than held in
+     * thread locals, since virtual threads are created per request.
+     */
+    private static final class RequestContext {
+        byte[] body = new byte[INITIAL_BODY_BYTES];
+        ByteBuffer bodyView = ByteBuffer.wrap(body);
+        ByteBuffer out = ByteBuffer.allocate(INITIAL_OUT_BYTES);
+        final char[] scratch = new char[512];
+
+        /**
+         * Drops buffers a large request grew, so the pool retains at most
+         * {@code POOLED_CONTEXTS * 2 * MAX_RETAINED_BYTES}.
+         */
+        void trim() {
+            if (body.length > MAX_RETAINED_BYTES) {
+                body = new byte[INITIAL_BODY_BYTES];
+                bodyView = ByteBuffer.wrap(body);
+            }
+            if (out.capacity() > MAX_RETAINED_BYTES) {
+                out = ByteBuffer.allocate(INITIAL_OUT_BYTES);
+            }
+        }
+
+        void ensureOut(int extra) {
+            if (out.remaining() < extra) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + extra));
+                out.flip();
+                grown.put(out);
+                out = grown;
+            }
+        }
+
+        void put(String ascii) {
+            ensureOut(ascii.length());
+            for (int i = 0; i < ascii.length(); i++) {
+                out.put((byte) ascii.charAt(i));
+            }
+        }
+
+        void put(AmountFormat format, double value) {
+            int length = format.format(value, scratch, 0);
+            ensureOut(length);
+            for (int i = 0; i < length; i++) {
+                out.put((byte) scratch[i]);
+            }
+        }
+
+        /** Writes exact units of 10^-scale, e.g. minor units with the currency's format. */
+        void putUnits(AmountFormat format, long units) {
+            int length = format.formatUnits(units, scratch, 0);
+            ensureOut(length);
+            for (int i = 0; i < length; i++) {
+                out.put((byte) scratch[i]);
+            }
+        }
+
+        void putLong(long value) {
+            putUnits(AMOUNT_FORMATS[0], value);
+        }
+    }
+
+    public ConversionServer(LiveRates rates, int port) throws IOException {
+        this(rates, port, null, null);
+    }
+
+    /**
+     * @param journal receives every conversion, or null to skip auditing
+     * @param users checks the user each request is audited under; required with a journal
+     */
+    public ConversionServer(LiveRates rates, int port, AuditJournal journal, AuditUsers users) throws IOException {
+        if (journal != null && users == null) {
+            throw new IllegalArgumentException("An audit journal needs AuditUsers to check X-User-Id");
+        }
+        this.rates = rates;
+        this.journal = journal;
+        this.users = users;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/convert", timed(CONVERT_STATS, this::handleConvert));
+        server.createContext("/batch", timed(BATCH_STATS, this::handleBatch));
+    }
+
+    /**
+     * Records each exchange's latency; 4xx/5xx responses count as errors.
+     */
+    private static HttpHandler timed(OperationStats stats, HttpHandler handler) {
+        return exchange -> {
+            long start = stats.start();
+            try {
+                handler.handle(exchange);
+            } catch (IOException | RuntimeException e) {
+                stats.failed(start);
+                throw e;
+            }
+            if (exchange.getResponseCode() >= 400) {
+                stats.failed(start);
+            } else {
+                stats.stop(start);
+            }
+        };
+    }
+
+    /**
+     * Virtual thread per request on JDK 21+, a bounded platform pool otherwise.
+     */
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 8, r -> {
+                Thread thread = new Thread(r, "conversion-http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private Resolver resolver() {
+        RateTable table = rates.current();
+        Resolver current = resolver;
+        if (current == null || current.table != table) {
+            current = new Resolver(table);
+            resolver = current;
+        }
+        return current;
+    }
+
+    private void handleConvert(HttpExchange exchange) throws IOException {
+        RequestContext ctx = borrow();
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                sendError(exchange, ctx, 405, "Use GET");
+                return;
+            }
+            String query = exchange.getRequestURI().getRawQuery();
+            if (query == null) {
+                sendError(exchange, ctx, 400, "amount, from and to are required");
+                return;
+            }
+
+            Resolver r = resolver();
+            int amountStart = -1;
+            int amountEnd = -1;
+            int from = -1;
+            int to = -1;
+            int start = 0;
+            while (start < query.length()) {
+                int end = query.indexOf('&', start);
+                if (end < 0) end = query.length();
+                int eq = query.indexOf('=', start);
+                if (eq > start && eq < end) {
+                    if (query.startsWith("amount", start) && eq - start == 6) {
+                        amountStart = eq + 1;
+                        amountEnd = end;
+                    } else if (query.startsWith("from", start) && eq - start == 4) {
+                        from = r.codes.resolve(query, eq + 1, end);
+                    } else if (query.startsWith("to", start) && eq - start == 2) {
+                        to = r.codes.resolve(query, eq + 1, end);
+                    }
+                }
+                start = end + 1;
+            }
+            if (from < 0 || to < 0 || !r.table.hasRate(from, to)) {
+                sendError(exchange, ctx, 400, "Unknown currency pair");
+                return;
+            }
+
+            // Exact: minor units in, fixed-point rate, rounded once to the target's minor units
+            RateTable table = r.table;
+            AmountFormat fromFormat = formatFor(table.scale(from));
+            long amountMinor = amountStart < 0 ? AmountFormat.INVALID_UNITS
+                : fromFormat.parseUnits(query, amountStart, amountEnd);
+            if (amountMinor == AmountFormat.INVALID_UNITS) {
+                sendError(exchange, ctx, 400, "Invalid or missing amount");
+                return;
+            }
+            long resultMinor = convertOrInvalid(table, amountMinor, from, to);
+            if (resultMinor == AmountFormat.INVALID_UNITS) {
+                sendError(exchange, ctx, 400, "Amount out of range");
+                return;
+            }
+            if (journal != null) {
+                User user = auditUser(exchange, ctx);
+                if (user == null) {
+                    return;
+                }
+                try {
+                    journal.record(user, table.code(from), table.code(to), amountMinor, table.getVersion(),
+                        resultMinor);
+                } catch (IllegalStateException e) {
+                    sendError(exchange, ctx, 503, "Audit journal unavailable");
+                    return;
+                }
+            }
+            ctx.put("{\"from\":\"");
+            ctx.put(table.code(from));
+            ctx.put("\",\"to\":\"");
+            ctx.put(table.code(to));
+            ctx.put("\",\"amount\":");
+            ctx.putUnits(fromFormat, amountMinor);
+            ctx.put(",\"result\":");
+            ctx.putUnits(formatFor(table.scale(to)), resultMinor);
+            ctx.put(",\"rate\":");
+            ctx.put(RATE_FORMAT, table.rate(from, to));
+            ctx.put(",\"version\":");
+            ctx.putLong(table.getVersion());
+            ctx.put("}\n");
+            send(exchange, ctx, 200, "application/json");
+        } finally {
+            release(ctx);
+        }
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        RequestContext ctx = borrow();
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendError(exchange, ctx, 405, "Use POST");
+                return;
+            }
+            int length = readBody(exchange.getRequestBody(), ctx);
+            if (length < 0) {
+                sendError(exchange, ctx, 413, "Request body too large");
+                return;
+            }
+
+            int userId = 0;
+            if (journal != null) {
+                User user = auditUser(exchange, ctx);
+                if (user == null) {
+                    return;
+                }
+                userId = user.getId();
+            }
+
+            Resolver r = resolver();
+            RateTable table = r.table;
+            byte[] body = ctx.body;
+            int lineStart = 0;
+            for (int i = 0; i <= length; i++) {
+                if (i < length && body[i] != '\n') {
+                    continue;
+                }
+                int lineEnd = i > lineStart && body[i - 1] == '\r' ? i - 1 : i;
+                if (lineEnd > lineStart) {
+                    if (!convertLine(ctx, r, table, userId, lineStart, lineEnd)) {
+                        sendError(exchange, ctx, 503, "Audit journal unavailable");
+                        return;
+                    }
+                }
+                lineStart = i + 1;
+            }
+            exchange.getResponseHeaders().set("X-Rates-Version", Long.toString(table.getVersion()));
+            send(exchange, ctx, 200, "text/csv");
+        } finally {
+            release(ctx);
+        }
+    }
+
+    /**
+     * Appends the result (or ERR) for one line; returns false only if the audit journal refused it.
+     */
+    private boolean convertLine(RequestContext ctx, Resolver r, RateTable table, int userId, int start, int end) {
+        byte[] body = ctx.body;
+        int firstComma = -1;
+        int secondComma = -1;
+        for (int i = start; i < end; i++) {
+            if (body[i] == ',') {
+                if (firstComma < 0) {
+                    firstComma = i;
+                } else if (secondComma < 0) {
+                    secondComma = i;
+                }
+            }
+        }
+        if (secondComma > 0) {
+            int from = r.codes.resolve(body, firstComma + 1, secondComma);
+            int to = r.codes.resolve(body, secondComma + 1, end);
+            if (from >= 0 && to >= 0 && table.hasRate(from, to)) {
+                long amountMinor = formatFor(table.scale(from)).parseUnits(ctx.bodyView, start, firstComma);
+                long resultMinor = amountMinor == AmountFormat.INVALID_UNITS ? AmountFormat.INVALID_UNITS
+                    : convertOrInvalid(table, amountMinor, from, to);
+                if (resultMinor != AmountFormat.INVALID_UNITS) {
+                    if (journal != null) {
+                        try {
+                            journal.record(userId, table.code(from), table.code(to),
+                                amountMinor, table.getVersion(), resultMinor);
+                        } catch (IllegalStateException e) {
+                            return false;
+                        }
+                    }
+                    ctx.putUnits(formatFor(table.scale(to)), resultMinor);
+                    ctx.put("\n");
+                    return true;
+                }
+            }
+        }
+        ctx.put("ERR\n");
+        return true;
+    }
+
+    /**
+     * Resolves the {@code X-User-Id} header to a known user; otherwise sends
+     * the error response and returns null.
+     */
+    private User auditUser(HttpExchange exchange, RequestContext ctx) throws IOException {
+        String header = exchange.getRequestHeaders().getFirst("X-User-Id");
+        if (header == null) {
+            sendError(exchange, ctx, 400, "X-User-Id is required");
+            return null;
+        }
+        int id;
+        try {
+            id = Integer.parseInt(header.trim());
+        } catch (NumberFormatException e) {
+            sendError(exchange, ctx, 400, "Invalid X-User-Id");
+            return null;
+        }
+        try {
+            User user = users.resolve(id);
+            if (user == null) {
+                sendError(exchange, ctx, 403, "Unknown user");
+            }
+            return user;
+        } catch (SQLException e) {
+            sendError(exchange, ctx, 503, "User directory unavailable");
+            return null;
+        }
+    }
+
+    private static AmountFormat formatFor(int scale) {
+        return AMOUNT_FORMATS[Math.min(scale, AMOUNT_FORMATS.length - 1)];
+    }
+
+    /**
+     * Exact conversion in minor units, or INVALID_UNITS if the result does not fit.
+     */
+    private static long convertOrInvalid(RateTable table, long amountMinor, int from, int to) {
+        try {
+            // Never Long.MIN_VALUE: mulDiv results are within +-Long.MAX_VALUE
+            return table.convertMinor(amountMinor, from, to, ROUNDING);
+        } catch (ArithmeticException e) {
+            return AmountFormat.INVALID_UNITS;
+        }
+    }
+
+    /**
+     * Reads the whole body into the context; returns its length, or -1 if too large.
+     */
+    private static int readBody(InputStream in, RequestContext ctx) throws IOException {
+        int length = 0;
+        while (true) {
+            if (length == ctx.body.length) {
+                if (length >= MAX_BODY_BYTES) {
+                    return -1;
+                }
+                byte[] grown = new byte[Math.min(MAX_BODY_BYTES, length * 2)];
+                System.arraycopy(ctx.body, 0, grown, 0, length);
+                ctx.body = grown;
+                ctx.bodyView = ByteBuffer.wrap(grown);
+            }
+            int read = in.read(ctx.body, length, ctx.body.length - length);
+            if (read < 0) {
+                return length;
+            }
+            length += read;
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, RequestContext ctx, int status, String message)
+            throws IOException {
+        ctx.out.clear();
+        ctx.put("{\"error\":\"");
+        ctx.put(message);
+        ctx.put("\"}\n");
+        send(exchange, ctx, status, "application/json");
+    }
+
+    private static void send(HttpExchange exchange, RequestContext ctx, int status, String contentType)
+            throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        ByteBuffer out = ctx.out;
+        exchange.sendResponseHeaders(status, out.position());
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(out.array(), 0, out.position());
+        }
+    }
+
+    private RequestContext borrow() {
+        RequestContext ctx = contexts.poll();
+        if (ctx == null) {
+            ctx = new RequestContext();
+        }
+        ctx.out.clear();
+        return ctx;
+    }
+
+    private void release(RequestContext ctx) {
+        ctx.trim();
+        contexts.offer(ctx);
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Metrics.install();
+        String auditFile = System.getProperty("audit.file");
+        AuditJournal journal = auditFile == null ? null : AuditJournal.open(Paths.get(auditFile));
+        AuditUsers auditUsers = journal == null ? null : new AuditUsers(new UserDAOImpl());
+        if (journal != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    System.err.println("Could not close audit journal: " + e.getMessage());
+                }
+            }));
+        }
+        String history = System.getProperty("rates.history");
+        if (history != null) {
+            // Opened before any source publishes, so the first loaded rates are recorded too
+            RateHistoryStore store = RateHistoryStore.open(Paths.get(history), LiveRates.shared().current().codes());
+            store.recordFrom(LiveRates.shared());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    System.err.println("Could not close rate history: " + e.getMessage());
+                }
+            }));
+        }
+        String sharedRates = System.getProperty("rates.shared");
+        if (sharedRates != null) {
+            RateRefresher refresher = new RateRefresher(
+                new SharedRateSource(SharedRateFile.openReader(Paths.get(sharedRates))), LiveRates.shared(), 0);
+            refresher.refresh();
+            refresher.start();
+        }
+        // Every database reader in the process shares one cache, so they cost one query per TTL
+        CurrencyDAO rateDao = new CachingCurrencyDAO(new InstrumentedCurrencyDAO(new CurrencyDAOImpl()));
+        Long dbIntervalMillis = Long.getLong("rates.db.ms");
+        if (dbIntervalMillis != null) {
+            new RateRefresher(new DatabaseRateSource(rateDao), LiveRates.shared(), dbIntervalMillis).start();
+        }
+        String sharedOut = System.getProperty("rates.shared.out");
+        if (sharedOut != null) {
+            SharedRateFile.openWriter(Paths.get(sharedOut), Integer.getInteger("rates.shared.capacity", 256))
+                .mirror(LiveRates.shared());
+        }
+        Integer replicationPort = Integer.getInteger("replication.publish");
+        if (replicationPort != null) {
+            ReplicationPublisher publisher = new ReplicationPublisher(replicationPort, LiveRates.shared());
+            String replicatedRates = System.getProperty("replication.rates");
+            if (replicatedRates != null) {
+                publisher.follow(Paths.get(replicatedRates));
+            } else {
+                publisher.poll(rateDao,
+                    Long.getLong("replication.interval.ms", 1000L));
+            }
+        }
+        String upstream = System.getProperty("replication.subscribe");
+        if (upstream != null) {
+            ReplicationSubscriber.forAddress(upstream, LiveRates.shared()).start();
+        }
+        Integer ticksPort = Integer.getInteger("ticks.port");
+        if (ticksPort != null) {
+            new TickIngestor(LiveRates.shared(), Long.getLong("ticks.interval.ms", 10L)).listen(ticksPort);
+        }
+        ConversionServer server = new ConversionServer(LiveRates.shared(), port, journal, auditUsers);
+        server.start();
+        System.out.println("Conversion server listening on port " + server.getPort());
+    }
+}
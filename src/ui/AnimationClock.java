@@ -0,0 +1,117 @@
+package ui;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One shared Swing timer that drives every running animation.
+ *
+ * Instead of each effect starting its own {@link Timer}, animations register
+ * here and are stepped together on a single EDT tick. Components they touch
+ * are collected as dirty regions and repainted once per tick. The timer
+ * stops itself when nothing is running, so an idle UI costs nothing.
+ * Plain delays belong on a one-shot {@link Timer}, not here: they would keep
+ * the frame timer ticking for their whole wait.
+ * All methods must be called on the EDT.
+ */
+public final class AnimationClock {
+
+    /** About 60 frames per second. */
+    private static final int FRAME_MILLIS = 16;
+
+    private static final AnimationClock SHARED = new AnimationClock(FRAME_MILLIS);
+
+    /**
+     * A running effect. Return false from {@link #tick} once it is finished.
+     */
+    public interface Animation {
+        boolean tick(long elapsedMillis);
+    }
+
+    /**
+     * Lets the owner stop an animation early.
+     */
+    public final class Handle {
+        private final Animation animation;
+        private final long startedAt;
+        private boolean running = true;
+
+        private Handle(Animation animation, long startedAt) {
+            this.animation = animation;
+            this.startedAt = startedAt;
+        }
+
+        public boolean isRunning() { return running; }
+
+        public void cancel() {
+            if (running) {
+                running = false;
+                active.remove(this);
+            }
+        }
+    }
+
+    private final Timer timer;
+    private final List<Handle> active = new ArrayList<>();
+    private final Map<JComponent, Rectangle> dirty = new IdentityHashMap<>();
+
+    private AnimationClock(int frameMillis) {
+        timer = new Timer(frameMillis, e -> tick());
+        timer.setCoalesce(true);
+    }
+
+    public static AnimationClock shared() { return SHARED; }
+
+    public Handle start(Animation animation) {
+        Handle handle = new Handle(animation, System.currentTimeMillis());
+        active.add(handle);
+        if (!timer.isRunning()) {
+            timer.start();
+        }
+        return handle;
+    }
+
+    /**
+     * Marks a whole component for repaint at the end of this tick.
+     */
+    public void markDirty(JComponent component) {
+        markDirty(component, new Rectangle(0, 0, component.getWidth(), component.getHeight()));
+    }
+
+    /**
+     * Marks part of a component for repaint; regions on the same component are merged.
+     */
+    public void markDirty(JComponent component, Rectangle region) {
+        Rectangle existing = dirty.get(component);
+        if (existing == null) {
+            dirty.put(component, new Rectangle(region));
+        } else {
+            existing.add(region);
+        }
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        // Copy so animations may start or cancel others while ticking
+        Handle[] running = active.toArray(new Handle[0]);
+        for (Handle handle : running) {
+            if (handle.running && !handle.animation.tick(now - handle.startedAt)) {
+                handle.cancel();
+            }
+        }
+
+        for (Map.Entry<JComponent, Rectangle> entry : dirty.entrySet()) {
+            entry.getKey().repaint(entry.getValue());
+        }
+        dirty.clear();
+
+        if (active.isEmpty()) {
+            timer.stop();
+        }
+    }
+}
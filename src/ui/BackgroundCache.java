@@ -0,0 +1,59 @@
+package ui;
+
+import javax.swing.JComponent;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.function.BiConsumer;
+
+/**
+ * Renders a static background once into an image and blits it on every
+ * repaint. The image is only redrawn when the component's size changes.
+ */
+public final class BackgroundCache {
+
+    private final BiConsumer<Graphics2D, JComponent> painter;
+    private BufferedImage image;
+
+    /**
+     * @param painter draws the background at (0, 0) for the component's current size
+     */
+    public BackgroundCache(BiConsumer<Graphics2D, JComponent> painter) {
+        this.painter = painter;
+    }
+
+    public void paint(Graphics g, JComponent component) {
+        int width = component.getWidth();
+        int height = component.getHeight();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = render(component, width, height);
+        }
+        g.drawImage(image, 0, 0, null);
+    }
+
+    /**
+     * Drops the cached image so the next paint redraws it.
+     */
+    public void invalidate() {
+        image = null;
+    }
+
+    private BufferedImage render(JComponent component, int width, int height) {
+        GraphicsConfiguration config = component.getGraphicsConfiguration();
+        BufferedImage rendered = config != null
+            ? config.createCompatibleImage(width, height, Transparency.TRANSLUCENT)
+            : new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = rendered.createGraphics();
+        try {
+            painter.accept(g2d, component);
+        } finally {
+            g2d.dispose();
+        }
+        return rendered;
+    }
+}
@@ -0,0 +1,283 @@
+package ui;
+
+import engine.LiveRates;
+import engine.RateTable;
+
+import javax.swing.BorderFactory;
+import javax.swing.JComponent;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.table.TableCellRenderer;
+import javax.swing.table.TableColumnModel;
+import java.awt.BorderLayout;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Live grid of every currency against every other, fed from {@link LiveRates}.
+ *
+ * Snapshots may be published from any thread at any rate. Only the newest
+ * one is kept, and it is applied on the next {@link AnimationClock} frame,
+ * so the EDT does at most one diff per frame however fast ticks arrive.
+ * Changed cells are collected per row. When the changed spans of a few
+ * rows cover well under their bounding box, each span is painted on its
+ * own, because a plain repaint would union them into one box that covers
+ * most of the grid. Otherwise the box is repainted once.
+ */
+public class RateBoard extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int CODE_COLUMN_WIDTH = 50;
+    private static final int RATE_COLUMN_WIDTH = 90;
+    private static final Color UP_COLOR = new Color(39, 174, 96);
+    private static final Color DOWN_COLOR = new Color(192, 57, 43);
+    private static final Color HEADER_BACKGROUND = new Color(236, 240, 241);
+    private static final Color SELECTED_BACKGROUND = new Color(214, 234, 248);
+    // More changed rows than this are repainted as one box rather than painted one by one
+    private static final int MAX_ROW_PAINTS = 32;
+
+    private final LiveRates rates;
+    private final RateBoardModel model;
+    private final JTable grid;
+    private final AnimationClock clock = AnimationClock.shared();
+    private final AtomicReference<RateTable> pending = new AtomicReference<>();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    private final Consumer<RateTable> listener = this::onPublish;
+    private final RateBoardModel.ChangeSink visibleChanges = this::cellChanged;
+
+    // Bounds of the visible cells changed in the current frame, overall and per row; EDT only
+    private int firstRow, lastRow, firstColumn, lastColumn;
+    private int visibleFirstRow, visibleLastRow, visibleFirstColumn, visibleLastColumn;
+    private int[] rowFirstColumn = new int[0];
+    private int[] rowLastColumn = new int[0];
+    private int[] changedRows = new int[0];
+    private int changedRowCount;
+
+    public RateBoard(LiveRates rates) {
+        super(new BorderLayout());
+        this.rates = rates;
+        this.model = new RateBoardModel(rates.current());
+        this.grid = new JTable(model) {
+            // Skip getValueAt: the renderer formats straight from the model
+            @Override
+            public Component prepareRenderer(TableCellRenderer renderer, int row, int column) {
+                boolean selected = isCellSelected(row, column);
+                return renderer.getTableCellRendererComponent(this, null, selected, false, row, column);
+            }
+        };
+        CellRenderer renderer = new CellRenderer();
+        grid.setDefaultRenderer(Object.class, renderer);
+        grid.setDefaultRenderer(Double.class, renderer);
+        grid.setDefaultRenderer(String.class, renderer);
+        grid.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+        grid.setCellSelectionEnabled(true);
+        grid.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        grid.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        grid.setRowHeight(22);
+        grid.getTableHeader().setReorderingAllowed(false);
+        sizeColumns();
+
+        JScrollPane scroll = new JScrollPane(grid);
+        scroll.setBorder(BorderFactory.createEmptyBorder());
+        add(scroll, BorderLayout.CENTER);
+    }
+
+    /**
+     * Starts following published snapshots. Call {@link #detach} when the board is closed.
+     */
+    public void attach() {
+        rates.addListener(listener);
+        onPublish(rates.current());
+    }
+
+    public void detach() {
+        rates.removeListener(listener);
+    }
+
+    public JTable getGrid() { return grid; }
+
+    private void sizeColumns() {
+        TableColumnModel columns = grid.getColumnModel();
+        for (int c = 0; c < columns.getColumnCount(); c++) {
+            columns.getColumn(c).setPreferredWidth(c == 0 ? CODE_COLUMN_WIDTH : RATE_COLUMN_WIDTH);
+        }
+    }
+
+    /**
+     * Called on the publishing thread. Keeps only the newest snapshot and
+     * asks for a frame if one is not already due.
+     */
+    private void onPublish(RateTable table) {
+        pending.set(table);
+        if (frameScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(() -> clock.start(elapsed -> {
+                applyPending();
+                return false;
+            }));
+        }
+    }
+
+    private void applyPending() {
+        // Clear the flag first so a snapshot arriving during the diff gets its own frame
+        frameScheduled.set(false);
+        RateTable next = pending.getAndSet(null);
+        if (next == null) {
+            return;
+        }
+
+        Rectangle visible = grid.getVisibleRect();
+        visibleFirstRow = clampRow(grid.rowAtPoint(visible.getLocation()), 0);
+        visibleLastRow = clampRow(grid.rowAtPoint(new Point(visible.x, visible.y + visible.height - 1)),
+                                  model.getRowCount() - 1);
+        visibleFirstColumn = clampColumn(grid.columnAtPoint(visible.getLocation()), 0);
+        visibleLastColumn = clampColumn(grid.columnAtPoint(new Point(visible.x + visible.width - 1, visible.y)),
+                                        model.getColumnCount() - 1);
+        firstRow = Integer.MAX_VALUE;
+        lastRow = -1;
+        firstColumn = Integer.MAX_VALUE;
+        lastColumn = -1;
+        int rows = model.getRowCount();
+        if (rowFirstColumn.length < rows) {
+            rowFirstColumn = new int[rows];
+            rowLastColumn = new int[rows];
+            changedRows = new int[rows];
+            Arrays.fill(rowLastColumn, -1);
+        }
+        changedRowCount = 0;
+
+        if (model.update(next, visibleChanges)) {
+            // New currency list; the grid has rebuilt its columns and repaints itself
+            sizeColumns();
+            return;
+        }
+        if (lastRow < 0) {
+            return;
+        }
+        long spanCells = 0;
+        for (int i = 0; i < changedRowCount; i++) {
+            int row = changedRows[i];
+            spanCells += rowLastColumn[row] - rowFirstColumn[row] + 1;
+        }
+        long boxCells = (long) (lastRow - firstRow + 1) * (lastColumn - firstColumn + 1);
+        if (changedRowCount <= MAX_ROW_PAINTS && spanCells * 2 < boxCells) {
+            // Already inside a frame, so paint now rather than let the repaint manager merge the spans
+            for (int i = 0; i < changedRowCount; i++) {
+                int row = changedRows[i];
+                Rectangle span = grid.getCellRect(row, rowFirstColumn[row], true);
+                span.add(grid.getCellRect(row, rowLastColumn[row], true));
+                grid.paintImmediately(span);
+            }
+        } else {
+            Rectangle dirty = grid.getCellRect(firstRow, firstColumn, true);
+            dirty.add(grid.getCellRect(lastRow, lastColumn, true));
+            clock.markDirty(grid, dirty);
+        }
+        clearChangedRows();
+    }
+
+    private void cellChanged(int row, int column) {
+        if (row < visibleFirstRow || row > visibleLastRow
+                || column < visibleFirstColumn || column > visibleLastColumn) {
+            return;
+        }
+        if (row < firstRow) firstRow = row;
+        if (row > lastRow) lastRow = row;
+        if (column < firstColumn) firstColumn = column;
+        if (column > lastColumn) lastColumn = column;
+        if (rowLastColumn[row] < 0) {
+            changedRows[changedRowCount++] = row;
+            rowFirstColumn[row] = column;
+            rowLastColumn[row] = column;
+        } else {
+            rowFirstColumn[row] = Math.min(rowFirstColumn[row], column);
+            rowLastColumn[row] = Math.max(rowLastColumn[row], column);
+        }
+    }
+
+    private void clearChangedRows() {
+        for (int i = 0; i < changedRowCount; i++) {
+            rowLastColumn[changedRows[i]] = -1;
+        }
+        changedRowCount = 0;
+    }
+
+    private static int clampRow(int row, int fallback) {
+        return row < 0 ? fallback : row;
+    }
+
+    private static int clampColumn(int column, int fallback) {
+        return column < 0 ? fallback : column;
+    }
+
+    /**
+     * Paints a cell's text from a reusable char buffer, right-aligned for
+     * rates, tinted by the direction of the last move.
+     */
+    private final class CellRenderer extends JComponent implements TableCellRenderer {
+        private static final long serialVersionUID = 1L;
+
+        private final char[] text = new char[512];
+        private int length;
+        private boolean codeColumn;
+        private boolean selected;
+        private byte move;
+        private Font metricsFont;
+        private FontMetrics metrics;
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            length = model.formatCell(row, column, text);
+            codeColumn = column == 0;
+            selected = isSelected;
+            move = model.moveAt(row, column);
+            setFont(table.getFont());
+            return this;
+        }
+
+        @Override
+        protected void paintComponent(Graphics g) {
+            g.setColor(codeColumn ? HEADER_BACKGROUND : selected ? SELECTED_BACKGROUND : Color.WHITE);
+            g.fillRect(0, 0, getWidth(), getHeight());
+
+            Font font = getFont();
+            if (font != metricsFont) {
+                metrics = g.getFontMetrics(font);
+                metricsFont = font;
+            }
+            g.setFont(font);
+            g.setColor(move == RateBoardModel.UP ? UP_COLOR
+                     : move == RateBoardModel.DOWN ? DOWN_COLOR : Color.DARK_GRAY);
+            int width = metrics.charsWidth(text, 0, length);
+            int x = codeColumn ? 6 : getWidth() - width - 6;
+            int y = (getHeight() - metrics.getHeight()) / 2 + metrics.getAscent();
+            g.drawChars(text, 0, length, x, y);
+        }
+
+        // Renderers are stamped, never laid out; skip the default invalidation work
+        @Override
+        public void invalidate() { }
+
+        @Override
+        public void validate() { }
+
+        @Override
+        public void revalidate() { }
+
+        @Override
+        public void repaint(long tm, int x, int y, int width, int height) { }
+    }
+}
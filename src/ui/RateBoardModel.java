@@ -0,0 +1,146 @@
+package ui;
+
+import engine.RateTable;
+import util.AmountFormat;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Every-currency-against-every-currency view over a {@link RateTable}.
+ *
+ * Column 0 holds the row's currency code; column c + 1 is the rate from the
+ * row currency to currency c. The model keeps no per-cell objects: cells are
+ * read straight from the current snapshot, and the only per-cell state is
+ * one byte recording whether the rate last moved up or down.
+ * Must only be used on the EDT.
+ */
+public class RateBoardModel extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final byte UNCHANGED = 0;
+    public static final byte UP = 1;
+    public static final byte DOWN = -1;
+
+    private static final AmountFormat RATE_FORMAT = new AmountFormat(6, (char) 0);
+
+    /**
+     * Receives each cell whose rate changed during {@link #update}.
+     */
+    public interface ChangeSink {
+        void changed(int row, int column);
+    }
+
+    private RateTable table;
+    private byte[] moves;
+
+    public RateBoardModel(RateTable table) {
+        this.table = table;
+        this.moves = new byte[table.size() * table.size()];
+    }
+
+    public RateTable getTable() { return table; }
+
+    /**
+     * Swaps in a newer snapshot. If the currency list is unchanged, each cell
+     * whose rate moved is reported to the sink and no table events are fired;
+     * the caller repaints. A different currency list fires a structure change
+     * and returns true.
+     */
+    public boolean update(RateTable next, ChangeSink sink) {
+        RateTable previous = table;
+        if (next == previous) {
+            return false;
+        }
+        table = next;
+        if (!sameCodes(previous, next)) {
+            moves = new byte[next.size() * next.size()];
+            fireTableStructureChanged();
+            return true;
+        }
+
+        int n = next.size();
+        for (int from = 0; from < n; from++) {
+            int base = from * n;
+            for (int to = 0; to < n; to++) {
+                double before = previous.rate(from, to);
+                double after = next.rate(from, to);
+                if (after > before) {
+                    moves[base + to] = UP;
+                } else if (after < before) {
+                    moves[base + to] = DOWN;
+                } else if (Double.compare(after, before) == 0) {
+                    continue;
+                }
+                // NaN on either side (rate appeared or vanished) counts as a change too
+                sink.changed(from, to + 1);
+            }
+        }
+        return false;
+    }
+
+    private static boolean sameCodes(RateTable a, RateTable b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!a.code(i).equals(b.code(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Rate shown in a cell, NaN for the code column or a missing rate. */
+    public double rateAt(int row, int column) {
+        return column == 0 ? Double.NaN : table.rate(row, column - 1);
+    }
+
+    /** Last direction the cell's rate moved: {@link #UP}, {@link #DOWN} or {@link #UNCHANGED}. */
+    public byte moveAt(int row, int column) {
+        return column == 0 ? UNCHANGED : moves[row * table.size() + column - 1];
+    }
+
+    /**
+     * Writes a cell's text into {@code out} and returns its length, without
+     * creating a String.
+     */
+    public int formatCell(int row, int column, char[] out) {
+        if (column == 0) {
+            String code = table.code(row);
+            code.getChars(0, code.length(), out, 0);
+            return code.length();
+        }
+        double rate = table.rate(row, column - 1);
+        if (Double.isNaN(rate)) {
+            out[0] = '-';
+            return 1;
+        }
+        return RATE_FORMAT.format(rate, out, 0);
+    }
+
+    @Override
+    public int getRowCount() { return table.size(); }
+
+    @Override
+    public int getColumnCount() { return table.size() + 1; }
+
+    @Override
+    public String getColumnName(int column) {
+        return column == 0 ? "" : table.code(column - 1);
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+        return column == 0 ? String.class : Double.class;
+    }
+
+    /**
+     * Boxes the value for generic table clients; the rate board's own
+     * renderer reads {@link #formatCell} instead.
+     */
+    @Override
+    public Object getValueAt(int row, int column) {
+        return column == 0 ? table.code(row) : table.rate(row, column - 1);
+    }
+}
@@ -0,0 +1,408 @@
+package util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+/**
+ * Garbage-free decimal amount parsing and formatting with a fixed scale and
+ * optional grouping separator, e.g. scale 2 with ',' renders 1234567.891 as
+ * "1,234,567.89". Reads and writes go directly to char[] and NIO buffers.
+ * Instances are immutable and safe to share between threads; the buffer
+ * overloads use a per-thread scratch array allocated once.
+ */
+public final class AmountFormat {
+
+    /** Room for the plain form of Double.MAX_VALUE with grouping and scale. */
+    private static final int SCRATCH_LENGTH = 512;
+    private static final int MAX_SCALE = 9;
+    private static final int MAX_PARSE_DIGITS = 18;
+    private static final long[] LONG_POW10 = new long[19];
+    private static final double[] POW10 = new double[23];
+
+    static {
+        LONG_POW10[0] = 1L;
+        for (int i = 1; i < LONG_POW10.length; i++) {
+            LONG_POW10[i] = LONG_POW10[i - 1] * 10L;
+        }
+        POW10[0] = 1.0;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10.0;
+        }
+    }
+
+    /** Returned by {@code parseUnits} for text that is not an exact amount at this scale. */
+    public static final long INVALID_UNITS = Long.MIN_VALUE;
+
+    private static final ThreadLocal<char[]> SCRATCH = ThreadLocal.withInitial(() -> new char[SCRATCH_LENGTH]);
+
+    private final int scale;
+    private final char grouping;
+    private final long unitFactor;
+    private final double factor;
+
+    /**
+     * @param scale    digits after the decimal point, 0 to 9
+     * @param grouping thousands separator, or 0 for none
+     */
+    public AmountFormat(int scale, char grouping) {
+        if (scale < 0 || scale > MAX_SCALE) {
+            throw new IllegalArgumentException("scale must be between 0 and " + MAX_SCALE);
+        }
+        if (grouping == '.' || grouping == '-' || (grouping >= '0' && grouping <= '9')) {
+            throw new IllegalArgumentException("Invalid grouping separator: " + grouping);
+        }
+        this.scale = scale;
+        this.grouping = grouping;
+        this.unitFactor = LONG_POW10[scale];
+        this.factor = POW10[scale];
+    }
+
+    public int getScale() { return scale; }
+    public char getGrouping() { return grouping; }
+
+    /**
+     * Writes the value into dst starting at off, rounding half away from zero.
+     * Returns the number of chars written.
+     */
+    public int format(double value, char[] dst, int off) {
+        double scaled = Math.abs(value * factor);
+        if (!(scaled < 9.0e18)) {
+            // NaN, infinities and values beyond a scaled long: rare, so allocate
+            return formatSlow(value, dst, off);
+        }
+
+        long units = Math.round(scaled);
+        return write(value < 0 && units != 0, units, dst, off);
+    }
+
+    /**
+     * Writes an exact amount given in units of 10^-scale, e.g. minor units
+     * for a format whose scale is the currency's. Returns the number of chars written.
+     */
+    public int formatUnits(long units, char[] dst, int off) {
+        if (units == Long.MIN_VALUE) {
+            String plain = BigDecimal.valueOf(units, scale).toPlainString();
+            return writeText(grouping == 0 ? plain : group(plain), dst, off);
+        }
+        return write(units < 0, Math.abs(units), dst, off);
+    }
+
+    private int write(boolean negative, long units, char[] dst, int off) {
+        long whole = units / unitFactor;
+        long fraction = units - whole * unitFactor;
+
+        int wholeDigits = digitCount(whole);
+        int groups = grouping != 0 ? (wholeDigits - 1) / 3 : 0;
+        int length = (negative ? 1 : 0) + wholeDigits + groups + (scale > 0 ? scale + 1 : 0);
+        if (dst.length - off < length) {
+            throw new IndexOutOfBoundsException("Need " + length + " chars at offset " + off);
+        }
+
+        // Fill backwards from the last char
+        int pos = off + length;
+        for (int i = 0; i < scale; i++) {
+            dst[--pos] = (char) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        if (scale > 0) {
+            dst[--pos] = '.';
+        }
+        int written = 0;
+        do {
+            if (grouping != 0 && written > 0 && written % 3 == 0) {
+                dst[--pos] = grouping;
+            }
+            dst[--pos] = (char) ('0' + whole % 10);
+            whole /= 10;
+            written++;
+        } while (whole != 0);
+        if (negative) {
+            dst[--pos] = '-';
+        }
+        return length;
+    }
+
+    /**
+     * Parses the same syntax as {@link #parse(CharSequence, int, int)}, but
+     * exactly, into units of 10^-scale: with scale 2, "12.3" is 1230.
+     * Returns {@link #INVALID_UNITS} if the text is not a valid amount, has
+     * nonzero digits beyond the scale, or does not fit a long.
+     */
+    public long parseUnits(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) == ' ') start++;
+        while (end > start && text.charAt(end - 1) == ' ') end--;
+        if (start == end) {
+            return INVALID_UNITS;
+        }
+
+        boolean negative = false;
+        char first = text.charAt(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            start++;
+        }
+
+        long units = 0;
+        int fraction = -1;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                units = appendDigit(units, c - '0', fraction);
+                if (units == INVALID_UNITS) {
+                    return INVALID_UNITS;
+                }
+                if (fraction >= 0 && fraction < scale) fraction++;
+            } else if (c == '.' && fraction < 0) {
+                fraction = 0;
+            } else if (c != grouping || grouping == 0 || fraction >= 0) {
+                return INVALID_UNITS;
+            }
+        }
+        return toUnits(negative, units, fraction, digits);
+    }
+
+    public long parseUnits(CharSequence text) {
+        return parseUnits(text, 0, text.length());
+    }
+
+    /**
+     * Parses ASCII bytes between the absolute indices start and end.
+     * Same rules as {@link #parseUnits(CharSequence, int, int)}.
+     */
+    public long parseUnits(ByteBuffer buf, int start, int end) {
+        while (start < end && buf.get(start) == ' ') start++;
+        while (end > start && buf.get(end - 1) == ' ') end--;
+        if (start == end) {
+            return INVALID_UNITS;
+        }
+
+        boolean negative = false;
+        byte first = buf.get(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            start++;
+        }
+
+        long units = 0;
+        int fraction = -1;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                digits++;
+                units = appendDigit(units, b - '0', fraction);
+                if (units == INVALID_UNITS) {
+                    return INVALID_UNITS;
+                }
+                if (fraction >= 0 && fraction < scale) fraction++;
+            } else if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else if (b != grouping || grouping == 0 || fraction >= 0) {
+                return INVALID_UNITS;
+            }
+        }
+        return toUnits(negative, units, fraction, digits);
+    }
+
+    /**
+     * Adds one digit to the units parsed so far. Digits past the scale must
+     * be zero and are dropped.
+     */
+    private long appendDigit(long units, int digit, int fraction) {
+        if (fraction == scale) {
+            return digit == 0 ? units : INVALID_UNITS;
+        }
+        if (units > (Long.MAX_VALUE - digit) / 10) {
+            return INVALID_UNITS;
+        }
+        return units * 10 + digit;
+    }
+
+    private long toUnits(boolean negative, long units, int fraction, int digits) {
+        if (digits == 0) {
+            return INVALID_UNITS;
+        }
+        for (int f = Math.max(fraction, 0); f < scale; f++) {
+            if (units > Long.MAX_VALUE / 10) {
+                return INVALID_UNITS;
+            }
+            units *= 10;
+        }
+        return negative ? -units : units;
+    }
+
+    /**
+     * Writes the value at the buffer's position and advances it.
+     */
+    public void format(double value, CharBuffer dst) {
+        char[] scratch = SCRATCH.get();
+        int length = format(value, scratch, 0);
+        dst.put(scratch, 0, length);
+    }
+
+    /**
+     * Writes the value as ASCII at the buffer's position and advances it.
+     */
+    public void format(double value, ByteBuffer dst) {
+        char[] scratch = SCRATCH.get();
+        int length = format(value, scratch, 0);
+        for (int i = 0; i < length; i++) {
+            dst.put((byte) scratch[i]);
+        }
+    }
+
+    /**
+     * Writes exact units of 10^-scale as ASCII at the buffer's position and advances it.
+     */
+    public void formatUnits(long units, ByteBuffer dst) {
+        char[] scratch = SCRATCH.get();
+        int length = formatUnits(units, scratch, 0);
+        for (int i = 0; i < length; i++) {
+            dst.put((byte) scratch[i]);
+        }
+    }
+
+    /**
+     * Parses [+|-]digits[.digits] between start and end, skipping surrounding
+     * spaces and grouping separators. Returns NaN if the text is not a valid
+     * amount, so callers can reject bad input without an exception.
+     */
+    public double parse(CharSequence text, int start, int end) {
+        while (start < end && text.charAt(start) == ' ') start++;
+        while (end > start && text.charAt(end - 1) == ' ') end--;
+        if (start == end) {
+            return Double.NaN;
+        }
+
+        boolean negative = false;
+        char first = text.charAt(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            start++;
+        }
+
+        long mantissa = 0;
+        int significant = 0;
+        int fraction = -1;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (significant < MAX_PARSE_DIGITS) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (mantissa != 0) significant++;
+                    if (fraction >= 0) fraction++;
+                } else if (fraction < 0) {
+                    return Double.NaN; // whole part too long to parse exactly
+                }
+            } else if (c == '.' && fraction < 0) {
+                fraction = 0;
+            } else if (c != grouping || grouping == 0 || fraction >= 0) {
+                return Double.NaN;
+            }
+        }
+        return toDouble(negative, mantissa, fraction, digits);
+    }
+
+    public double parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * Parses ASCII bytes between the absolute indices start and end.
+     * Same rules as {@link #parse(CharSequence, int, int)}.
+     */
+    public double parse(ByteBuffer buf, int start, int end) {
+        while (start < end && buf.get(start) == ' ') start++;
+        while (end > start && buf.get(end - 1) == ' ') end--;
+        if (start == end) {
+            return Double.NaN;
+        }
+
+        boolean negative = false;
+        byte first = buf.get(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            start++;
+        }
+
+        long mantissa = 0;
+        int significant = 0;
+        int fraction = -1;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buf.get(i);
+            if (b >= '0' && b <= '9') {
+                digits++;
+                if (significant < MAX_PARSE_DIGITS) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0) significant++;
+                    if (fraction >= 0) fraction++;
+                } else if (fraction < 0) {
+                    return Double.NaN;
+                }
+            } else if (b == '.' && fraction < 0) {
+                fraction = 0;
+            } else if (b != grouping || grouping == 0 || fraction >= 0) {
+                return Double.NaN;
+            }
+        }
+        return toDouble(negative, mantissa, fraction, digits);
+    }
+
+    private static double toDouble(boolean negative, long mantissa, int fraction, int digits) {
+        if (digits == 0 || fraction >= POW10.length) {
+            return Double.NaN;
+        }
+        double value = fraction > 0 ? mantissa / POW10[fraction] : mantissa;
+        return negative ? -value : value;
+    }
+
+    private int formatSlow(double value, char[] dst, int off) {
+        String text;
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            text = Double.toString(value);
+        } else {
+            String plain = new BigDecimal(value).setScale(scale, RoundingMode.HALF_UP).toPlainString();
+            text = grouping == 0 ? plain : group(plain);
+        }
+        return writeText(text, dst, off);
+    }
+
+    private int writeText(String text, char[] dst, int off) {
+        if (dst.length - off < text.length()) {
+            throw new IndexOutOfBoundsException("Need " + text.length() + " chars at offset " + off);
+        }
+        text.getChars(0, text.length(), dst, off);
+        return text.length();
+    }
+
+    private String group(String plain) {
+        int sign = plain.startsWith("-") ? 1 : 0;
+        int point = plain.indexOf('.');
+        int wholeEnd = point < 0 ? plain.length() : point;
+        StringBuilder sb = new StringBuilder(plain.length() + plain.length() / 3);
+        sb.append(plain, 0, sign);
+        for (int i = sign; i < wholeEnd; i++) {
+            if (i > sign && (wholeEnd - i) % 3 == 0) {
+                sb.append(grouping);
+            }
+            sb.append(plain.charAt(i));
+        }
+        sb.append(plain, wholeEnd, plain.length());
+        return sb.toString();
+    }
+
+    private static int digitCount(long value) {
+        int count = 1;
+        while (count < 19 && value >= LONG_POW10[count]) {
+            count++;
+        }
+        return count;
+    }
+}
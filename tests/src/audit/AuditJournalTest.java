@@ -0,0 +1,120 @@
+package audit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditJournalTest {
+
+    private Path path;
+
+    @BeforeEach
+    void createFile() throws IOException {
+        path = Files.createTempFile("audit", ".jnl");
+        Files.delete(path);
+    }
+
+    @AfterEach
+    void deleteFile() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Test
+    void replaysWhatWasRecorded() throws Exception {
+        try (AuditJournal journal = AuditJournal.open(path, 16)) {
+            for (int i = 0; i < 100; i++) {
+                journal.record(i % 3, "USD", "EUR", i * 101L, 7, i * 101L * 85 / 100);
+            }
+            journal.flush();
+
+            List<AuditRecord> records = new ArrayList<>();
+            journal.replay(records::add);
+            assertEquals(100, records.size());
+            for (int i = 0; i < records.size(); i++) {
+                AuditRecord record = records.get(i);
+                assertEquals(i % 3, record.getUserId());
+                assertEquals("USD", record.getFromCurrency());
+                assertEquals("EUR", record.getToCurrency());
+                assertEquals(i * 101L, record.getAmountMinor());
+                assertEquals(7, record.getRateVersion());
+                assertEquals(i * 101L * 85 / 100, record.getResultMinor());
+            }
+        }
+    }
+
+    @Test
+    void dropsATornTailAfterACrash() throws Exception {
+        try (AuditJournal journal = AuditJournal.open(path)) {
+            for (int i = 0; i < 10; i++) {
+                journal.record(1, "USD", "GBP", i, 1, i * 7 / 10);
+            }
+        }
+        // A crash part-way through the last record, and a flipped byte in the one before it
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+            long ninth = channel.size() - AuditJournal.RECORD_BYTES - (AuditJournal.RECORD_BYTES - 5);
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), ninth + 20);
+        }
+
+        try (AuditJournal journal = AuditJournal.open(path)) {
+            List<AuditRecord> records = new ArrayList<>();
+            journal.replay(records::add);
+            assertEquals(8, records.size());
+            assertEquals(7, records.get(7).getAmountMinor());
+
+            // New records go after the valid ones, with nothing of the torn tail left between
+            journal.record(2, "USD", "JPY", 100, 2, 11_000);
+            journal.flush();
+            assertEquals(16 + 9L * AuditJournal.RECORD_BYTES, Files.size(path));
+            assertEquals(1, journal.history(2).size());
+            assertEquals(8, journal.history(1).size());
+        }
+        List<AuditRecord> reread = new ArrayList<>();
+        AuditJournal.replay(path, reread::add);
+        assertEquals(9, reread.size());
+    }
+
+    @Test
+    void historyReadsOneUsersRecordsInTimeOrder() throws Exception {
+        long before;
+        try (AuditJournal journal = AuditJournal.open(path, 1024)) {
+            for (int i = 0; i < 5000; i++) {
+                journal.record(i % 10, "EUR", "USD", i, 1, i * 11 / 10);
+            }
+            journal.flush();
+            before = System.currentTimeMillis();
+            Thread.sleep(5);
+            journal.record(3, "EUR", "CHF", 100, 2, 95);
+            journal.flush();
+
+            List<AuditRecord> all = journal.history(3);
+            assertEquals(501, all.size());
+            for (int i = 0; i < 500; i++) {
+                assertEquals(3 + 10 * i, all.get(i).getAmountMinor());
+            }
+            assertTrue(journal.history(42).isEmpty());
+
+            List<AuditRecord> recent = journal.history(3, before + 1, Long.MAX_VALUE);
+            assertEquals(1, recent.size());
+            assertEquals("CHF", recent.get(0).getToCurrency());
+            assertEquals("0.95 CHF", recent.get(0).getResult().toString());
+        }
+
+        // The index is rebuilt from the file on open
+        try (AuditJournal journal = AuditJournal.open(path)) {
+            assertEquals(501, journal.history(3).size());
+            assertEquals(500, journal.history(9).size());
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package audit;
+
+import dao.UserDAO;
+import model.User;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AuditUsersTest {
+
+    /** Users 1 and 2 exist; counts lookups by id. */
+    private static final class StubUsers implements UserDAO {
+        final List<User> users = new ArrayList<>(List.of(new User(1, "alice", null), new User(2, "bob", null)));
+        int lookups;
+
+        @Override
+        public List<User> getAllUsers() {
+            return users;
+        }
+
+        @Override
+        public User getUser(int id) {
+            lookups++;
+            return users.stream().filter(u -> u.getId() == id).findFirst().orElse(null);
+        }
+
+        @Override
+        public User getUserByUsername(String username) {
+            return users.stream().filter(u -> u.getUsername().equals(username)).findFirst().orElse(null);
+        }
+
+        @Override
+        public int addUser(User user) {
+            users.add(user);
+            return user.getId();
+        }
+
+        @Override
+        public boolean deleteUser(int id) {
+            return users.removeIf(u -> u.getId() == id);
+        }
+    }
+
+    @Test
+    void resolvesKnownUsersAndCachesTheAnswer() throws SQLException {
+        StubUsers dao = new StubUsers();
+        AuditUsers users = new AuditUsers(dao, 1, 1, TimeUnit.HOURS, 100);
+        assertEquals("alice", users.resolve(1).getUsername());
+        assertNull(users.resolve(0));
+        assertEquals("alice", users.resolve(1).getUsername());
+        assertNull(users.resolve(0));
+        assertEquals(2, dao.lookups);
+    }
+
+    @Test
+    void unknownIdsAreLookedUpAgainOnceTheirEntryExpires() throws SQLException {
+        StubUsers dao = new StubUsers();
+        AuditUsers users = new AuditUsers(dao, 1, 0, TimeUnit.HOURS, 100);
+        assertNull(users.resolve(3));
+        dao.addUser(new User(3, "carol", null));
+        assertEquals("carol", users.resolve(3).getUsername());
+    }
+
+    @Test
+    void requireRejectsUnknownUsers() throws SQLException {
+        AuditUsers users = new AuditUsers(new StubUsers());
+        assertEquals(2, users.require(2, "ignored").getId());
+        assertEquals(1, users.require(null, "alice").getId());
+        assertThrows(IllegalArgumentException.class, () -> users.require(0, "alice"));
+        assertThrows(IllegalArgumentException.class, () -> users.require(null, "mallory"));
+    }
+}
@@ -0,0 +1,228 @@
+package dao;
+
+import model.Currency;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingCurrencyDAOTest {
+
+    private static final int THREADS = 16;
+
+    /** Knows every pair except those to "XXX", counts calls and can hold loads until released. */
+    private static final class CountingDAO implements CurrencyDAO {
+        final AtomicInteger pairLoads = new AtomicInteger();
+        final AtomicInteger allLoads = new AtomicInteger();
+        final CountDownLatch release;
+        volatile int failuresLeft;
+
+        CountingDAO(boolean held) {
+            release = new CountDownLatch(held ? 1 : 0);
+        }
+
+        private void hold() throws SQLException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            }
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                throw new SQLException("database down");
+            }
+        }
+
+        @Override
+        public List<Currency> getAllCurrencies() throws SQLException {
+            allLoads.incrementAndGet();
+            hold();
+            List<Currency> all = new ArrayList<>();
+            all.add(new Currency(1, "USD", "EUR", 0.85));
+            return all;
+        }
+
+        @Override
+        public void forEachCurrency(Consumer<Currency> consumer) throws SQLException {
+            getAllCurrencies().forEach(consumer);
+        }
+
+        @Override
+        public Currency getCurrency(String fromCurrency, String toCurrency) throws SQLException {
+            pairLoads.incrementAndGet();
+            hold();
+            return toCurrency.equals("XXX") ? null : new Currency(1, fromCurrency, toCurrency, 0.85);
+        }
+
+        @Override
+        public void addCurrency(Currency currency) {
+        }
+
+        @Override
+        public boolean updateRate(String fromCurrency, String toCurrency, double rate) {
+            return true;
+        }
+
+        @Override
+        public boolean deleteCurrency(String fromCurrency, String toCurrency) {
+            return true;
+        }
+
+        @Override
+        public int upsertRates(Collection<Currency> currencies) {
+            return currencies.size();
+        }
+    }
+
+    private static CachingCurrencyDAO cache(CurrencyDAO delegate, long ttlMillis, long negativeTtlMillis, int maxSize) {
+        return new CachingCurrencyDAO(delegate, ttlMillis, negativeTtlMillis, TimeUnit.MILLISECONDS, maxSize);
+    }
+
+    /** Runs the lookup on many threads at once; they all miss while the delegate is held. */
+    private static List<Object> concurrently(CachingCurrencyDAO cache, CountingDAO delegate,
+                                             Lookup lookup) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(pool.submit(lookup::get));
+            }
+            // Every thread has either started the load or is waiting on it
+            awaitCount(cache::getMissCount, THREADS);
+            delegate.release.countDown();
+            List<Object> values = new ArrayList<>();
+            for (Future<Object> result : results) {
+                values.add(result.get(5, TimeUnit.SECONDS));
+            }
+            return values;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Lookup {
+        Object get() throws SQLException;
+    }
+
+    private static void awaitCount(LongSupplier count, long wanted) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (count.getAsLong() < wanted) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for " + wanted);
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void concurrentMissesOnOnePairShareOneLoad() throws Exception {
+        CountingDAO delegate = new CountingDAO(true);
+        CachingCurrencyDAO cache = cache(delegate, 60_000, 60_000, 100);
+
+        List<Object> values = concurrently(cache, delegate, () -> cache.getCurrency("USD", "EUR"));
+        assertEquals(1, delegate.pairLoads.get());
+        for (Object value : values) {
+            assertSame(values.get(0), value);
+        }
+        assertEquals(1, cache.getLoadCount());
+        assertEquals(0, cache.getHitCount());
+
+        cache.getCurrency("USD", "EUR");
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, delegate.pairLoads.get());
+    }
+
+    @Test
+    void concurrentBulkReadsShareOneLoad() throws Exception {
+        CountingDAO delegate = new CountingDAO(true);
+        CachingCurrencyDAO cache = cache(delegate, 60_000, 60_000, 100);
+
+        concurrently(cache, delegate, cache::getAllCurrencies);
+        assertEquals(1, delegate.allLoads.get());
+
+        List<String> seen = new ArrayList<>();
+        cache.forEachCurrency(currency -> seen.add(currency.getFromCurrency() + currency.getToCurrency()));
+        assertEquals(Collections.singletonList("USDEUR"), seen);
+        assertEquals(1, delegate.allLoads.get());
+        assertThrows(UnsupportedOperationException.class, () -> cache.getAllCurrencies().clear());
+    }
+
+    @Test
+    void entriesExpireAfterTheirTtl() throws Exception {
+        CountingDAO delegate = new CountingDAO(false);
+        CachingCurrencyDAO cache = cache(delegate, 60_000, 50, 100);
+
+        assertNotNull(cache.getCurrency("USD", "EUR"));
+        assertNull(cache.getCurrency("USD", "XXX"));
+        assertNotNull(cache.getCurrency("USD", "EUR"));
+        assertNull(cache.getCurrency("USD", "XXX"));
+        assertEquals(2, delegate.pairLoads.get(), "unknown pairs are cached too");
+
+        Thread.sleep(100);
+        assertNull(cache.getCurrency("USD", "XXX"));
+        assertNotNull(cache.getCurrency("USD", "EUR"));
+        assertEquals(3, delegate.pairLoads.get(), "only the negative entry expired");
+
+        CachingCurrencyDAO shortLived = cache(delegate, 50, 50, 100);
+        shortLived.getAllCurrencies();
+        shortLived.getAllCurrencies();
+        Thread.sleep(100);
+        shortLived.getAllCurrencies();
+        assertEquals(2, delegate.allLoads.get());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedPastMaxSize() throws SQLException {
+        CountingDAO delegate = new CountingDAO(false);
+        CachingCurrencyDAO cache = cache(delegate, 60_000, 60_000, 4);
+
+        for (int i = 0; i < 20; i++) {
+            cache.getCurrency("USD", "EUR"); // kept warm
+            cache.getCurrency("USD", "C" + (char) ('A' + i / 10) + (char) ('A' + i % 10));
+        }
+        assertEquals(4, cache.size());
+        assertEquals(17, cache.getEvictionCount());
+        assertEquals(21, delegate.pairLoads.get(), "the warm pair was never evicted");
+    }
+
+    @Test
+    void failuresAreNotCached() throws SQLException {
+        CountingDAO delegate = new CountingDAO(false);
+        delegate.failuresLeft = 1;
+        CachingCurrencyDAO cache = cache(delegate, 60_000, 60_000, 100);
+
+        assertThrows(SQLException.class, () -> cache.getCurrency("USD", "EUR"));
+        assertNotNull(cache.getCurrency("USD", "EUR"));
+        assertEquals(1, cache.getLoadFailureCount());
+        assertEquals(1, cache.getLoadCount());
+    }
+
+    @Test
+    void writesInvalidateWhatTheyTouch() throws SQLException {
+        CountingDAO delegate = new CountingDAO(false);
+        CachingCurrencyDAO cache = cache(delegate, 60_000, 60_000, 100);
+
+        cache.getAllCurrencies();
+        cache.getCurrency("USD", "EUR");
+        cache.getCurrency("USD", "GBP");
+        cache.updateRate("USD", "EUR", 0.9);
+
+        cache.getAllCurrencies();
+        cache.getCurrency("USD", "EUR");
+        cache.getCurrency("USD", "GBP");
+        assertEquals(2, delegate.allLoads.get());
+        assertEquals(3, delegate.pairLoads.get());
+    }
+}
@@ -0,0 +1,123 @@
+package dao;
+
+import model.Currency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the JDBC DAO against an in-memory H2 database in its default mode,
+ * so upserts go through the standard MERGE statement.
+ */
+class CurrencyDAOImplTest {
+
+    private static int databases;
+
+    private DBConnection pool;
+    private CurrencyDAOImpl dao;
+
+    @BeforeEach
+    void createSchema() throws SQLException {
+        pool = new DBConnection("jdbc:h2:mem:currency" + (databases++) + ";DB_CLOSE_DELAY=-1", "sa", "", 2, 1000);
+        try (DBConnection.PooledConnection conn = pool.acquire();
+             Statement statement = conn.getConnection().createStatement()) {
+            statement.execute("CREATE TABLE currency_rates ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                + "from_currency CHAR(3) NOT NULL, "
+                + "to_currency CHAR(3) NOT NULL, "
+                + "rate DECIMAL(24, 12) NOT NULL, "
+                + "CONSTRAINT uk_currency_pair UNIQUE (from_currency, to_currency))");
+        }
+        dao = new CurrencyDAOImpl(pool, 2);
+    }
+
+    @AfterEach
+    void dropDatabase() throws SQLException {
+        try (DBConnection.PooledConnection conn = pool.acquire();
+             Statement statement = conn.getConnection().createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        pool.close();
+    }
+
+    @Test
+    void addGetUpdateDelete() throws SQLException {
+        dao.addCurrency(new Currency(0, "USD", "EUR", 0.85));
+
+        Currency stored = dao.getCurrency("USD", "EUR");
+        assertNotNull(stored);
+        assertEquals(0.85, stored.getRate(), 0.0);
+        assertNull(dao.getCurrency("EUR", "USD"));
+
+        assertTrue(dao.updateRate("USD", "EUR", 0.9));
+        assertEquals(0.9, dao.getCurrency("USD", "EUR").getRate(), 0.0);
+        assertFalse(dao.updateRate("USD", "XXX", 1.0));
+
+        assertTrue(dao.deleteCurrency("USD", "EUR"));
+        assertFalse(dao.deleteCurrency("USD", "EUR"));
+        assertTrue(dao.getAllCurrencies().isEmpty());
+    }
+
+    @Test
+    void upsertInsertsAndUpdatesAcrossBatches() throws SQLException {
+        dao.addCurrency(new Currency(0, "USD", "EUR", 0.85));
+
+        // Batch size is 2, so five rows take three batches
+        int written = dao.upsertRates(Arrays.asList(
+            new Currency(0, "USD", "EUR", 0.86),
+            new Currency(0, "USD", "GBP", 0.73),
+            new Currency(0, "USD", "JPY", 110.0),
+            new Currency(0, "USD", "CHF", 0.92),
+            new Currency(0, "USD", "GBP", 0.74)));
+        assertEquals(5, written);
+
+        List<Currency> all = dao.getAllCurrencies();
+        assertEquals(4, all.size());
+        assertEquals(0.86, dao.getCurrency("USD", "EUR").getRate(), 0.0);
+        assertEquals(0.74, dao.getCurrency("USD", "GBP").getRate(), 0.0);
+        assertEquals(110.0, dao.getCurrency("USD", "JPY").getRate(), 0.0);
+    }
+
+    @Test
+    void failedUpsertRollsBackTheWholeBatch() throws SQLException {
+        dao.addCurrency(new Currency(0, "USD", "EUR", 0.85));
+
+        // The third rate does not fit DECIMAL(24, 12), and fails after the first batch was sent
+        assertThrows(SQLException.class, () -> dao.upsertRates(Arrays.asList(
+            new Currency(0, "USD", "EUR", 0.99),
+            new Currency(0, "USD", "GBP", 0.73),
+            new Currency(0, "USD", "JPY", 1e15))));
+
+        assertEquals(0.85, dao.getCurrency("USD", "EUR").getRate(), 0.0);
+        assertNull(dao.getCurrency("USD", "GBP"));
+
+        // The connection went back to the pool in auto-commit mode and still works
+        try (DBConnection.PooledConnection conn = pool.acquire()) {
+            Connection connection = conn.getConnection();
+            assertTrue(connection.getAutoCommit());
+        }
+        dao.addCurrency(new Currency(0, "USD", "GBP", 0.73));
+        assertEquals(2, dao.getAllCurrencies().size());
+    }
+
+    @Test
+    void forEachCurrencyStreamsInIdOrder() throws SQLException {
+        dao.upsertRates(Arrays.asList(
+            new Currency(0, "USD", "EUR", 0.85),
+            new Currency(0, "USD", "GBP", 0.73),
+            new Currency(0, "USD", "JPY", 110.0)));
+
+        List<String> seen = new ArrayList<>();
+        dao.forEachCurrency(c -> seen.add(c.getToCurrency()));
+        assertEquals(Arrays.asList("EUR", "GBP", "JPY"), seen);
+    }
+}
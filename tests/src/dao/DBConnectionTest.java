@@ -0,0 +1,70 @@
+package dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DBConnectionTest {
+
+    private DBConnection pool;
+
+    @BeforeEach
+    void openPool() {
+        pool = new DBConnection("jdbc:h2:mem:pool", "sa", "", 2, 200);
+    }
+
+    @AfterEach
+    void closePool() {
+        pool.close();
+    }
+
+    @Test
+    void closingTwiceReturnsTheConnectionOnce() throws SQLException {
+        DBConnection.PooledConnection lease = pool.acquire();
+        Connection physical = lease.getConnection();
+        lease.close();
+        lease.close();
+
+        try (DBConnection.PooledConnection first = pool.acquire();
+             DBConnection.PooledConnection second = pool.acquire()) {
+            assertSame(physical, first.getConnection());
+            assertNotSame(first.getConnection(), second.getConnection());
+        }
+    }
+
+    @Test
+    void closedLeaseRejectsUse() throws SQLException {
+        DBConnection.PooledConnection lease = pool.acquire();
+        lease.close();
+
+        assertThrows(SQLException.class, lease::getConnection);
+        assertThrows(SQLException.class, () -> lease.prepare("SELECT 1"));
+    }
+
+    @Test
+    void reusesPreparedStatementsAcrossLeases() throws SQLException {
+        Object statement;
+        try (DBConnection.PooledConnection lease = pool.acquire()) {
+            statement = lease.prepare("SELECT 1");
+        }
+        try (DBConnection.PooledConnection lease = pool.acquire()) {
+            assertSame(statement, lease.prepare("SELECT 1"));
+        }
+    }
+
+    @Test
+    void timesOutWhenEveryConnectionIsBorrowed() throws SQLException {
+        try (DBConnection.PooledConnection first = pool.acquire();
+             DBConnection.PooledConnection second = pool.acquire()) {
+            assertNotNull(first);
+            assertNotNull(second);
+            assertThrows(SQLException.class, pool::acquire);
+        }
+        pool.acquire().close();
+    }
+}
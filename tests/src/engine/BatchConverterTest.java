@@ -0,0 +1,109 @@
+package engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchConverterTest {
+
+    private static final int ROWS = 100_000;
+
+    private final RateTable rates = DefaultRates.table();
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    // A small threshold so the batch really splits into many tasks
+    private final BatchConverter converter = new BatchConverter(pool, 1024);
+
+    private final double[] amounts = new double[ROWS];
+    private final long[] minorUnits = new long[ROWS];
+    private final short[] from = new short[ROWS];
+    private final short[] to = new short[ROWS];
+
+    BatchConverterTest() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < ROWS; i++) {
+            amounts[i] = random.nextDouble(-1e6, 1e6);
+            minorUnits[i] = random.nextLong(-1_000_000_000L, 1_000_000_000L);
+            from[i] = (short) random.nextInt(rates.size());
+            to[i] = (short) random.nextInt(rates.size());
+        }
+    }
+
+    @AfterEach
+    void shutDownPool() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void sequentialAndParallelMatchScalarConversion() {
+        double[] sequential = new double[ROWS];
+        double[] parallel = new double[ROWS];
+        BatchConverter.convert(rates, amounts, from, to, sequential);
+        converter.convertParallel(rates, amounts, from, to, parallel);
+
+        for (int i = 0; i < ROWS; i++) {
+            double expected = rates.convert(amounts[i], from[i], to[i]);
+            assertEquals(expected, sequential[i], 0.0, "row " + i);
+            assertEquals(expected, parallel[i], 0.0, "row " + i);
+        }
+    }
+
+    @Test
+    void singlePairColumnMatchesScalarConversion() {
+        int eur = rates.require("EUR");
+        int jpy = rates.require("JPY");
+        double[] out = new double[ROWS];
+        BatchConverter.convert(rates, amounts, eur, jpy, out);
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(rates.convert(amounts[i], eur, jpy), out[i], 0.0, "row " + i);
+        }
+    }
+
+    @Test
+    void exactMatchesScalarConvertMinor() {
+        for (RoundingMode rounding : new RoundingMode[] {RoundingMode.HALF_EVEN, RoundingMode.FLOOR}) {
+            long[] sequential = new long[ROWS];
+            long[] parallel = new long[ROWS];
+            BatchConverter.convertExact(rates, minorUnits, from, to, sequential, rounding);
+            converter.convertExactParallel(rates, minorUnits, from, to, parallel, rounding);
+
+            for (int i = 0; i < ROWS; i++) {
+                long expected = rates.convertMinor(minorUnits[i], from[i], to[i], rounding);
+                assertEquals(expected, sequential[i], "row " + i);
+                assertEquals(expected, parallel[i], "row " + i);
+            }
+        }
+    }
+
+    @Test
+    void rejectsIndexesOutsideTheTableBeforeConverting() {
+        int n = rates.size();
+        double[] out = new double[ROWS];
+        long[] exactOut = new long[ROWS];
+
+        // 0 -> n would otherwise read row 1, column 0 without any error
+        short[] badTo = to.clone();
+        badTo[ROWS - 1] = (short) n;
+        assertThrows(IllegalArgumentException.class, () -> BatchConverter.convert(rates, amounts, from, badTo, out));
+        assertThrows(IllegalArgumentException.class,
+            () -> converter.convertParallel(rates, amounts, from, badTo, out));
+        assertThrows(IllegalArgumentException.class,
+            () -> converter.convertExactParallel(rates, minorUnits, from, badTo, exactOut, RoundingMode.HALF_EVEN));
+
+        short[] badFrom = from.clone();
+        badFrom[0] = -1;
+        assertThrows(IllegalArgumentException.class,
+            () -> BatchConverter.convertExact(rates, minorUnits, badFrom, to, exactOut, RoundingMode.HALF_EVEN));
+        assertThrows(IllegalArgumentException.class, () -> BatchConverter.convert(rates, amounts, 0, n, out));
+
+        // Nothing was written
+        for (int i = 0; i < ROWS; i++) {
+            assertEquals(0.0, out[i], 0.0);
+            assertEquals(0L, exactOut[i]);
+        }
+    }
+}
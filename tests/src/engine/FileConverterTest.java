@@ -0,0 +1,93 @@
+package engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileConverterTest {
+
+    private static final RateTable RATES = RateTable.fromBaseRates(1,
+        new String[] {"USD", "EUR", "JPY", "KWD"}, new double[] {1.0, 0.85, 110.0, 0.3});
+
+    private Path input;
+    private Path output;
+
+    @BeforeEach
+    void createFiles() throws IOException {
+        input = Files.createTempFile("convert-in", ".csv");
+        output = Files.createTempFile("convert-out", ".csv");
+    }
+
+    @AfterEach
+    void deleteFiles() throws IOException {
+        Files.deleteIfExists(input);
+        Files.deleteIfExists(output);
+    }
+
+    private String convert(String csv, boolean skipHeader) throws IOException {
+        Files.write(input, csv.getBytes(StandardCharsets.US_ASCII));
+        new FileConverter(RATES, FileConverter.Layout.csv(',', 0, 1, 2), skipHeader).convert(input, output);
+        return new String(Files.readAllBytes(output), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    void roundTripsACsvWithHeaderBlankLinesAndAPartialLastLine() throws IOException {
+        String csv = "amount,from,to\r\n"
+            + "100,USD,EUR\r\n"
+            + "\r\n"
+            + "5,XYZ,EUR\n"
+            + "\n"
+            + "1000,JPY,USD";  // no final newline
+        Files.write(input, csv.getBytes(StandardCharsets.US_ASCII));
+        // A small window makes rows straddle mappings
+        FileConverter.Result result = new FileConverter(RATES, FileConverter.Layout.csv(',', 0, 1, 2), true, 16)
+            .convert(input, output);
+
+        assertEquals(2, result.getRows());
+        assertEquals(1, result.getRejected(), "only the unknown currency; blank lines are skipped");
+        assertEquals("100,USD,EUR,85.00\n1000,JPY,USD,9.09\n",
+            new String(Files.readAllBytes(output), StandardCharsets.US_ASCII));
+        assertEquals("1000,JPY,USD,9.09\n", convert("1000,JPY,USD", false));
+        assertEquals("", convert("amount,from,to", true));
+    }
+
+    @Test
+    void mainConvertsAgainstTheConfiguredRates() throws IOException {
+        Path ratesFile = Files.createTempFile("rates", ".csv");
+        try {
+            Files.write(ratesFile, "USD,EUR,0.5\nUSD,GBP,0.25\n".getBytes(StandardCharsets.US_ASCII));
+            System.setProperty("rates.file", ratesFile.toString());
+            RateTable rates = FileConverter.currentRates();
+            assertEquals(2.0, rates.rate(rates.require("GBP"), rates.require("EUR")), 1e-12);
+            assertEquals(-1, rates.indexOf("JPY"));
+        } finally {
+            System.clearProperty("rates.file");
+            Files.delete(ratesFile);
+        }
+    }
+
+    @Test
+    void writesExactResultsWithTheTargetCurrencysDecimals() throws IOException {
+        String converted = convert("10.10,USD,EUR\n10.10,USD,JPY\n10.10,USD,KWD\n1000,JPY,USD\n", false);
+        // 8.585 EUR is a tie that double arithmetic rounds down by accident; HALF_EVEN gives 8.58
+        assertEquals("10.10,USD,EUR,8.58\n10.10,USD,JPY,1111\n10.10,USD,KWD,3.030\n1000,JPY,USD,9.09\n",
+            converted);
+    }
+
+    @Test
+    void rejectsAmountsWithMoreDecimalsThanTheCurrency() throws IOException {
+        Files.write(input, "1.5,JPY,USD\n10.001,USD,EUR\n1,USD,EUR\n".getBytes(StandardCharsets.US_ASCII));
+        FileConverter.Result result = new FileConverter(RATES, FileConverter.Layout.csv(',', 0, 1, 2), false)
+            .convert(input, output);
+        assertEquals(1, result.getRows());
+        assertEquals(2, result.getRejected());
+        assertEquals("1,USD,EUR,0.85\n", new String(Files.readAllBytes(output), StandardCharsets.US_ASCII));
+    }
+}
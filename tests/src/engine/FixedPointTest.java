@@ -0,0 +1,83 @@
+package engine;
+
+import model.Money;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FixedPointTest {
+
+    @Test
+    void roundsTiesAccordingToTheMode() {
+        // 25 / 10 = 2.5 and -25 / 10 = -2.5
+        assertEquals(2, FixedPoint.mulDiv(5, 5, 10, RoundingMode.HALF_EVEN));
+        assertEquals(3, FixedPoint.mulDiv(5, 5, 10, RoundingMode.HALF_UP));
+        assertEquals(2, FixedPoint.mulDiv(5, 5, 10, RoundingMode.HALF_DOWN));
+        assertEquals(3, FixedPoint.mulDiv(5, 5, 10, RoundingMode.UP));
+        assertEquals(2, FixedPoint.mulDiv(5, 5, 10, RoundingMode.DOWN));
+        assertEquals(-2, FixedPoint.mulDiv(-5, 5, 10, RoundingMode.HALF_EVEN));
+        assertEquals(-3, FixedPoint.mulDiv(-5, 5, 10, RoundingMode.HALF_UP));
+        assertEquals(-2, FixedPoint.mulDiv(-5, 5, 10, RoundingMode.CEILING));
+        assertEquals(-3, FixedPoint.mulDiv(-5, 5, 10, RoundingMode.FLOOR));
+        assertEquals(4, FixedPoint.mulDiv(7, 5, 10, RoundingMode.HALF_EVEN)); // 3.5 -> 4
+        assertEquals(3, FixedPoint.mulDiv(5, 6, 10, RoundingMode.UNNECESSARY));
+        assertThrows(ArithmeticException.class, () -> FixedPoint.mulDiv(5, 5, 10, RoundingMode.UNNECESSARY));
+    }
+
+    @Test
+    void matchesBigDecimalWhenTheProductNeedsMoreThan64Bits() {
+        SplittableRandom random = new SplittableRandom(11);
+        RoundingMode[] modes = {RoundingMode.HALF_EVEN, RoundingMode.HALF_UP, RoundingMode.FLOOR, RoundingMode.UP};
+        for (int i = 0; i < 10_000; i++) {
+            long a = random.nextLong(1L << 50) * (random.nextBoolean() ? 1 : -1);
+            long b = random.nextLong(1, 1L << 50);
+            long divisor = FixedPoint.pow10(12 + random.nextInt(4));
+            RoundingMode mode = modes[i % modes.length];
+
+            BigInteger exact = new BigDecimal(BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)))
+                .divide(BigDecimal.valueOf(divisor), 0, mode).toBigIntegerExact();
+            if (exact.bitLength() < 64) {
+                assertEquals(exact.longValueExact(), FixedPoint.mulDiv(a, b, divisor, mode), a + " * " + b);
+            }
+        }
+    }
+
+    @Test
+    void rejectsResultsThatDoNotFitALong() {
+        assertThrows(ArithmeticException.class,
+            () -> FixedPoint.mulDiv(Long.MAX_VALUE, Long.MAX_VALUE, 1, RoundingMode.DOWN));
+        assertThrows(ArithmeticException.class,
+            () -> FixedPoint.mulDiv(Long.MIN_VALUE, 1, 1, RoundingMode.DOWN));
+        assertEquals(Long.MAX_VALUE, FixedPoint.mulDiv(Long.MAX_VALUE, 10, 10, RoundingMode.UNNECESSARY));
+    }
+
+    @Test
+    void convertsMoneyBetweenCurrenciesWithDifferentMinorUnits() {
+        RateTable table = RateTable.fromBaseRates(1, new String[] {"USD", "EUR", "JPY", "KWD"},
+            new double[] {1.0, 0.85, 110.0, 0.3});
+        int eur = table.require("EUR");
+        int jpy = table.require("JPY");
+        int kwd = table.require("KWD");
+
+        // 10.10 USD * 0.85 = 8.585 EUR exactly, a tie at the cent; in double it is 8.584999...
+        Money usd = Money.parse("USD", "10.10");
+        assertTrue(10.10 * 0.85 < 8.585);
+        assertEquals(Money.parse("EUR", "8.58"), table.convert(usd, eur, RoundingMode.HALF_EVEN));
+        assertEquals(Money.parse("EUR", "8.59"), table.convert(usd, eur, RoundingMode.HALF_UP));
+        // Two decimals in, none out, then three
+        assertEquals(Money.ofMinor("JPY", 1111), table.convert(usd, jpy, RoundingMode.HALF_EVEN));
+        assertEquals(Money.parse("KWD", "3.030"), table.convert(usd, kwd, RoundingMode.HALF_EVEN));
+        // Cross rate from the decimal quotes: 1 EUR = 110 / 0.85 JPY
+        assertEquals(Money.ofMinor("JPY", 129_412), table.convert(Money.parse("EUR", "1000.00"), jpy,
+            RoundingMode.HALF_EVEN));
+
+        assertThrows(ArithmeticException.class, () -> Money.parse("USD", "1.005"));
+        assertEquals(Money.ofMinor("USD", 101), Money.of("USD", new BigDecimal("1.005"), RoundingMode.HALF_UP));
+        assertEquals(Money.ofMinor("USD", 100), Money.of("USD", new BigDecimal("1.005"), RoundingMode.HALF_EVEN));
+    }
+}
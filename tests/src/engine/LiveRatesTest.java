@@ -0,0 +1,79 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveRatesTest {
+
+    private static RateTable table(long version, double eur) {
+        return RateTable.fromBaseRates(version, new String[] {"USD", "EUR"}, new double[] {1.0, eur});
+    }
+
+    @Test
+    void rejectsSnapshotsThatAreNotNewer() {
+        LiveRates rates = new LiveRates(table(5, 0.8));
+        assertFalse(rates.publish(table(5, 0.9)));
+        assertFalse(rates.publish(table(4, 0.9)));
+        assertTrue(rates.publish(table(6, 0.9)));
+        assertEquals(6, rates.current().getVersion());
+    }
+
+    @Test
+    void concurrentWritersGetConsecutiveVersionsAndOrderedNotifications() throws InterruptedException {
+        LiveRates rates = new LiveRates(table(1, 0.8));
+        List<Long> seen = Collections.synchronizedList(new ArrayList<>());
+        rates.addListener(table -> seen.add(table.getVersion()));
+
+        int writers = 4;
+        int perWriter = 500;
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    rates.publishNext(version -> table(version, 0.8 + version * 1e-6));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1 + writers * perWriter, rates.current().getVersion());
+        assertEquals(writers * perWriter, seen.size());
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(2 + i, seen.get(i));
+        }
+    }
+
+    @Test
+    void refreshRepublishesUnderAFreeVersionWhenItsVersionWasTaken() throws Exception {
+        LiveRates rates = new LiveRates(table(1, 0.8));
+        RateSource source = new RateSource() {
+            @Override
+            public RateTable load(long version) {
+                // Another writer publishes while this source is loading
+                rates.publish(table(version, 0.95));
+                return table(version, 0.9);
+            }
+
+            @Override
+            public String getName() {
+                return "test";
+            }
+        };
+
+        RateRefresher refresher = new RateRefresher(source, rates, 0);
+        RateTable published = refresher.refresh();
+        assertEquals(3, published.getVersion());
+        assertSame(published, rates.current());
+        assertEquals(0.9, published.rate(0, 1), 0.0);
+        refresher.close();
+    }
+}
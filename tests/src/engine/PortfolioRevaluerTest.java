@@ -0,0 +1,83 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PortfolioRevaluerTest {
+
+    private static final int POSITIONS = 300_000;
+    private static final int CHUNK = 1024;
+
+    @Test
+    void resultIsBitForBitTheSameOnAnyPool() {
+        RateTable rates = DefaultRates.table();
+        int usd = rates.require("USD");
+        SplittableRandom random = new SplittableRandom(7);
+        double[] amounts = new double[POSITIONS];
+        short[] currencies = new short[POSITIONS];
+        for (int i = 0; i < POSITIONS; i++) {
+            // Magnitudes from cents to billions, both signs, so the order of additions matters
+            amounts[i] = random.nextDouble(-1.0, 1.0) * Math.pow(10, random.nextInt(-2, 10));
+            currencies[i] = (short) random.nextInt(rates.size());
+        }
+
+        PortfolioRevaluer.Revaluation sequential = new PortfolioRevaluer(ForkJoinPool.commonPool(), CHUNK)
+            .revalueSequential(rates, amounts, currencies, usd);
+        for (int threads : new int[] {1, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                PortfolioRevaluer.Revaluation parallel = new PortfolioRevaluer(pool, CHUNK)
+                    .revalue(rates, amounts, currencies, usd);
+                assertSameBits(sequential.getTotal(), parallel.getTotal(), threads + " threads: total");
+                for (int c = 0; c < rates.size(); c++) {
+                    String label = threads + " threads: " + rates.code(c);
+                    assertSameBits(sequential.subtotal(c), parallel.subtotal(c), label);
+                    assertSameBits(sequential.reportedSubtotal(c), parallel.reportedSubtotal(c), label);
+                    assertEquals(sequential.positionCount(c), parallel.positionCount(c), label);
+                }
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        long positions = 0;
+        for (int c = 0; c < rates.size(); c++) {
+            positions += sequential.positionCount(c);
+        }
+        assertEquals(POSITIONS, positions);
+    }
+
+    @Test
+    void currencyWithoutARateToTheReportingCurrencyMakesTheTotalNaN() {
+        String[] codes = {"USD", "EUR", "GBP"};
+        // GBP has no rate to USD
+        RateTable rates = RateTable.fromMatrix(1, codes, new double[] {
+            1.0, 0.85, 0.73,
+            1 / 0.85, 1.0, 0.73 / 0.85,
+            Double.NaN, 0.85 / 0.73, 1.0});
+        double[] amounts = {100.0, 200.0, 300.0, 50.0};
+        short[] currencies = {0, 1, 2, 1};
+
+        PortfolioRevaluer.Revaluation result = new PortfolioRevaluer(ForkJoinPool.commonPool(), CHUNK)
+            .revalueSequential(rates, amounts, currencies, 0);
+        assertEquals(100.0, result.reportedSubtotal(0), 0.0);
+        assertEquals(250.0 / 0.85, result.reportedSubtotal(1), 1e-9);
+        assertEquals(300.0, result.subtotal(2), 0.0);
+        assertTrue(Double.isNaN(result.reportedSubtotal(2)));
+        assertTrue(Double.isNaN(result.getTotal()));
+
+        // Without GBP positions the missing rate does not matter
+        PortfolioRevaluer.Revaluation withoutGbp = new PortfolioRevaluer(ForkJoinPool.commonPool(), CHUNK)
+            .revalueSequential(rates, new double[] {100.0, 200.0}, new short[] {0, 1}, 0);
+        assertEquals(100.0 + 200.0 / 0.85, withoutGbp.getTotal(), 1e-9);
+    }
+
+    private static void assertSameBits(double expected, double actual, String message) {
+        assertEquals(Double.doubleToLongBits(expected), Double.doubleToLongBits(actual),
+            message + ": " + expected + " vs " + actual);
+    }
+}
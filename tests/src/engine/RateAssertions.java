@@ -0,0 +1,31 @@
+package engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Assertions on {@link RateTable}s shared by the engine, history and
+ * replication tests.
+ */
+public final class RateAssertions {
+
+    private RateAssertions() {}
+
+    /**
+     * Checks that both tables have the same currencies and, for every pair,
+     * bit-identical double rates and identical fixed-point rates. Currencies
+     * are matched by code, so their order may differ.
+     */
+    public static void assertSameRates(RateTable expected, RateTable actual) {
+        assertEquals(expected.size(), actual.size());
+        int n = expected.size();
+        for (int from = 0; from < n; from++) {
+            int f = actual.require(expected.code(from));
+            for (int to = 0; to < n; to++) {
+                int t = actual.require(expected.code(to));
+                String pair = expected.code(from) + "->" + expected.code(to);
+                assertEquals(expected.rate(from, to), actual.rate(f, t), 0.0, pair);
+                assertEquals(expected.fixedRate(from, to), actual.fixedRate(f, t), pair);
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static engine.RateAssertions.assertSameRates;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateHistoryStoreTest {
+
+    private static final String[] CODES = {"USD", "EUR", "GBP"};
+
+    private Path dir;
+    private Path base;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("history");
+        base = dir.resolve("rates");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        for (String suffix : new String[] {".idx", ".dat"}) {
+            Files.deleteIfExists(Paths.get(base + suffix));
+        }
+        Files.delete(dir);
+    }
+
+    /** EUR->GBP is quoted on its own, so it is not the ratio of the USD rates. */
+    private static RateTable triangulated(long version, double usdEur) {
+        TriangulationEngine engine = new TriangulationEngine(1e-9);
+        engine.setPair("USD", "EUR", usdEur);
+        engine.setPair("USD", "GBP", 0.7);
+        engine.setPair("EUR", "GBP", 0.9);
+        return engine.snapshot(version);
+    }
+
+    @Test
+    void storesTriangulatedTablesExactly() throws IOException {
+        RateTable published = triangulated(7, 0.8);
+        try (RateHistoryStore store = RateHistoryStore.open(base, CODES)) {
+            store.append(1_000L, published);
+
+            int eur = store.indexOf("EUR");
+            int gbp = store.indexOf("GBP");
+            assertEquals(0.9, store.rate(0, eur, gbp), 0.0);
+            assertEquals(0.9 * 100, store.convertAsOf(100, "EUR", "GBP", 1_500L), 0.0);
+            assertTrue(Double.isNaN(store.convertAsOf(100, "EUR", "GBP", 999L)));
+
+            RateTable restored = store.snapshotAt(0);
+            assertEquals(7, restored.getVersion());
+            assertSameRates(published, restored);
+        }
+    }
+
+    @Test
+    void addsCurrenciesThatAppearLater() throws IOException {
+        RateTable withChf = RateTable.fromBaseRates(2, new String[] {"USD", "EUR", "GBP", "CHF"},
+            new double[] {1.0, 0.8, 0.7, 0.9});
+        try (RateHistoryStore store = RateHistoryStore.open(base, CODES)) {
+            store.append(1_000L, triangulated(1, 0.8));
+            store.append(2_000L, withChf);
+        }
+
+        try (RateHistoryStore store = RateHistoryStore.open(base, null)) {
+            assertArrayEquals(new String[] {"USD", "EUR", "GBP", "CHF"}, store.codes());
+            int usd = store.indexOf("USD");
+            int chf = store.indexOf("CHF");
+            assertTrue(Double.isNaN(store.rate(0, usd, chf)));
+            assertEquals(0.9, store.rate(1, usd, chf), 1e-15);
+            assertEquals(-1, store.snapshotAt(0).indexOf("CHF"));
+            assertSameRates(withChf, store.snapshotAt(1));
+        }
+    }
+
+    @Test
+    void storesOnlyTheCrossesTheBaseRatesDoNotImply() throws IOException {
+        RateTable defaults = DefaultRates.table();
+        Path data = Paths.get(base + ".dat");
+        try (RateHistoryStore store = RateHistoryStore.open(base, CODES)) {
+            // Header, one presence word and a base rate per code; no cross is stored
+            store.append(1_000L, defaults);
+            long baseRecord = 8 + 8 + 8L * defaults.size();
+            assertEquals(baseRecord, Files.size(data));
+
+            // EUR->GBP and GBP->EUR are quoted on their own; everything else goes through USD
+            store.append(2_000L, triangulated(2, 0.8));
+            assertEquals(baseRecord + 8 + 8 + 8L * defaults.size() + 40, Files.size(data));
+
+            RateTable gap = RateTable.fromMatrix(3, CODES, new double[] {
+                1.0, 0.8, 0.7,
+                1.25, 1.0, Double.NaN,
+                1 / 0.7, Double.NaN, 1.0});
+            store.append(3_000L, gap);
+            assertTrue(Double.isNaN(store.rate(2, store.indexOf("EUR"), store.indexOf("GBP"))));
+
+            assertSameRates(defaults, store.snapshotAt(0));
+            assertSameRates(triangulated(2, 0.8), store.snapshotAt(1));
+            assertSameRates(gap, store.snapshotAt(2));
+        }
+    }
+
+    @Test
+    void rejectsCurrenciesBeyondTheCodeCapacity() throws IOException {
+        try (RateHistoryStore store = RateHistoryStore.open(base, CODES, 3)) {
+            RateTable withChf = RateTable.fromBaseRates(1, new String[] {"USD", "CHF"}, new double[] {1.0, 0.9});
+            assertThrows(IllegalArgumentException.class, () -> store.append(1_000L, withChf));
+            assertEquals(0, store.size());
+            assertEquals(-1, store.indexOf("CHF"));
+        }
+    }
+
+    @Test
+    void recordsPublishedSnapshotsInTheBackground() throws Exception {
+        LiveRates rates = new LiveRates(triangulated(1, 0.8));
+        try (RateHistoryStore store = RateHistoryStore.open(base, CODES)) {
+            store.recordFrom(rates);
+            for (int i = 0; i < 500; i++) {
+                rates.publishNext(version -> triangulated(version, 0.8 + version * 1e-6));
+            }
+            store.flush();
+
+            assertEquals(500, store.size());
+            List<Long> versions = new ArrayList<>();
+            store.scan(Long.MIN_VALUE, Long.MAX_VALUE, (record, timestamp, version) -> versions.add(version));
+            for (int i = 0; i < versions.size(); i++) {
+                assertEquals(2 + i, versions.get(i));
+            }
+            assertSameRates(rates.current(), store.snapshotAt(store.size() - 1));
+        }
+    }
+
+    @Test
+    void dropsATornTailOnOpen() throws IOException {
+        try (RateHistoryStore store = RateHistoryStore.open(base, CODES)) {
+            store.append(1_000L, triangulated(1, 0.8));
+            store.append(2_000L, triangulated(2, 0.81));
+        }
+        // A crash after the second index entry but before all of its record reached the disk
+        try (FileChannel data = FileChannel.open(Paths.get(base + ".dat"), StandardOpenOption.WRITE)) {
+            data.truncate(data.size() - 8);
+        }
+
+        try (RateHistoryStore store = RateHistoryStore.open(base, null)) {
+            assertEquals(1, store.size());
+            assertEquals(1, store.version(0));
+            store.append(3_000L, triangulated(3, 0.82));
+            assertEquals(0.82, store.rate(1, store.indexOf("USD"), store.indexOf("EUR")), 1e-15);
+        }
+    }
+}
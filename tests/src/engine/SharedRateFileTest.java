@@ -0,0 +1,169 @@
+package engine;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SharedRateFileTest {
+
+    private static final String[] CODES = {"USD", "EUR", "GBP", "JPY"};
+
+    private Path dir;
+    private Path path;
+
+    @BeforeEach
+    void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("shared");
+        path = dir.resolve("rates.snap");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        Files.deleteIfExists(path);
+        Files.delete(dir);
+    }
+
+    /** Every rate against USD is a multiple of the version, so a mixed read is easy to spot. */
+    private static RateTable table(long version) {
+        return RateTable.fromBaseRates(version, CODES, new double[] {1.0, version, 2.0 * version, 3.0 * version});
+    }
+
+    @Test
+    void copiesTheSnapshotAsPublished() throws IOException {
+        TriangulationEngine engine = new TriangulationEngine(1e-9);
+        engine.setPair("USD", "EUR", 0.8);
+        engine.setPair("USD", "GBP", 0.7);
+        engine.setPair("EUR", "GBP", 0.9);
+        RateTable published = engine.snapshot(5);
+
+        try (SharedRateFile writer = SharedRateFile.openWriter(path, 8);
+             SharedRateFile reader = SharedRateFile.openReader(path)) {
+            assertNull(reader.snapshot());
+            writer.publish(published);
+
+            RateTable copy = reader.snapshot();
+            assertEquals(5, copy.getVersion());
+            assertEquals(42, reader.snapshot(42).getVersion());
+            for (int from = 0; from < published.size(); from++) {
+                for (int to = 0; to < published.size(); to++) {
+                    int f = copy.require(published.code(from));
+                    int t = copy.require(published.code(to));
+                    assertEquals(published.rate(from, to), copy.rate(f, t), 0.0);
+                    assertEquals(published.fixedRate(from, to), copy.fixedRate(f, t));
+                }
+            }
+        }
+    }
+
+    @Test
+    void readersNeverSeeAHalfWrittenSnapshot() throws Exception {
+        try (SharedRateFile writer = SharedRateFile.openWriter(path, CODES.length);
+             SharedRateFile reader = SharedRateFile.openReader(path)) {
+            writer.publish(table(1));
+            AtomicBoolean running = new AtomicBoolean(true);
+            Thread publisher = new Thread(() -> {
+                for (long version = 2; running.get(); version++) {
+                    writer.publish(table(version));
+                }
+            });
+            publisher.start();
+            try {
+                long last = 0;
+                for (int i = 0; i < 20_000; i++) {
+                    RateTable copy = reader.snapshot();
+                    long version = copy.getVersion();
+                    assertTrue(version >= last, "versions went backwards");
+                    last = version;
+                    for (int c = 1; c < CODES.length; c++) {
+                        assertEquals(c * (double) version, copy.rate(0, c), 0.0, "mixed snapshot at " + version);
+                    }
+                }
+            } finally {
+                running.set(false);
+                publisher.join();
+            }
+        }
+    }
+
+    @Test
+    void recoversFromAWriterThatDiedMidPublish() throws IOException {
+        try (SharedRateFile reader = SharedRateFile.openReader(createWith(table(1)))) {
+            // Leave the sequence odd, as a writer killed between its two bumps would
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer sequence = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.nativeOrder());
+                channel.read(sequence, 16);
+                long odd = sequence.flip().getLong() | 1L;
+                sequence.clear();
+                sequence.putLong(odd).flip();
+                channel.write(sequence, 16);
+            }
+            assertThrows(IllegalStateException.class, reader::snapshot);
+
+            // The next writer redoes the write and readers carry on
+            try (SharedRateFile writer = SharedRateFile.openWriter(path, CODES.length)) {
+                writer.publish(table(2));
+            }
+            assertEquals(2, reader.snapshot().getVersion());
+            assertEquals(0, reader.getSequence() & 1);
+        }
+    }
+
+    @Test
+    void replacesAFileWithAnotherLayoutInsteadOfResizingIt() throws Exception {
+        createWith(table(1));
+        SharedRateFile oldReader = SharedRateFile.openReader(path);
+        SharedRateSource source = new SharedRateSource(oldReader, 5);
+        CountDownLatch followed = new CountDownLatch(1);
+        // The source may reopen the new file before anything is published to it
+        Closeable watch = source.watch(() -> {
+            try {
+                if (source.load(0).rate(0, 1) == 2.0) {
+                    followed.countDown();
+                }
+            } catch (IOException e) {
+                // nothing published yet
+            }
+        });
+        try {
+            try (SharedRateFile writer = SharedRateFile.openWriter(path, 2 * CODES.length)) {
+                assertTrue(oldReader.isReplaced());
+                // The old mapping is still readable and still holds the last snapshot
+                assertEquals(1, oldReader.snapshot().getVersion());
+
+                writer.publish(table(2));
+                assertTrue(followed.await(5, TimeUnit.SECONDS), "source did not follow the new file");
+                assertEquals(7, source.load(7).getVersion());
+                try (SharedRateFile newReader = SharedRateFile.openReader(path)) {
+                    assertEquals(2 * CODES.length, newReader.getCapacity());
+                }
+            }
+        } finally {
+            watch.close();
+        }
+        try (Stream<Path> entries = Files.list(dir)) {
+            assertEquals(1, entries.count(), "temporary file left behind");
+        }
+    }
+
+    private Path createWith(RateTable table) throws IOException {
+        try (SharedRateFile writer = SharedRateFile.openWriter(path, CODES.length)) {
+            writer.publish(table);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,195 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TickIngestorTest {
+
+    private static final String[] CODES = {"USD", "EUR", "GBP", "JPY"};
+
+    private static RateTable baseTable(long version) {
+        return RateTable.fromBaseRates(version, CODES, new double[] {1.0, 0.8, 0.7, 100.0});
+    }
+
+    private static double rate(RateTable table, String from, String to) {
+        return table.rate(table.require(from), table.require(to));
+    }
+
+    /** Waits until the ingestor has published at least the given number of snapshots. */
+    private static void awaitPublished(TickIngestor ingestor, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (ingestor.getPublished() < count) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting for a publish");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void keepsTheLastTickPerPair() {
+        LiveRates rates = new LiveRates(baseTable(1));
+        TickIngestor ingestor = new TickIngestor(rates, 1000);
+        assertTrue(ingestor.offer("USD", "EUR", 0.81));
+        assertTrue(ingestor.offer("USD", "EUR", 0.82));
+        assertTrue(ingestor.offer("USD", "EUR", 0.83));
+        ingestor.close();
+
+        assertEquals(0.83, rate(rates.current(), "USD", "EUR"), 1e-12);
+        // The tick moves every cross through EUR
+        assertEquals(0.7 / 0.83, rate(rates.current(), "EUR", "GBP"), 1e-12);
+        assertEquals(2, ingestor.getCoalesced());
+        assertEquals(1, ingestor.getPublished());
+    }
+
+    @Test
+    void olderTickDoesNotReplaceANewerOne() {
+        LiveRates rates = new LiveRates(baseTable(1));
+        TickIngestor ingestor = new TickIngestor(rates, 1000);
+        int usd = CodeIndex.keyOf("USD");
+        int eur = CodeIndex.keyOf("EUR");
+        assertTrue(ingestor.offer(usd, eur, 0.85, 2_000L));
+        assertTrue(ingestor.offer(usd, eur, 0.81, 1_000L));
+        ingestor.close();
+
+        assertEquals(0.85, rate(rates.current(), "USD", "EUR"), 1e-12);
+        assertEquals(1, ingestor.getOutOfOrder());
+    }
+
+    @Test
+    void rejectsUnknownCurrenciesAndInvalidRates() {
+        LiveRates rates = new LiveRates(baseTable(1));
+        TickIngestor ingestor = new TickIngestor(rates, 1000);
+        assertFalse(ingestor.offer("USD", "EUR", -1.0));
+        assertFalse(ingestor.offer("USD", "EUR", Double.POSITIVE_INFINITY));
+        assertFalse(ingestor.offer("USD", "US", 1.0));
+        assertTrue(ingestor.offer("USD", "XYZ", 1.0)); // known only when drained
+        ingestor.close();
+
+        assertEquals(4, ingestor.getRejected());
+        assertEquals(1, rates.current().getVersion());
+    }
+
+    @Test
+    void keepsCrossRatesOfANonTransitiveStartingTable() {
+        // EUR->GBP is quoted on its own and does not follow from the USD rates
+        TriangulationEngine quotes = new TriangulationEngine(1e-9);
+        quotes.setPair("USD", "EUR", 0.8);
+        quotes.setPair("USD", "GBP", 0.7);
+        quotes.setPair("USD", "JPY", 100.0);
+        quotes.setPair("EUR", "GBP", 0.9);
+        LiveRates rates = new LiveRates(quotes.snapshot(1));
+
+        TickIngestor ingestor = new TickIngestor(rates, 1000);
+        ingestor.offer("USD", "JPY", 101.0);
+        ingestor.close();
+
+        RateTable table = rates.current();
+        assertEquals(101.0, rate(table, "USD", "JPY"), 1e-12);
+        assertEquals(0.9, rate(table, "EUR", "GBP"), 1e-12);
+        assertEquals(0.8, rate(table, "USD", "EUR"), 1e-12);
+    }
+
+    @Test
+    void appliesTicksOnTopOfAnotherWritersSnapshot() throws InterruptedException {
+        LiveRates rates = new LiveRates(baseTable(1));
+        TickIngestor ingestor = new TickIngestor(rates, 1);
+        ingestor.offer("USD", "JPY", 101.0);
+        awaitPublished(ingestor, 1);
+
+        // A refresh moves EUR and adds CHF
+        rates.publishNext(version -> RateTable.fromBaseRates(version,
+            new String[] {"USD", "EUR", "GBP", "JPY", "CHF"}, new double[] {1.0, 0.9, 0.7, 100.0, 0.95}));
+
+        ingestor.offer("USD", "GBP", 0.75);
+        ingestor.offer("USD", "CHF", 0.96);
+        awaitPublished(ingestor, 2);
+        ingestor.close();
+
+        RateTable table = rates.current();
+        assertEquals(0.9, rate(table, "USD", "EUR"), 1e-12, "refreshed rate was reverted");
+        assertEquals(0.75, rate(table, "USD", "GBP"), 1e-12);
+        assertEquals(0.96, rate(table, "USD", "CHF"), 1e-12);
+        assertEquals(0, ingestor.getRejected());
+    }
+
+    @Test
+    void replaysARecordedFeed() throws IOException {
+        Path file = Files.createTempFile("ticks", ".bin");
+        try {
+            TickReplay.generate(file, 50_000, 1L);
+            assertEquals(50_000L * TickIngestor.TICK_BYTES, Files.size(file));
+
+            LiveRates rates = new LiveRates(DefaultRates.table());
+            // The ring holds the whole file, so nothing can be dropped
+            TickIngestor ingestor = new TickIngestor(rates, 1, 5, TimeUnit.MILLISECONDS, 1 << 16);
+            assertEquals(50_000, TickReplay.replay(file, ingestor, 0));
+            ingestor.close();
+
+            assertEquals(50_000, ingestor.getReceived());
+            assertEquals(0, ingestor.getRejected());
+            assertEquals(0, ingestor.getDropped());
+            assertTrue(ingestor.getPublished() >= 1);
+
+            // The last tick in the file for a pair is the rate that was published
+            ByteBuffer last = lastTickFor(file, "USD", "EUR");
+            assertEquals(last.getDouble(8), rate(rates.current(), "USD", "EUR"), 1e-12);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void ingestsPartialTicksAcrossReads() throws IOException {
+        ByteBuffer feed = ByteBuffer.allocate(TickIngestor.TICK_BYTES * 2);
+        TickIngestor.encode(feed, "USD", "EUR", 0.86, 1L);
+        TickIngestor.encode(feed, "USD", "GBP", 0.72, 2L);
+        byte[] bytes = feed.array();
+
+        LiveRates rates = new LiveRates(baseTable(1));
+        TickIngestor ingestor = new TickIngestor(rates, 1000);
+        // One byte per read, so every tick is split across reads
+        InputStream trickle = new InputStream() {
+            int position;
+
+            @Override
+            public int read() {
+                return position < bytes.length ? bytes[position++] & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (position >= bytes.length) {
+                    return -1;
+                }
+                b[off] = bytes[position++];
+                return 1;
+            }
+        };
+        assertEquals(2, ingestor.ingest(Channels.newChannel(trickle)));
+        ingestor.close();
+
+        assertEquals(0.86, rate(rates.current(), "USD", "EUR"), 1e-12);
+        assertEquals(0.72, rate(rates.current(), "USD", "GBP"), 1e-12);
+    }
+
+    private static ByteBuffer lastTickFor(Path file, String from, String to) throws IOException {
+        ByteBuffer all = ByteBuffer.wrap(Files.readAllBytes(file));
+        for (int p = all.capacity() - TickIngestor.TICK_BYTES; p >= 0; p -= TickIngestor.TICK_BYTES) {
+            if (CodeIndex.keyOf(new String(all.array(), p, 3)) == CodeIndex.keyOf(from)
+                    && CodeIndex.keyOf(new String(all.array(), p + 3, 3)) == CodeIndex.keyOf(to)) {
+                all.position(p);
+                return all.slice();
+            }
+        }
+        fail("no tick for " + from + to);
+        return null;
+    }
+}
@@ -0,0 +1,142 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static engine.RateAssertions.assertSameRates;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TriangulationEngineTest {
+
+    private static final String[] CODES = {
+        "USD", "EUR", "GBP", "JPY", "CHF", "CAD", "AUD", "NZD", "SEK", "NOK", "DKK", "PLN"
+    };
+
+    @Test
+    void derivesCrossRatesThroughTheFewestQuotes() {
+        TriangulationEngine engine = new TriangulationEngine(1e-9);
+        engine.setPair("USD", "EUR", 0.8);
+        engine.setPair("USD", "JPY", 100.0);
+        engine.setPair("EUR", "GBP", 0.9);
+
+        RateTable table = engine.snapshot(1);
+        int usd = table.require("USD");
+        int eur = table.require("EUR");
+        int jpy = table.require("JPY");
+        int gbp = table.require("GBP");
+        assertEquals(125.0, table.rate(eur, jpy), 1e-9);
+        assertEquals(0.72, table.rate(usd, gbp), 1e-12);
+        assertEquals(1.0 / 0.72, table.rate(gbp, usd), 1e-12);
+        assertEquals(125_000_000_000_000L, table.fixedRate(eur, jpy));
+    }
+
+    @Test
+    void disconnectedPairsHaveNoRate() {
+        TriangulationEngine engine = new TriangulationEngine(1e-9);
+        engine.setPair("USD", "EUR", 0.8);
+        engine.setPair("GBP", "JPY", 150.0);
+
+        RateTable table = engine.snapshot(1);
+        int usd = table.require("USD");
+        int jpy = table.require("JPY");
+        assertFalse(table.hasRate(usd, jpy));
+        assertEquals(0L, table.fixedRate(usd, jpy));
+        assertThrows(ArithmeticException.class,
+            () -> table.convertMinor(100, usd, jpy, java.math.RoundingMode.HALF_EVEN));
+    }
+
+    @Test
+    void incrementalUpdatesMatchAFullRebuild() {
+        SplittableRandom random = new SplittableRandom(7);
+        List<String[]> pairs = randomConnectedPairs(random);
+        double[] rates = new double[pairs.size()];
+
+        TriangulationEngine incremental = new TriangulationEngine(1e-9);
+        for (int i = 0; i < pairs.size(); i++) {
+            rates[i] = 0.1 + random.nextDouble() * 10.0;
+            incremental.setPair(pairs.get(i)[0], pairs.get(i)[1], rates[i]);
+        }
+        incremental.snapshot(1);
+
+        for (int round = 0; round < 200; round++) {
+            // Move a few existing quotes; the topology stays the same, so only updateEdge runs
+            for (int k = 0; k < 1 + random.nextInt(4); k++) {
+                int i = random.nextInt(pairs.size());
+                rates[i] *= 1.0 + (random.nextDouble() - 0.5) * 1e-3;
+                incremental.setPair(pairs.get(i)[0], pairs.get(i)[1], rates[i]);
+            }
+            if (round % 10 != 0) {
+                continue;
+            }
+
+            TriangulationEngine rebuilt = new TriangulationEngine(1e-9);
+            for (int i = 0; i < pairs.size(); i++) {
+                rebuilt.setPair(pairs.get(i)[0], pairs.get(i)[1], rates[i]);
+            }
+            assertSameRates(rebuilt.snapshot(round), incremental.snapshot(round));
+        }
+    }
+
+    @Test
+    void removingOneSideOfATwoWayQuoteKeepsTheEdge() {
+        TriangulationEngine engine = new TriangulationEngine(1e-9);
+        engine.setPair("USD", "EUR", 0.8);
+        engine.setPair("EUR", "USD", 1.3);
+        engine.setPair("EUR", "GBP", 0.9);
+        engine.snapshot(1);
+
+        engine.removePair("USD", "EUR");
+        TriangulationEngine rebuilt = new TriangulationEngine(1e-9);
+        rebuilt.setPair("EUR", "USD", 1.3);
+        rebuilt.setPair("EUR", "GBP", 0.9);
+
+        RateTable a = engine.snapshot(2);
+        RateTable b = rebuilt.snapshot(2);
+        for (String from : new String[] {"USD", "EUR", "GBP"}) {
+            for (String to : new String[] {"USD", "EUR", "GBP"}) {
+                assertEquals(b.rate(b.require(from), b.require(to)), a.rate(a.require(from), a.require(to)), 1e-15,
+                    from + "->" + to);
+                assertEquals(b.fixedRate(b.require(from), b.require(to)), a.fixedRate(a.require(from), a.require(to)),
+                    from + "->" + to);
+            }
+        }
+    }
+
+    @Test
+    void reportsInconsistentTwoWayQuotes() {
+        TriangulationEngine engine = new TriangulationEngine(1e-9);
+        engine.setPair("USD", "EUR", 0.8);
+        engine.setPair("EUR", "USD", 1.3); // 0.8 * 1.3 = 1.04
+
+        // Reported once from each side of the pair
+        List<TriangulationEngine.ArbitrageCycle> cycles = engine.findArbitrage();
+        assertEquals(2, cycles.size());
+        for (TriangulationEngine.ArbitrageCycle cycle : cycles) {
+            assertEquals(1.04, cycle.getGain(), 1e-12);
+            String[] path = cycle.getPath();
+            assertEquals(path[0], path[path.length - 1]);
+        }
+
+        engine.setPair("EUR", "USD", 1.25);
+        assertTrue(engine.findArbitrage().isEmpty());
+    }
+
+    /** A spanning tree over every code plus some extra edges, in a fixed order. */
+    private static List<String[]> randomConnectedPairs(SplittableRandom random) {
+        List<String[]> pairs = new ArrayList<>();
+        for (int i = 1; i < CODES.length; i++) {
+            pairs.add(new String[] {CODES[random.nextInt(i)], CODES[i]});
+        }
+        for (int extra = 0; extra < CODES.length; extra++) {
+            int a = random.nextInt(CODES.length);
+            int b = random.nextInt(CODES.length);
+            if (a != b) {
+                pairs.add(new String[] {CODES[a], CODES[b]});
+            }
+        }
+        return pairs;
+    }
+}
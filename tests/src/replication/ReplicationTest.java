@@ -0,0 +1,139 @@
+package replication;
+
+import engine.LiveRates;
+import engine.RateTable;
+import model.Currency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static engine.RateAssertions.assertSameRates;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicationTest {
+
+    private ReplicationPublisher publisher;
+
+    @AfterEach
+    void closePublisher() throws IOException {
+        if (publisher != null) {
+            publisher.close();
+        }
+    }
+
+    private static LiveRates emptyRates() {
+        return new LiveRates(RateTable.fromBaseRates(0, new String[] {"USD"}, new double[] {1.0}));
+    }
+
+    private static List<Currency> pairs(double usdEur, boolean withJpy) {
+        List<Currency> pairs = new ArrayList<>();
+        pairs.add(new Currency(1, "USD", "EUR", usdEur));
+        pairs.add(new Currency(2, "EUR", "GBP", 0.9));
+        pairs.add(withJpy ? new Currency(3, "USD", "JPY", 110.0) : new Currency(3, "USD", "GBP", 0.7));
+        return pairs;
+    }
+
+    @Test
+    void subscriberFollowsDeltasAndCheckpoints() throws Exception {
+        LiveRates local = emptyRates();
+        LiveRates replica = emptyRates();
+        publisher = new ReplicationPublisher(0, local, 10, 64);
+        publisher.update(pairs(0.8, false));
+
+        try (ReplicationSubscriber subscriber = new ReplicationSubscriber("127.0.0.1", publisher.getPort(), replica)) {
+            subscriber.start();
+            assertTrue(subscriber.awaitVersion(1, 5000));
+            assertEquals(1, subscriber.getCheckpoints());
+
+            for (int i = 1; i <= 40; i++) {
+                // Swap GBP for JPY halfway, so pairs are removed and added
+                assertTrue(publisher.update(pairs(0.8 + i * 1e-7, i > 20)));
+            }
+            assertFalse(publisher.update(pairs(0.8 + 40 * 1e-7, true)), "nothing changed");
+            assertTrue(subscriber.awaitVersion(41, 5000));
+
+            assertEquals(41, publisher.getVersion());
+            assertTrue(subscriber.getDeltas() > 0);
+            assertTrue(subscriber.getCheckpoints() > 1, "periodic checkpoints");
+            assertSameRates(local.current(), replica.current());
+            assertTrue(replica.current().indexOf("JPY") >= 0);
+        }
+    }
+
+    @Test
+    void reconnectingSubscriberCatchesUpFromTheDeltaHistory() throws Exception {
+        publisher = new ReplicationPublisher(0, null, 100, 4);
+        for (int i = 1; i <= 3; i++) {
+            publisher.update(pairs(0.8 + i * 1e-7, false));
+        }
+
+        long epoch;
+        try (Frames fresh = new Frames(0, 0)) {
+            epoch = fresh.expect(Wire.HELLO, 3).getLong();
+            fresh.expect(Wire.CHECKPOINT, 3);
+        }
+        publisher.update(pairs(0.9, false));
+        publisher.update(pairs(0.9, true));
+
+        try (Frames behind = new Frames(epoch, 3)) {
+            behind.expect(Wire.HELLO, 5);
+            behind.expect(Wire.DELTA, 4);
+            behind.expect(Wire.DELTA, 5);
+        }
+        assertEquals(1, publisher.getCatchUps());
+
+        // Further behind than the history, or from another publisher run
+        try (Frames tooFar = new Frames(epoch, 0)) {
+            tooFar.expect(Wire.HELLO, 5);
+            tooFar.expect(Wire.CHECKPOINT, 5);
+        }
+        try (Frames otherRun = new Frames(epoch + 2, 5)) {
+            otherRun.expect(Wire.HELLO, 5);
+            otherRun.expect(Wire.CHECKPOINT, 5);
+        }
+        assertEquals(1, publisher.getCatchUps());
+    }
+
+    /** A bare subscriber connection that reads frames one at a time. */
+    private final class Frames implements AutoCloseable {
+        private final Socket socket;
+        private final DataInputStream in;
+
+        Frames(long epoch, long version) throws IOException {
+            socket = new Socket("127.0.0.1", publisher.getPort());
+            socket.setSoTimeout(5000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(Wire.MAGIC);
+            out.writeLong(epoch);
+            out.writeLong(version);
+            out.flush();
+            in = new DataInputStream(socket.getInputStream());
+        }
+
+        /** Reads the next frame, skipping heartbeats, and returns its body. */
+        ByteBuffer expect(byte type, long version) throws IOException {
+            ByteBuffer frame;
+            do {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                frame = ByteBuffer.wrap(bytes);
+            } while (frame.get(0) == Wire.HEARTBEAT);
+            assertEquals(type, frame.get());
+            assertEquals(version, frame.getLong());
+            frame.getLong(); // published at
+            return frame;
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package replication;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WireTest {
+
+    /** Positions a frame at its body, after checking its header. */
+    private static ByteBuffer body(byte[] frame, byte type, long version) {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        assertEquals(frame.length - Integer.BYTES, buffer.getInt());
+        assertEquals(type, buffer.get());
+        assertEquals(version, buffer.getLong());
+        buffer.getLong(); // published at
+        return buffer;
+    }
+
+    @Test
+    void deltasRoundTripBitForBit() throws IOException {
+        Map<String, Double> before = new LinkedHashMap<>();
+        before.put("USDEUR", 0.8);
+        before.put("USDGBP", 0.7);
+        before.put("USDJPY", 110.0);
+        before.put("EURCHF", 0.95);
+        before.put("USDCHF", 1e-300);
+
+        Map<String, Double> changes = new LinkedHashMap<>();
+        changes.put("USDEUR", Math.nextUp(0.8));  // last mantissa bit
+        changes.put("USDGBP", 0.7000001);         // small move
+        changes.put("USDJPY", 0.0091);            // new exponent: all eight bytes
+        changes.put("EURCHF", null);
+        changes.put("GBPCHF", 1.1);
+        changes.put("USDCHF", 1e-300);            // unchanged still round-trips
+
+        byte[] frame = Wire.delta(42, before, changes);
+        ByteBuffer body = body(frame, Wire.DELTA, 42);
+        Map<String, Double> decoded = Wire.readDelta(body, before);
+        assertFalse(body.hasRemaining());
+        assertEquals(changes.keySet(), decoded.keySet());
+        for (Map.Entry<String, Double> change : changes.entrySet()) {
+            Double expected = change.getValue();
+            Double actual = decoded.get(change.getKey());
+            if (expected == null) {
+                assertNull(actual, change.getKey());
+            } else {
+                assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual), change.getKey());
+            }
+        }
+    }
+
+    @Test
+    void smallMovesNeedOnlyTheChangedBytes() {
+        Map<String, Double> before = Collections.singletonMap("USDEUR", 0.8);
+        int oneBit = Wire.delta(1, before, Collections.singletonMap("USDEUR", Math.nextUp(0.8))).length;
+        int newPair = Wire.delta(1, Collections.emptyMap(), Collections.singletonMap("USDEUR", 0.8)).length;
+        assertEquals(newPair - Double.BYTES + 1, oneBit);
+    }
+
+    @Test
+    void rejectsDeltasItCannotApply() {
+        byte[] frame = Wire.delta(1, Collections.singletonMap("USDEUR", 0.8),
+            Collections.singletonMap("USDEUR", 0.81));
+        assertThrows(IOException.class,
+            () -> Wire.readDelta(body(frame, Wire.DELTA, 1), Collections.emptyMap()));
+
+        ByteBuffer badTag = ByteBuffer.allocate(Integer.BYTES + 7);
+        badTag.putInt(1).put("USDEUR".getBytes()).put((byte) 11).flip();
+        assertThrows(IOException.class, () -> Wire.readDelta(badTag, Collections.emptyMap()));
+    }
+
+    @Test
+    void checkpointsRoundTrip() {
+        Map<String, Double> rates = new LinkedHashMap<>();
+        rates.put("USDEUR", 0.8);
+        rates.put("EURGBP", 0.9);
+        ByteBuffer body = body(Wire.checkpoint(7, rates), Wire.CHECKPOINT, 7);
+        assertEquals(rates, Wire.readCheckpoint(body));
+        assertFalse(body.hasRemaining());
+    }
+}
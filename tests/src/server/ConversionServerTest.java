@@ -0,0 +1,163 @@
+package server;
+
+import audit.AuditJournal;
+import audit.AuditRecord;
+import audit.AuditUsers;
+import dao.UserDAO;
+import engine.LiveRates;
+import engine.RateTable;
+import model.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversionServerTest {
+
+    private static final User ALICE = new User(7, "alice", null);
+
+    private Path journalPath;
+    private AuditJournal journal;
+    private ConversionServer server;
+
+    /** A user table holding only {@link #ALICE}. */
+    private static final class OneUser implements UserDAO {
+        @Override
+        public List<User> getAllUsers() {
+            return Collections.singletonList(ALICE);
+        }
+
+        @Override
+        public User getUser(int id) {
+            return id == ALICE.getId() ? ALICE : null;
+        }
+
+        @Override
+        public User getUserByUsername(String username) {
+            return ALICE.getUsername().equals(username) ? ALICE : null;
+        }
+
+        @Override
+        public int addUser(User user) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean deleteUser(int id) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        journalPath = Files.createTempFile("server-audit", ".jnl");
+        Files.delete(journalPath);
+        journal = AuditJournal.open(journalPath);
+        LiveRates rates = new LiveRates(RateTable.fromBaseRates(3,
+            new String[] {"USD", "EUR", "JPY"}, new double[] {1.0, 0.85, 110.0}));
+        server = new ConversionServer(rates, 0, journal, new AuditUsers(new OneUser()));
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        server.stop();
+        journal.close();
+        Files.deleteIfExists(journalPath);
+    }
+
+    @Test
+    void auditedRequestsNeedAKnownUser() throws Exception {
+        assertEquals(400, get("/convert?amount=100&from=USD&to=EUR", null).status);
+        assertEquals(400, get("/convert?amount=100&from=USD&to=EUR", "seven").status);
+        assertEquals(403, get("/convert?amount=100&from=USD&to=EUR", "0").status);
+        assertEquals(403, post("/batch", "100,USD,EUR\n", "8").status);
+
+        assertEquals(200, get("/convert?amount=100&from=USD&to=EUR", "7").status);
+        assertEquals(200, post("/batch", "100,USD,EUR\n5,EUR,JPY\n", "7").status);
+        journal.flush();
+        List<AuditRecord> history = journal.history(7);
+        assertEquals(3, history.size());
+        assertTrue(journal.history(0).isEmpty());
+        // The exact minor units converted and returned
+        assertEquals(10_000, history.get(0).getAmountMinor());
+        assertEquals(8_500, history.get(0).getResultMinor());
+        assertEquals("5.00 EUR", history.get(2).getAmount().toString());
+        assertEquals("647 JPY", history.get(2).getResult().toString());
+    }
+
+    @Test
+    void convertsInExactMinorUnits() throws Exception {
+        // 10.10 USD * 0.85 = 8.585 EUR, which a double product puts just below the tie
+        Response single = get("/convert?amount=10.10&from=USD&to=EUR", "7");
+        assertEquals(200, single.status);
+        assertTrue(single.body.contains("\"amount\":10.10,\"result\":8.58,"), single.body);
+
+        assertEquals(400, get("/convert?amount=10.101&from=USD&to=EUR", "7").status);
+        assertEquals(400, get("/convert?amount=1.5&from=JPY&to=EUR", "7").status, "JPY has no minor unit");
+        assertEquals(400, get("/convert?amount=90000000000000000&from=USD&to=JPY", "7").status);
+
+        Response batch = post("/batch", "10.10,USD,EUR\n10.101,USD,EUR\n5,EUR,JPY\n", "7");
+        assertEquals(200, batch.status);
+        assertEquals("8.58\nERR\n647\n", batch.body);
+    }
+
+    private static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private Response get(String target, String userId) throws IOException {
+        return exchange(open(target, "GET", userId));
+    }
+
+    private Response post(String target, String body, String userId) throws IOException {
+        HttpURLConnection connection = open(target, "POST", userId);
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.US_ASCII));
+        }
+        return exchange(connection);
+    }
+
+    private HttpURLConnection open(String target, String method, String userId) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection)
+            new URL("http://127.0.0.1:" + server.getPort() + target).openConnection();
+        connection.setRequestMethod(method);
+        if (userId != null) {
+            connection.setRequestProperty("X-User-Id", userId);
+        }
+        return connection;
+    }
+
+    private static Response exchange(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                stream.transferTo(body);
+            }
+        }
+        connection.disconnect();
+        return new Response(status, body.toString(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,54 @@
+package util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AmountFormatTest {
+
+    private static final AmountFormat CENTS = new AmountFormat(2, ',');
+    private static final AmountFormat WHOLE = new AmountFormat(0, (char) 0);
+
+    private static String formatUnits(AmountFormat format, long units) {
+        char[] out = new char[64];
+        return new String(out, 0, format.formatUnits(units, out, 0));
+    }
+
+    @Test
+    void parsesExactUnits() {
+        assertEquals(123_456_789L, CENTS.parseUnits("1,234,567.89"));
+        assertEquals(1230L, CENTS.parseUnits(" 12.3 "));
+        assertEquals(1200L, CENTS.parseUnits("12"));
+        assertEquals(-5L, CENTS.parseUnits("-0.05"));
+        assertEquals(1000L, CENTS.parseUnits("10.000"), "trailing zeros past the scale are fine");
+        assertEquals(500L, WHOLE.parseUnits("500"));
+
+        ByteBuffer bytes = ByteBuffer.wrap("x,10.05,y".getBytes(StandardCharsets.US_ASCII));
+        assertEquals(1005L, new AmountFormat(2, (char) 0).parseUnits(bytes, 2, 7));
+    }
+
+    @Test
+    void rejectsWhatIsNotAnExactAmount() {
+        assertEquals(AmountFormat.INVALID_UNITS, CENTS.parseUnits("1.005"));
+        assertEquals(AmountFormat.INVALID_UNITS, WHOLE.parseUnits("500.5"));
+        assertEquals(AmountFormat.INVALID_UNITS, CENTS.parseUnits(""));
+        assertEquals(AmountFormat.INVALID_UNITS, CENTS.parseUnits("."));
+        assertEquals(AmountFormat.INVALID_UNITS, CENTS.parseUnits("1.2.3"));
+        assertEquals(AmountFormat.INVALID_UNITS, CENTS.parseUnits("12a"));
+        assertEquals(AmountFormat.INVALID_UNITS, CENTS.parseUnits("92233720368547758.08"));
+        assertEquals(Long.MAX_VALUE, CENTS.parseUnits("92233720368547758.07"));
+    }
+
+    @Test
+    void formatsUnitsWithoutGoingThroughDouble() {
+        assertEquals("1,234,567.89", formatUnits(CENTS, 123_456_789L));
+        assertEquals("-0.05", formatUnits(CENTS, -5L));
+        assertEquals("0.00", formatUnits(CENTS, 0L));
+        assertEquals("90,071,992,547,409.93", formatUnits(CENTS, 9_007_199_254_740_993L));
+        assertEquals("-92,233,720,368,547,758.08", formatUnits(CENTS, Long.MIN_VALUE));
+        assertEquals("9223372036854775807", formatUnits(WHOLE, Long.MAX_VALUE));
+    }
+}